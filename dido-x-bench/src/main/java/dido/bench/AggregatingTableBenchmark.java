@@ -0,0 +1,99 @@
+package dido.bench;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.table.internal.AggregatingTable;
+import dido.table.internal.DataTableBasic;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quantity partials and group moves through an {@link AggregatingTable} keeping a sum,
+ * count, min, max and average per group.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregatingTableBenchmark {
+
+    static final int EVENTS = 1 << 12;
+
+    static final DataSchema SCHEMA = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Group", String.class)
+            .addNamed("Qty", double.class)
+            .build();
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    @Param({"10", "1000"})
+    int groupCount;
+
+    DataTableBasic<String> table;
+
+    AggregatingTable<String, String> aggregates;
+
+    PartialUpdate[] partials;
+
+    DidoData[] moves;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+
+        SplittableRandom random = new SplittableRandom(42);
+
+        table = DataTableBasic.<String>withSchema(SCHEMA).create();
+        for (int i = 0; i < tableSize; ++i) {
+            table.onData(row(i, random));
+        }
+
+        aggregates = AggregatingTable.<String, String>from(table)
+                .groupBy("Group")
+                .aggregate(AggregatingTable.Aggregate.SUM, "Qty", "Total")
+                .aggregate(AggregatingTable.Aggregate.COUNT, null, "Count")
+                .aggregate(AggregatingTable.Aggregate.MIN, "Qty", "Min")
+                .aggregate(AggregatingTable.Aggregate.MAX, "Qty", "Max")
+                .aggregate(AggregatingTable.Aggregate.AVG, "Qty", "Avg")
+                .create();
+        aggregates.tableSubscribe(new BlackholeSubscriber<>(blackhole));
+
+        partials = new PartialUpdate[EVENTS];
+        moves = new DidoData[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            int key = random.nextInt(tableSize);
+            DidoData data = row(key, random);
+            partials[i] = PartialUpdate.from(data).withIndices(3);
+            moves[i] = data;
+        }
+    }
+
+    DidoData row(int key, SplittableRandom random) {
+        return DidoData.withSchema(SCHEMA).of(BenchData.keyOf(key),
+                "G" + random.nextInt(groupCount), random.nextDouble(100.0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        aggregates.close();
+    }
+
+    @Benchmark
+    public void onPartial() {
+        table.onPartial(partials[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void onData() {
+        table.onData(moves[next++ & (EVENTS - 1)]);
+    }
+}
@@ -0,0 +1,87 @@
+package dido.bench;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SchemaBuilder;
+import dido.data.schema.SubSchema;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates the quote like data used by the benchmarks. The first field is always a
+ * {@code String} key called {@code Key}, the remaining fields are doubles named
+ * {@code F1} to {@code Fn}.
+ */
+public class BenchData {
+
+    public static final String KEY_FIELD = "Key";
+
+    private final DataSchema schema;
+
+    private final int fieldCount;
+
+    private BenchData(DataSchema schema, int fieldCount) {
+        this.schema = schema;
+        this.fieldCount = fieldCount;
+    }
+
+    /**
+     * Create the data generator.
+     *
+     * @param fieldCount The total number of fields including the key. Must be at least 2.
+     * @return A data generator.
+     */
+    public static BenchData withFieldCount(int fieldCount) {
+        if (fieldCount < 2) {
+            throw new IllegalArgumentException("Field count must be at least 2, was " + fieldCount);
+        }
+        SchemaBuilder builder = DataSchema.builder()
+                .addNamed(KEY_FIELD, String.class);
+        for (int i = 1; i < fieldCount; ++i) {
+            builder = builder.addNamed("F" + i, double.class);
+        }
+        return new BenchData(builder.build(), fieldCount);
+    }
+
+    public DataSchema getSchema() {
+        return schema;
+    }
+
+    public static String keyOf(int i) {
+        return "KEY" + i;
+    }
+
+    public DidoData row(int key, SplittableRandom random) {
+        Object[] values = new Object[fieldCount];
+        values[0] = keyOf(key);
+        for (int i = 1; i < fieldCount; ++i) {
+            values[i] = random.nextDouble(100.0);
+        }
+        return DidoData.withSchema(schema).of(values);
+    }
+
+    /**
+     * Create a partial update of the given width. The width fields after the key are
+     * updated which is what we would expect from a quote tick.
+     */
+    public PartialUpdate partial(int key, int width, SplittableRandom random) {
+        int w = Math.min(width, fieldCount - 1);
+        int[] indices = new int[w + 1];
+        Object[] values = new Object[w + 1];
+        indices[0] = 1;
+        values[0] = keyOf(key);
+        for (int i = 1; i <= w; ++i) {
+            indices[i] = i + 1;
+            values[i] = random.nextDouble(100.0);
+        }
+        DataSchema subSchema = SubSchema.from(schema).withIndices(indices);
+        return PartialUpdate.from(DidoData.withSchema(subSchema).of(values))
+                .withIndices(indices);
+    }
+
+    public DidoData keyData(int key) {
+        return DidoData.withSchema(SubSchema.from(schema).withIndices(1))
+                .of(keyOf(key));
+    }
+}
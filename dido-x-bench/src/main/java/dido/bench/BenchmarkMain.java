@@ -0,0 +1,28 @@
+package dido.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the GC profiler so that allocation rates are reported alongside
+ * timings. Accepts the standard JMH command line, so for instance
+ * {@code DataTableBenchmark.onPartial -p tableSize=1000} runs just the one benchmark
+ * at one table size.
+ */
+public class BenchmarkMain {
+
+    public static void main(String... args) throws RunnerException, CommandLineOptionException {
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,33 @@
+package dido.bench;
+
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.table.KeyedSubscriber;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A subscriber that consumes every event so that the JIT can't eliminate the dispatch.
+ */
+public class BlackholeSubscriber<K extends Comparable<K>> implements KeyedSubscriber<K> {
+
+    private final Blackhole blackhole;
+
+    public BlackholeSubscriber(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void onData(K key, DidoData data) {
+        blackhole.consume(data);
+    }
+
+    @Override
+    public void onPartial(K key, PartialUpdate data) {
+        blackhole.consume(data);
+    }
+
+    @Override
+    public void onDelete(K key) {
+        blackhole.consume(key);
+    }
+}
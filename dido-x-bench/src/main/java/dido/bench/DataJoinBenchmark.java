@@ -0,0 +1,127 @@
+package dido.bench;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.table.internal.DataJoin;
+import dido.table.internal.DataTableBasic;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticks flowing through a primary key {@link DataJoin} of two {@link DataTableBasic}s.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataJoinBenchmark {
+
+    static final int EVENTS = 1 << 12;
+
+    @Param({"1000", "100000", "1000000"})
+    int tableSize;
+
+    @Param({"5", "20"})
+    int fieldCount;
+
+    @Param({"1", "4"})
+    int partialWidth;
+
+    @Param({"0", "1", "8"})
+    int subscriberCount;
+
+    @Param({"inner", "left", "outer"})
+    String joinType;
+
+    @Param({"false", "true"})
+    boolean materialised;
+
+    DataTableBasic<String> left;
+
+    DataTableBasic<String> right;
+
+    DataJoin<String> join;
+
+    PartialUpdate[] leftPartials;
+
+    PartialUpdate[] rightPartials;
+
+    String[] keys;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+
+        BenchData benchData = BenchData.withFieldCount(fieldCount);
+        DataSchema schema = benchData.getSchema();
+        SplittableRandom random = new SplittableRandom(42);
+
+        left = DataTableBasic.<String>withSchema(schema).create();
+        right = DataTableBasic.<String>withSchema(schema).create();
+
+        for (int i = 0; i < tableSize; ++i) {
+            left.onData(benchData.row(i, random));
+            // Only half the rows on the right so that inner and left joins differ.
+            if (i % 2 == 0) {
+                right.onData(benchData.row(i, random));
+            }
+        }
+
+        DataJoin.PrimaryKeys<String> primaryKeys = DataJoin.from(left).primaryKeys();
+        if (materialised) {
+            primaryKeys.materialised();
+        }
+        join = switch (joinType) {
+            case "inner" -> primaryKeys.innerJoin(right);
+            case "left" -> primaryKeys.leftJoin(right);
+            default -> primaryKeys.outerJoin(right);
+        };
+
+        for (int i = 0; i < subscriberCount; ++i) {
+            join.tableSubscribe(new BlackholeSubscriber<>(blackhole));
+        }
+
+        leftPartials = new PartialUpdate[EVENTS];
+        rightPartials = new PartialUpdate[EVENTS];
+        keys = new String[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            int key = random.nextInt(tableSize);
+            leftPartials[i] = benchData.partial(key, partialWidth, random);
+            int rightKey = key & ~1;
+            rightPartials[i] = benchData.partial(rightKey, partialWidth, random);
+            keys[i] = BenchData.keyOf(key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        join.close();
+    }
+
+    @Benchmark
+    public void leftPartial() {
+        left.onPartial(leftPartials[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void rightPartial() {
+        right.onPartial(rightPartials[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public DidoData get() {
+        return join.get(keys[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public boolean containsKey() {
+        return join.containsKey(keys[next++ & (EVENTS - 1)]);
+    }
+}
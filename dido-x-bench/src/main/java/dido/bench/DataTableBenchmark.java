@@ -0,0 +1,100 @@
+package dido.bench;
+
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.table.DataTable;
+import dido.table.internal.DataTableBasic;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tick path through {@link DataTableBasic}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataTableBenchmark {
+
+    /** Number of precomputed events that are cycled through. Must be a power of 2. */
+    static final int EVENTS = 1 << 12;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int tableSize;
+
+    @Param({"5", "20"})
+    int fieldCount;
+
+    @Param({"1", "4"})
+    int partialWidth;
+
+    @Param({"0", "1", "8"})
+    int subscriberCount;
+
+    @Param({"TREE", "HASH", "COLUMNAR", "OFF_HEAP", "PERSISTENT"})
+    DataTableBasic.Storage storage;
+
+    DataTableBasic<String> table;
+
+    DidoData[] rows;
+
+    PartialUpdate[] partials;
+
+    String[] keys;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+
+        BenchData benchData = BenchData.withFieldCount(fieldCount);
+        SplittableRandom random = new SplittableRandom(42);
+
+        table = DataTableBasic.<String>withSchema(benchData.getSchema())
+                .storage(storage)
+                .create();
+
+        for (int i = 0; i < tableSize; ++i) {
+            table.onData(benchData.row(i, random));
+        }
+
+        for (int i = 0; i < subscriberCount; ++i) {
+            table.tableSubscribe(new BlackholeSubscriber<>(blackhole));
+        }
+
+        rows = new DidoData[EVENTS];
+        partials = new PartialUpdate[EVENTS];
+        keys = new String[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            int key = random.nextInt(tableSize);
+            rows[i] = benchData.row(key, random);
+            partials[i] = benchData.partial(key, partialWidth, random);
+            keys[i] = BenchData.keyOf(key);
+        }
+    }
+
+    @Benchmark
+    public void onData() {
+        table.onData(rows[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void onPartial() {
+        table.onPartial(partials[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public DataTable<String> snapshot() {
+        return table.snapshot();
+    }
+
+    @Benchmark
+    public DidoData get() {
+        return table.get(keys[next++ & (EVENTS - 1)]);
+    }
+}
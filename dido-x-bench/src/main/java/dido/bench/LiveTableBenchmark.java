@@ -0,0 +1,94 @@
+package dido.bench;
+
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.operators.transform.ValueGetter;
+import dido.operators.transform.ValueSetter;
+import dido.table.LiveTable;
+import dido.table.internal.LiveTableBasic;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tick path through {@link LiveTableBasic} including a computed column.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LiveTableBenchmark {
+
+    static final int EVENTS = 1 << 12;
+
+    @Param({"1000", "100000", "1000000"})
+    int tableSize;
+
+    @Param({"5", "20"})
+    int fieldCount;
+
+    @Param({"1", "4"})
+    int partialWidth;
+
+    @Param({"0", "1", "8"})
+    int subscriberCount;
+
+    LiveTable<String> table;
+
+    DidoData[] rows;
+
+    PartialUpdate[] partials;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+
+        BenchData benchData = BenchData.withFieldCount(fieldCount);
+        SplittableRandom random = new SplittableRandom(42);
+
+        table = LiveTableBasic.<String>forSchema(benchData.getSchema())
+                .addOperation(context -> {
+                    ValueGetter f1 = context.getterNamed("F1");
+                    ValueGetter f2 = context.getterNamed(fieldCount > 2 ? "F2" : "F1");
+                    ValueSetter mid = context.setterNamed("Mid", double.class);
+                    return () -> mid.setDouble((f1.getDouble() + f2.getDouble()) / 2);
+                })
+                .create();
+
+        for (int i = 0; i < tableSize; ++i) {
+            table.onData(benchData.row(i, random));
+        }
+
+        for (int i = 0; i < subscriberCount; ++i) {
+            table.tableSubscribe(new BlackholeSubscriber<>(blackhole));
+        }
+
+        rows = new DidoData[EVENTS];
+        partials = new PartialUpdate[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            int key = random.nextInt(tableSize);
+            rows[i] = benchData.row(key, random);
+            partials[i] = benchData.partial(key, partialWidth, random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        table.close();
+    }
+
+    @Benchmark
+    public void onData() {
+        table.onData(rows[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void onPartial() {
+        table.onPartial(partials[next++ & (EVENTS - 1)]);
+    }
+}
@@ -0,0 +1,203 @@
+package dido.bench;
+
+import dido.operators.transform.OperationContext;
+import dido.operators.transform.OperationDefinition;
+import dido.operators.transform.ValueGetter;
+import dido.operators.transform.ValueSetter;
+import dido.table.internal.MethodOperationBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Running an operation that calls a processor method, by how the method is called.
+ * {@code direct} is a hand written operation, {@code method} is one from a
+ * {@link MethodOperationBuilder}, {@code handle} invokes a bound {@link MethodHandle}
+ * held in an instance field, and {@code reflection} calls {@link Method#invoke} with
+ * boxed parameters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MethodOperationBenchmark {
+
+    @Param({"direct", "method", "handle", "reflection"})
+    String invoker;
+
+    ArrayContext context;
+
+    Runnable operation;
+
+    double next;
+
+    public static class Mid {
+
+        public void mid(double bid, double ask, DoubleConsumer mid) {
+            mid.accept((bid + ask) / 2);
+        }
+    }
+
+    /**
+     * A context onto a single row of double fields.
+     */
+    static class ArrayContext implements OperationContext {
+
+        final List<String> names = List.of("Bid", "Ask", "Mid");
+
+        final double[] values = new double[names.size()];
+
+        int indexOf(String name) {
+            int index = names.indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("No field " + name);
+            }
+            return index;
+        }
+
+        @Override
+        public Type typeOfNamed(String name) {
+            return double.class;
+        }
+
+        @Override
+        public ValueGetter getterNamed(String name) {
+            int index = indexOf(name);
+            return new ValueGetter() {
+                @Override
+                public Type getType() {
+                    return double.class;
+                }
+
+                @Override
+                public Object get() {
+                    return values[index];
+                }
+
+                @Override
+                public double getDouble() {
+                    return values[index];
+                }
+            };
+        }
+
+        @Override
+        public ValueSetter setterNamed(String name, Type type) {
+            int index = indexOf(name);
+            return new ValueSetter() {
+                @Override
+                public Type getType() {
+                    return double.class;
+                }
+
+                @Override
+                public void set(Object value) {
+                    values[index] = ((Number) value).doubleValue();
+                }
+
+                @Override
+                public void setDouble(double value) {
+                    values[index] = value;
+                }
+            };
+        }
+
+        @Override
+        public void removeNamed(String name) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+
+        Mid processor = new Mid();
+        Method method = Mid.class.getMethod("mid", double.class, double.class, DoubleConsumer.class);
+        MethodHandle bound = MethodHandles.lookup().unreflect(method).bindTo(processor);
+        MethodHandle getDouble = MethodHandles.lookup().findVirtual(ValueGetter.class, "getDouble",
+                MethodType.methodType(double.class));
+
+        OperationDefinition definition = switch (invoker) {
+            case "direct" -> context -> {
+                ValueGetter bid = context.getterNamed("Bid");
+                ValueGetter ask = context.getterNamed("Ask");
+                ValueSetter mid = context.setterNamed("Mid", double.class);
+                DoubleConsumer writer = mid::setDouble;
+                return () -> processor.mid(bid.getDouble(), ask.getDouble(), writer);
+            };
+            case "method" -> new MethodOperationBuilder()
+                    .readingNamed("Bid")
+                    .readingNamed("Ask")
+                    .writingNamed("Mid")
+                    .processor(processor, "mid");
+            case "handle" -> context -> {
+                ValueSetter mid = context.setterNamed("Mid", double.class);
+                MethodHandle handle = MethodHandles.collectArguments(bound, 0,
+                        getDouble.bindTo(context.getterNamed("Bid")));
+                handle = MethodHandles.collectArguments(handle, 0,
+                        getDouble.bindTo(context.getterNamed("Ask")));
+                handle = MethodHandles.collectArguments(handle, 0,
+                        MethodHandles.constant(DoubleConsumer.class, (DoubleConsumer) mid::setDouble));
+                return new HandleInvoker(handle);
+            };
+            case "reflection" -> context -> {
+                ValueGetter bid = context.getterNamed("Bid");
+                ValueGetter ask = context.getterNamed("Ask");
+                ValueSetter mid = context.setterNamed("Mid", double.class);
+                DoubleConsumer writer = mid::setDouble;
+                return () -> {
+                    try {
+                        method.invoke(processor, bid.get(), ask.get(), writer);
+                    }
+                    catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                };
+            };
+            default -> throw new IllegalArgumentException(invoker);
+        };
+
+        context = new ArrayContext();
+        operation = definition.prepare(context);
+    }
+
+    static class HandleInvoker implements Runnable {
+
+        private final MethodHandle handle;
+
+        HandleInvoker(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void run() {
+            try {
+                handle.invokeExact();
+            }
+            catch (RuntimeException | Error e) {
+                throw e;
+            }
+            catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public double run() {
+        context.values[0] = next;
+        context.values[1] = next + 1;
+        next += 1;
+        operation.run();
+        return context.values[2];
+    }
+}
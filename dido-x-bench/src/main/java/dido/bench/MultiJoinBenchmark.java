@@ -0,0 +1,119 @@
+package dido.bench;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.QuietlyCloseable;
+import dido.table.DataTable;
+import dido.table.internal.DataJoin;
+import dido.table.internal.DataTableBasic;
+import dido.table.internal.MultiJoin;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partials into the last of four tables joined on the same key, either by nested
+ * {@link DataJoin}s or by one {@link MultiJoin}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiJoinBenchmark {
+
+    static final int EVENTS = 1 << 12;
+
+    static final int TABLES = 4;
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    @Param({"5", "20"})
+    int fieldCount;
+
+    @Param({"nested", "multi"})
+    String joinType;
+
+    List<DataTableBasic<String>> tables;
+
+    DataTable<String> join;
+
+    List<QuietlyCloseable> closeables;
+
+    PartialUpdate[] partials;
+
+    String[] keys;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+
+        BenchData benchData = BenchData.withFieldCount(fieldCount);
+        DataSchema schema = benchData.getSchema();
+        SplittableRandom random = new SplittableRandom(42);
+
+        tables = new ArrayList<>();
+        for (int t = 0; t < TABLES; ++t) {
+            DataTableBasic<String> table = DataTableBasic.<String>withSchema(schema).create();
+            for (int i = 0; i < tableSize; ++i) {
+                table.onData(benchData.row(i, random));
+            }
+            tables.add(table);
+        }
+
+        closeables = new ArrayList<>();
+        if ("nested".equals(joinType)) {
+            DataTable<String> nested = tables.getFirst();
+            for (int t = 1; t < TABLES; ++t) {
+                DataJoin<String> dataJoin = DataJoin.from(nested).primaryKeys()
+                        .materialised()
+                        .innerJoin(tables.get(t));
+                closeables.add(dataJoin);
+                nested = dataJoin;
+            }
+            join = nested;
+        }
+        else {
+            MultiJoin.From<String> from = MultiJoin.from(tables.getFirst());
+            for (int t = 1; t < TABLES; ++t) {
+                from.and(tables.get(t));
+            }
+            MultiJoin<String> multiJoin = from.innerJoin();
+            closeables.add(multiJoin);
+            join = multiJoin;
+        }
+
+        join.tableSubscribe(new BlackholeSubscriber<>(blackhole));
+
+        partials = new PartialUpdate[EVENTS];
+        keys = new String[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            int key = random.nextInt(tableSize);
+            partials[i] = benchData.partial(key, 2, random);
+            keys[i] = BenchData.keyOf(key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        closeables.reversed().forEach(QuietlyCloseable::close);
+    }
+
+    @Benchmark
+    public void lastTablePartial() {
+        tables.getLast().onPartial(partials[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public DidoData get() {
+        return join.get(keys[next++ & (EVENTS - 1)]);
+    }
+}
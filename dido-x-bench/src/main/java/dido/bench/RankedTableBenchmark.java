@@ -0,0 +1,68 @@
+package dido.bench;
+
+import dido.data.partial.PartialUpdate;
+import dido.table.internal.DataTableBasic;
+import dido.table.internal.RankedTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partials changing the order field through a {@link RankedTable} of the top 50 rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankedTableBenchmark {
+
+    static final int EVENTS = 1 << 12;
+
+    @Param({"1000", "300000"})
+    int tableSize;
+
+    DataTableBasic<String> table;
+
+    RankedTable<String> ranked;
+
+    PartialUpdate[] partials;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+
+        BenchData benchData = BenchData.withFieldCount(5);
+        SplittableRandom random = new SplittableRandom(42);
+
+        table = DataTableBasic.<String>withSchema(benchData.getSchema()).create();
+        for (int i = 0; i < tableSize; ++i) {
+            table.onData(benchData.row(i, random));
+        }
+
+        ranked = RankedTable.from(table)
+                .descending("F1")
+                .limit(50)
+                .create();
+        ranked.tableSubscribe(new BlackholeSubscriber<>(blackhole));
+
+        partials = new PartialUpdate[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            partials[i] = benchData.partial(random.nextInt(tableSize), 1, random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ranked.close();
+    }
+
+    @Benchmark
+    public void onPartial() {
+        table.onPartial(partials[next++ & (EVENTS - 1)]);
+    }
+}
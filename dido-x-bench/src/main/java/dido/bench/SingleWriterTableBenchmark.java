@@ -0,0 +1,106 @@
+package dido.bench;
+
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.util.WaitStrategy;
+import dido.table.internal.DataTableBasic;
+import dido.table.internal.SingleWriterTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many producer threads feeding a {@link SingleWriterTable}. This measures the rate
+ * producers can hand off updates, which is bounded by the rate the writer applies
+ * them once the queue fills. Compare with {@link StripedDataTableBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class SingleWriterTableBenchmark {
+
+    /** Number of precomputed events per thread that are cycled through. Must be a power of 2. */
+    static final int EVENTS = 1 << 12;
+
+    @Param({"100000"})
+    int tableSize;
+
+    @Param({"5"})
+    int fieldCount;
+
+    @Param({"BUSY_SPIN", "YIELD", "PARK"})
+    WaitStrategy waitStrategy;
+
+    @Param({"0", "1"})
+    int subscriberCount;
+
+    @Param({"HASH"})
+    DataTableBasic.Storage storage;
+
+    BenchData benchData;
+
+    SingleWriterTable<String> table;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+
+        benchData = BenchData.withFieldCount(fieldCount);
+        SplittableRandom random = new SplittableRandom(42);
+
+        table = SingleWriterTable.<String>withSchema(benchData.getSchema())
+                .waitStrategy(waitStrategy)
+                .storage(storage)
+                .create();
+
+        for (int i = 0; i < tableSize; ++i) {
+            table.onData(benchData.row(i, random));
+        }
+
+        for (int i = 0; i < subscriberCount; ++i) {
+            table.tableSubscribe(new BlackholeSubscriber<>(blackhole));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        table.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+
+        DidoData[] rows;
+
+        PartialUpdate[] partials;
+
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(SingleWriterTableBenchmark bench) {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+            rows = new DidoData[EVENTS];
+            partials = new PartialUpdate[EVENTS];
+            for (int i = 0; i < EVENTS; ++i) {
+                int key = random.nextInt(bench.tableSize);
+                rows[i] = bench.benchData.row(key, random);
+                partials[i] = bench.benchData.partial(key, 1, random);
+            }
+        }
+    }
+
+    @Benchmark
+    public void onData(Producer producer) {
+        table.onData(producer.rows[producer.next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void onPartial(Producer producer) {
+        table.onPartial(producer.partials[producer.next++ & (EVENTS - 1)]);
+    }
+}
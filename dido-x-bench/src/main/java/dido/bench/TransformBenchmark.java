@@ -0,0 +1,63 @@
+package dido.bench;
+
+import dido.data.DidoData;
+import dido.operators.transform.BasicOperations;
+import dido.operators.transform.DidoTransform;
+import dido.operators.transform.OperationTransformBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying a transform created with an {@link OperationTransformBuilder}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformBenchmark {
+
+    static final int EVENTS = 1 << 12;
+
+    @Param({"5", "20"})
+    int fieldCount;
+
+    @Param({"true", "false"})
+    boolean existingFields;
+
+    DidoTransform transform;
+
+    DidoData[] rows;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        BenchData benchData = BenchData.withFieldCount(fieldCount);
+        SplittableRandom random = new SplittableRandom(42);
+
+        transform = OperationTransformBuilder.with()
+                .existingFields(existingFields)
+                .forSchema(benchData.getSchema())
+                .addOp(BasicOperations.copy()
+                        .from(BenchData.KEY_FIELD).with().op())
+                .addOp(BasicOperations.map()
+                        .from("F1").to("Scaled")
+                        .with().doubleOp(d -> d * 1.5))
+                .build();
+
+        rows = new DidoData[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            rows[i] = benchData.row(i, random);
+        }
+    }
+
+    @Benchmark
+    public DidoData apply() {
+        return transform.apply(rows[next++ & (EVENTS - 1)]);
+    }
+}
@@ -0,0 +1,74 @@
+package dido.bench;
+
+import dido.data.partial.PartialUpdate;
+import dido.table.internal.DataTableBasic;
+import dido.table.internal.WindowedTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price and volume partials through a {@link WindowedTable} on the system clock, with
+ * one second steps so bars are closed as the benchmark runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WindowedTableBenchmark {
+
+    static final int EVENTS = 1 << 12;
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    @Param({"1", "60"})
+    int windowSteps;
+
+    DataTableBasic<String> table;
+
+    WindowedTable<String> bars;
+
+    PartialUpdate[] partials;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+
+        BenchData benchData = BenchData.withFieldCount(3);
+        SplittableRandom random = new SplittableRandom(42);
+
+        table = DataTableBasic.<String>withSchema(benchData.getSchema()).create();
+        for (int i = 0; i < tableSize; ++i) {
+            table.onData(benchData.row(i, random));
+        }
+
+        bars = WindowedTable.from(table)
+                .price("F1")
+                .volume("F2")
+                .sliding(Duration.ofSeconds(windowSteps), Duration.ofSeconds(1))
+                .create();
+        bars.tableSubscribe(new BlackholeSubscriber<>(blackhole));
+
+        partials = new PartialUpdate[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            partials[i] = benchData.partial(random.nextInt(tableSize), 2, random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bars.close();
+    }
+
+    @Benchmark
+    public void onPartial() {
+        table.onPartial(partials[next++ & (EVENTS - 1)]);
+    }
+}
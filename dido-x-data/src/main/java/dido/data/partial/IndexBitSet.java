@@ -0,0 +1,110 @@
+package dido.data.partial;
+
+import java.util.Arrays;
+
+/**
+ * A mutable set of indices held as bits in long words, that is also an
+ * {@link IndexSequence} over the indices set. It is intended to be cleared and used
+ * again so changes can be tracked without allocating.
+ */
+public final class IndexBitSet implements IndexSequence {
+
+    private long[] words;
+
+    /**
+     * Create a set big enough for the given last index without growing.
+     */
+    public IndexBitSet(int lastIndex) {
+        this.words = new long[(lastIndex >> 6) + 1];
+    }
+
+    public void set(int index) {
+        int word = index >> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << index;
+    }
+
+    public void clear(int index) {
+        int word = index >> 6;
+        if (word < words.length) {
+            words[word] &= ~(1L << index);
+        }
+    }
+
+    public boolean get(int index) {
+        int word = index >> 6;
+        return word < words.length && (words[word] & 1L << index) != 0;
+    }
+
+    /**
+     * Clear all indices.
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int firstIndex() {
+        return next(1);
+    }
+
+    @Override
+    public int nextIndex(int index) {
+        return next(index + 1);
+    }
+
+    /**
+     * The first index set at or after the given index, or 0 if there isn't one.
+     */
+    private int next(int from) {
+        int word = from >> 6;
+        if (word >= words.length) {
+            return 0;
+        }
+        long bits = words[word] & -1L << from;
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == words.length) {
+                return 0;
+            }
+            bits = words[word];
+        }
+    }
+
+    @Override
+    public int lastIndex() {
+        for (int word = words.length - 1; word >= 0; --word) {
+            if (words[word] != 0) {
+                return (word << 6) + Long.SIZE - 1 - Long.numberOfLeadingZeros(words[word]);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (long word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(getIndices());
+    }
+}
@@ -0,0 +1,44 @@
+package dido.data.partial;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class IndexBitSetTest {
+
+    @Test
+    void setAndIterateAcrossWords() {
+
+        IndexBitSet test = new IndexBitSet(10);
+
+        assertThat(test.isEmpty(), is(true));
+        assertThat(test.firstIndex(), is(0));
+        assertThat(test.lastIndex(), is(0));
+
+        test.set(3);
+        test.set(63);
+        test.set(64);
+        test.set(130);
+        test.set(3);
+
+        assertThat(test.isEmpty(), is(false));
+        assertThat(test.getIndices(), is(new int[] { 3, 63, 64, 130 }));
+        assertThat(test.getSize(), is(4));
+        assertThat(test.lastIndex(), is(130));
+        assertThat(test.nextIndex(130), is(0));
+        assertThat(test.get(64), is(true));
+        assertThat(test.get(65), is(false));
+        assertThat(test.get(1000), is(false));
+
+        test.clear(63);
+
+        assertThat(test.getIndices(), is(new int[] { 3, 64, 130 }));
+
+        test.clear();
+
+        assertThat(test.isEmpty(), is(true));
+        assertThat(test.getSize(), is(0));
+        assertThat(test.firstIndex(), is(0));
+    }
+}
@@ -11,4 +11,17 @@ public interface DidoSubscriber {
 
     void onDelete(DidoData keyData);
 
+    /**
+     * Called before a run of related events, such as a refresh or a file load, so that
+     * work may be put off until {@link #onBatchEnd()}. Batches may be nested, in which
+     * case only the outermost batch matters.
+     */
+    default void onBatchStart() {
+    }
+
+    /**
+     * Called after the last event of a batch.
+     */
+    default void onBatchEnd() {
+    }
 }
@@ -0,0 +1,104 @@
+package dido.flow.util;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.DidoSubscriber;
+import dido.flow.QuietlyCloseable;
+
+/**
+ * A {@link DidoSubscriber} that passes events on to another from its own buffer and
+ * executor, using an {@link AsyncDispatcher}. Wrap a subscriber in this before
+ * subscribing it to a publisher so that a slow subscriber doesn't hold up the publisher.
+ */
+public class AsyncDidoSubscriber implements DidoSubscriber, QuietlyCloseable {
+
+    private final AsyncDispatcher<Object> dispatcher;
+
+    /** Only used when conflating. */
+    private final KeyExtractor<?> keyExtractor;
+
+    private AsyncDidoSubscriber(AsyncDispatcher<Object> dispatcher, KeyExtractor<?> keyExtractor) {
+        this.dispatcher = dispatcher;
+        this.keyExtractor = dispatcher.isConflating() ? keyExtractor : null;
+    }
+
+    private Object keyOf(DidoData data) {
+        return keyExtractor == null ? null : keyExtractor.keyOf(data);
+    }
+
+    /**
+     * Wrap a subscriber. When conflating, events are merged by the first field.
+     *
+     * @param schema The schema of the data that will be published.
+     * @param settings The buffer settings.
+     * @param subscriber The subscriber to pass events on to.
+     * @return A subscriber to subscribe to the publisher.
+     */
+    public static AsyncDidoSubscriber wrap(DataSchema schema,
+                                           AsyncDispatcher.Settings settings,
+                                           DidoSubscriber subscriber) {
+        return wrap(schema, settings, KeyExtractors.fromFirstField().keyExtractorFor(schema), subscriber);
+    }
+
+    /**
+     * Wrap a subscriber, merging events by the given key when conflating.
+     */
+    public static AsyncDidoSubscriber wrap(DataSchema schema,
+                                           AsyncDispatcher.Settings settings,
+                                           KeyExtractor<?> keyExtractor,
+                                           DidoSubscriber subscriber) {
+
+        AsyncDispatcher<Object> dispatcher = settings.create(schema, new AsyncDispatcher.Target<>() {
+            @Override
+            public void onData(Object key, DidoData data) {
+                subscriber.onData(data);
+            }
+
+            @Override
+            public void onPartial(Object key, PartialUpdate partial) {
+                subscriber.onPartial(partial);
+            }
+
+            @Override
+            public void onDelete(Object key, DidoData keyData) {
+                subscriber.onDelete(keyData);
+            }
+
+            @Override
+            public void onBatchStart() {
+                subscriber.onBatchStart();
+            }
+
+            @Override
+            public void onBatchEnd() {
+                subscriber.onBatchEnd();
+            }
+        });
+        return new AsyncDidoSubscriber(dispatcher, keyExtractor);
+    }
+
+    @Override
+    public void onData(DidoData data) {
+        dispatcher.onData(keyOf(data), data);
+    }
+
+    @Override
+    public void onPartial(PartialUpdate partial) {
+        dispatcher.onPartial(keyOf(partial.getData()), partial);
+    }
+
+    @Override
+    public void onDelete(DidoData keyData) {
+        dispatcher.onDelete(keyOf(keyData), keyData);
+    }
+
+    public AsyncDispatcher<Object> getDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public void close() {
+        dispatcher.close();
+    }
+}
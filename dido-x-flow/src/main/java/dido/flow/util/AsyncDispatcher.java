@@ -0,0 +1,416 @@
+package dido.flow.util;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.QuietlyCloseable;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Passes events on to a subscriber from its own bounded buffer and {@link Executor}, so
+ * that the time the subscriber takes isn't added to the publisher's. What happens when
+ * the buffer is full is decided by the {@link OverflowPolicy}.
+ * <p>
+ * The subscriber is only called from one thread at a time and sees events in the order
+ * they were published, less any dropped or merged. The events taken from the buffer in
+ * one go are passed on as a batch. An exception from the subscriber is passed to the
+ * error handler and the events after it are still passed on.
+ * </p>
+ * <p>
+ * Publishers may reuse the data and partial updates they publish once the call returns,
+ * so these are copied when they are buffered. When conflating, only the values are kept.
+ * </p>
+ *
+ * @param <K> The type of the key used to merge events when conflating.
+ */
+public class AsyncDispatcher<K> implements QuietlyCloseable {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Where the events go.
+     */
+    public interface Target<K> {
+
+        void onData(K key, DidoData data);
+
+        void onPartial(K key, PartialUpdate partial);
+
+        void onDelete(K key, DidoData keyData);
+
+        /**
+         * Called before the events taken from the buffer in one go.
+         */
+        default void onBatchStart() {
+        }
+
+        /**
+         * Called after the events taken from the buffer in one go.
+         */
+        default void onBatchEnd() {
+        }
+    }
+
+    private record Event<K>(PendingUpdate.Kind kind, K key, DidoData data, PartialUpdate partial) {
+    }
+
+    private final Target<K> target;
+
+    private final int capacity;
+
+    private final OverflowPolicy policy;
+
+    private final Executor executor;
+
+    private final DataSchema schema;
+
+    private final Runnable onDisconnect;
+
+    private final Consumer<? super RuntimeException> errorHandler;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notFull = lock.newCondition();
+
+    /** Events, or keys when conflating. */
+    private ArrayDeque<Object> queue = new ArrayDeque<>();
+
+    private final Map<K, PendingUpdate> pending = new HashMap<>();
+
+    private boolean scheduled;
+
+    private volatile boolean disconnected;
+
+    private long dropped;
+
+    private AsyncDispatcher(Settings settings, DataSchema schema, Target<K> target) {
+        this.target = Objects.requireNonNull(target);
+        this.capacity = settings.capacity > 0 ? settings.capacity : DEFAULT_CAPACITY;
+        this.policy = Objects.requireNonNullElse(settings.overflowPolicy, OverflowPolicy.BLOCK);
+        this.executor = settings.executor == null ?
+                runnable -> Thread.ofVirtual().start(runnable) : settings.executor;
+        this.onDisconnect = settings.onDisconnect;
+        this.errorHandler = settings.errorHandler == null ?
+                e -> Thread.currentThread().getUncaughtExceptionHandler()
+                        .uncaughtException(Thread.currentThread(), e) :
+                settings.errorHandler;
+        if (policy == OverflowPolicy.CONFLATE && schema == null) {
+            throw new IllegalArgumentException("A schema is required to conflate");
+        }
+        this.schema = schema;
+    }
+
+    public static class Settings {
+
+        private int capacity;
+
+        private OverflowPolicy overflowPolicy;
+
+        private Executor executor;
+
+        private Runnable onDisconnect;
+
+        private Consumer<? super RuntimeException> errorHandler;
+
+        /**
+         * The most events buffered for the subscriber. When conflating, this is the most
+         * keys with pending changes. Defaults to 1024.
+         */
+        public Settings capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * What to do when the buffer is full. Defaults to {@link OverflowPolicy#BLOCK}.
+         */
+        public Settings overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * The executor that calls the subscriber. Defaults to starting a virtual thread
+         * each time there are events to pass on. With {@link OverflowPolicy#BLOCK} this
+         * must not run tasks on the publishing thread.
+         */
+        public Settings executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Called on the publishing thread when the subscriber is disconnected because of
+         * {@link OverflowPolicy#DISCONNECT}.
+         */
+        public Settings onDisconnect(Runnable onDisconnect) {
+            this.onDisconnect = onDisconnect;
+            return this;
+        }
+
+        /**
+         * Handles exceptions from the subscriber. Defaults to the calling thread's
+         * uncaught exception handler.
+         */
+        public Settings errorHandler(Consumer<? super RuntimeException> errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        /**
+         * Create a dispatcher.
+         *
+         * @param schema The schema of the data. Only required when conflating.
+         * @param target Where events go.
+         */
+        public <K> AsyncDispatcher<K> create(DataSchema schema, Target<K> target) {
+            return new AsyncDispatcher<>(this, schema, target);
+        }
+    }
+
+    public static Settings settings() {
+        return new Settings();
+    }
+
+    public void onData(K key, DidoData data) {
+        publish(new Event<>(PendingUpdate.Kind.DATA, key,
+                isConflating() ? data : MutableArrayData.copy(data), null));
+    }
+
+    public void onPartial(K key, PartialUpdate partial) {
+        publish(new Event<>(PendingUpdate.Kind.PARTIAL, key, null,
+                isConflating() ? partial : copy(partial)));
+    }
+
+    public void onDelete(K key, DidoData keyData) {
+        publish(new Event<>(PendingUpdate.Kind.DELETE, key,
+                keyData == null ? null : MutableArrayData.copy(keyData), null));
+    }
+
+    private static PartialUpdate copy(PartialUpdate partial) {
+        return PartialUpdate.from(MutableArrayData.copy(partial.getData()))
+                .withIndices(partial.getIndices());
+    }
+
+    private void publish(Event<K> event) {
+        boolean schedule = false;
+        boolean disconnect = false;
+        lock.lock();
+        try {
+            if (disconnected) {
+                return;
+            }
+            if (policy == OverflowPolicy.CONFLATE) {
+                PendingUpdate update = pending.get(event.key);
+                if (update == null) {
+                    awaitSpace();
+                    if (disconnected) {
+                        return;
+                    }
+                    update = new PendingUpdate(schema);
+                    pending.put(event.key, update);
+                    queue.addLast(event.key);
+                }
+                switch (event.kind) {
+                    case DATA -> update.data(event.data);
+                    case PARTIAL -> update.partial(event.partial);
+                    case DELETE -> update.delete(event.data);
+                }
+            }
+            else {
+                if (queue.size() >= capacity) {
+                    switch (policy) {
+                        case DROP_OLDEST -> {
+                            queue.pollFirst();
+                            ++dropped;
+                        }
+                        case DISCONNECT -> {
+                            disconnected = true;
+                            queue.clear();
+                            disconnect = true;
+                        }
+                        default -> awaitSpace();
+                    }
+                }
+                if (!disconnected) {
+                    queue.addLast(event);
+                }
+            }
+            if (!disconnected && !scheduled) {
+                scheduled = true;
+                schedule = true;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        if (schedule) {
+            executor.execute(this::drain);
+        }
+        if (disconnect && onDisconnect != null) {
+            onDisconnect.run();
+        }
+    }
+
+    /**
+     * Called holding the lock. A drain is scheduled first if there isn't one, as
+     * otherwise nothing might ever make space.
+     */
+    private void awaitSpace() {
+        while (queue.size() >= capacity && !disconnected) {
+            if (!scheduled) {
+                scheduled = true;
+                executor.execute(this::drain);
+            }
+            notFull.awaitUninterruptibly();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        while (true) {
+            ArrayDeque<Object> batch;
+            Map<K, PendingUpdate> updates = null;
+            lock.lock();
+            try {
+                if (queue.isEmpty() || disconnected) {
+                    scheduled = false;
+                    return;
+                }
+                batch = queue;
+                queue = new ArrayDeque<>();
+                if (policy == OverflowPolicy.CONFLATE) {
+                    updates = new HashMap<>(pending);
+                    pending.clear();
+                }
+                notFull.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+            try {
+                batchStart();
+                for (Object item : batch) {
+                    try {
+                        if (updates == null) {
+                            deliver((Event<K>) item);
+                        }
+                        else {
+                            K key = (K) item;
+                            deliver(key, updates.get(key));
+                        }
+                    }
+                    catch (RuntimeException e) {
+                        errorHandler.accept(e);
+                    }
+                }
+                batchEnd();
+            }
+            catch (RuntimeException | Error e) {
+                // Only if the error handler fails.
+                lock.lock();
+                try {
+                    scheduled = false;
+                }
+                finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void batchStart() {
+        try {
+            target.onBatchStart();
+        }
+        catch (RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private void batchEnd() {
+        try {
+            target.onBatchEnd();
+        }
+        catch (RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private void deliver(Event<K> event) {
+        switch (event.kind) {
+            case DATA -> target.onData(event.key, event.data);
+            case PARTIAL -> target.onPartial(event.key, event.partial);
+            case DELETE -> target.onDelete(event.key, event.data);
+        }
+    }
+
+    private void deliver(K key, PendingUpdate update) {
+        switch (update.getKind()) {
+            case DATA -> target.onData(key, update.toData());
+            case PARTIAL -> target.onPartial(key, update.toPartial());
+            case DELETE -> target.onDelete(key, update.getKeyData());
+        }
+    }
+
+    /**
+     * The number of events, or keys when conflating, waiting to be passed on.
+     */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of events dropped because of {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public long droppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Are events merged by key. If not, keys needn't be provided.
+     */
+    public boolean isConflating() {
+        return policy == OverflowPolicy.CONFLATE;
+    }
+
+    public boolean isDisconnected() {
+        return disconnected;
+    }
+
+    /**
+     * Stop passing on events. Events still buffered are discarded.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            disconnected = true;
+            queue.clear();
+            pending.clear();
+            notFull.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
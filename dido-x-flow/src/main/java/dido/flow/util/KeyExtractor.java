@@ -6,4 +6,13 @@ public interface KeyExtractor<K extends Comparable<K>> {
 
     K keyOf(DidoData data);
 
+    /**
+     * The indices of the fields the key is taken from, so that an update to none of them
+     * can be seen not to change the key.
+     *
+     * @return The indices, or null if not known.
+     */
+    default int[] indicesRead() {
+        return null;
+    }
 }
@@ -12,13 +12,21 @@ public class KeyExtractors {
 
         private final Function<? super DidoData, ? extends K> func;
 
-        private Impl(Function<? super DidoData, ? extends K> func) {
+        private final int index;
+
+        private Impl(Function<? super DidoData, ? extends K> func, int index) {
             this.func = func;
+            this.index = index;
         }
 
         @Override
         public K keyOf(DidoData data) {
             return func.apply(data);        }
+
+        @Override
+        public int[] indicesRead() {
+            return new int[] { index };
+        }
     }
 
     public static <K extends Comparable<K>> KeyExtractorProvider<K> fromFirstField() {
@@ -32,7 +40,7 @@ public class KeyExtractors {
             ReadSchema readSchema = ReadSchema.from(schema);
             FieldGetter getter = readSchema.getFieldGetterAt(index);
             //noinspection unchecked
-            return new Impl<>(data -> (K) getter.get(data));
+            return new Impl<>(data -> (K) getter.get(data), index);
         };
     }
 
@@ -40,10 +48,11 @@ public class KeyExtractors {
 
         return schema -> {
 
+            int index = schema.getIndexNamed(name);
             ReadSchema readSchema = ReadSchema.from(schema);
             FieldGetter getter = readSchema.getFieldGetterNamed(name);
             //noinspection unchecked
-            return new Impl<>(data -> (K) getter.get(data));
+            return new Impl<>(data -> (K) getter.get(data), index);
         };
     }
 }
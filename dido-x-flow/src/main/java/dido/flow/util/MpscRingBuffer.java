@@ -0,0 +1,131 @@
+package dido.flow.util;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded lock free queue for many producer threads and a single consumer thread.
+ * Each slot has a sequence number that tells a producer when the slot is free and the
+ * consumer when it has been filled, so producers only contend on claiming a position
+ * and never block each other while writing.
+ *
+ * @param <E> The type of element.
+ */
+public class MpscRingBuffer<E> {
+
+    private final Object[] elements;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Create a new instance.
+     *
+     * @param capacity The capacity. This is rounded up to a power of 2.
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, was " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; ++i) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add an element if there is space. May be called from any thread.
+     *
+     * @param element The element. Must not be null.
+     * @return true if the element was added, false if the queue is full.
+     */
+    public boolean offer(E element) {
+        Objects.requireNonNull(element);
+        long position = tail.get();
+        for (;;) {
+            int index = (int) position & mask;
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take the next element. Must only be called from the consumer thread.
+     *
+     * @return The element or null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.getAcquire(index) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.setRelease(index, position + mask + 1);
+        head.setRelease(position + 1);
+        return element;
+    }
+
+    /**
+     * Take up to a limit of elements, passing each to a consumer. Must only be called
+     * from the consumer thread.
+     *
+     * @param consumer The consumer of the elements.
+     * @param limit The most elements to take.
+     * @return The number of elements taken.
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int count = 0;
+        while (count < limit) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            consumer.accept(element);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * The number of elements in the queue. This is only an estimate while other threads
+     * are adding or taking elements.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, elements.length));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,24 @@
+package dido.flow.util;
+
+/**
+ * What to do when a subscriber's buffer of events is full.
+ */
+public enum OverflowPolicy {
+
+    /** The publisher waits until the subscriber has made space. */
+    BLOCK,
+
+    /** The oldest event in the buffer is dropped to make space. */
+    DROP_OLDEST,
+
+    /**
+     * Events are merged into one pending change per key, so the buffer only fills if
+     * more keys change than it has room for. Then the publisher waits.
+     *
+     * @see PendingUpdate
+     */
+    CONFLATE,
+
+    /** The subscriber is disconnected and receives no more events. */
+    DISCONNECT
+}
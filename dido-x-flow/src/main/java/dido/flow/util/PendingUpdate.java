@@ -0,0 +1,126 @@
+package dido.flow.util;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The merged state of the changes to one key that haven't yet been passed on. This is
+ * what lets a slow consumer be given one change per key instead of every change.
+ * <p>
+ * Successive partial updates are merged into one partial update of all the fields
+ * changed. A partial update after data is merged into the data. Data or a delete
+ * replaces whatever was pending.
+ * </p>
+ */
+public class PendingUpdate {
+
+    public enum Kind {
+        DATA,
+        PARTIAL,
+        DELETE
+    }
+
+    private final DataSchema schema;
+
+    private final Object[] values;
+
+    private final BitSet indices;
+
+    private Kind kind;
+
+    private DidoData keyData;
+
+    /**
+     * Create a new instance.
+     *
+     * @param schema The full schema of the data.
+     */
+    public PendingUpdate(DataSchema schema) {
+        this.schema = schema;
+        this.values = new Object[schema.lastIndex() + 1];
+        this.indices = new BitSet(schema.lastIndex() + 1);
+    }
+
+    public void data(DidoData data) {
+        kind = Kind.DATA;
+        DataSchema dataSchema = data.getSchema();
+        for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
+            values[i] = dataSchema.hasIndex(i) ? data.getAt(i) : null;
+        }
+        keyData = null;
+    }
+
+    /**
+     * Merge in a partial update.
+     *
+     * @throws IllegalStateException if the pending change is a delete.
+     */
+    public void partial(PartialUpdate partial) {
+        if (kind == Kind.DELETE) {
+            throw new IllegalStateException("Partial update after delete: " + partial);
+        }
+        if (kind == null) {
+            kind = Kind.PARTIAL;
+        }
+        DidoData data = partial.getData();
+        for (int i = partial.firstIndex(); i > 0; i = partial.nextIndex(i)) {
+            values[i] = data.getAt(i);
+            indices.set(i);
+        }
+    }
+
+    /**
+     * @param keyData The key data of the delete. May be null if not needed.
+     */
+    public void delete(DidoData keyData) {
+        kind = Kind.DELETE;
+        Arrays.fill(values, null);
+        indices.clear();
+        this.keyData = keyData;
+    }
+
+    /**
+     * The kind of change, or null if there hasn't been one.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The merged data for a {@link Kind#DATA} change.
+     */
+    public DidoData toData() {
+        Object[] fields = new Object[schema.getSize()];
+        int f = 0;
+        for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
+            fields[f++] = values[i];
+        }
+        return DidoData.withSchema(schema).of(fields);
+    }
+
+    /**
+     * The merged update for a {@link Kind#PARTIAL} change.
+     */
+    public PartialUpdate toPartial() {
+        int[] changed = indices.stream().toArray();
+        Object[] fields = new Object[changed.length];
+        for (int f = 0; f < changed.length; ++f) {
+            fields[f] = values[changed[f]];
+        }
+        DataSchema subSchema = SubSchema.from(schema).withIndices(changed);
+        return PartialUpdate.from(DidoData.withSchema(subSchema).of(fields))
+                .withIndices(changed);
+    }
+
+    /**
+     * The key data of a {@link Kind#DELETE} change.
+     */
+    public DidoData getKeyData() {
+        return keyData;
+    }
+}
@@ -0,0 +1,41 @@
+package dido.flow.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread does while it waits for something to change, such as space to become
+ * free in a queue or an event to arrive. The choice trades CPU use for latency.
+ */
+public enum WaitStrategy {
+
+    /** Spin on the CPU. Lowest latency, but uses a whole core. */
+    BUSY_SPIN {
+        @Override
+        public void idle() {
+            Thread.onSpinWait();
+        }
+    },
+
+    /** Give up the CPU to other threads but stay runnable. */
+    YIELD {
+        @Override
+        public void idle() {
+            Thread.yield();
+        }
+    },
+
+    /** Sleep briefly. Uses least CPU at the cost of tens of microseconds of latency. */
+    PARK {
+        @Override
+        public void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    static final long PARK_NANOS = 50_000;
+
+    /**
+     * Called each time round a wait loop.
+     */
+    public abstract void idle();
+}
@@ -0,0 +1,71 @@
+package dido.flow.util;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
+import dido.flow.DidoSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+class AsyncDidoSubscriberTest {
+
+    DataSchema schema = DataSchema.builder()
+            .addNamed("Fruit", String.class)
+            .addNamed("Qty", int.class)
+            .build();
+
+    @Test
+    void conflatesByFirstField() {
+
+        List<String> results = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+
+        AsyncDidoSubscriber test = AsyncDidoSubscriber.wrap(schema,
+                AsyncDispatcher.settings()
+                        .overflowPolicy(OverflowPolicy.CONFLATE)
+                        .executor(tasks::add),
+                new DidoSubscriber() {
+                    @Override
+                    public void onData(DidoData data) {
+                        results.add("onData: " + data);
+                    }
+
+                    @Override
+                    public void onPartial(PartialUpdate partial) {
+                        results.add("onPartial: " + partial);
+                    }
+
+                    @Override
+                    public void onDelete(DidoData keyData) {
+                        results.add("onDelete: " + keyData);
+                    }
+                });
+
+        SubSchema subSchema = SubSchema.from(schema).withIndices(1, 2);
+
+        test.onPartial(PartialUpdate.from(DidoData.withSchema(subSchema).of("Apple", 1))
+                .withIndices(1, 2));
+        test.onPartial(PartialUpdate.from(DidoData.withSchema(subSchema).of("Apple", 2))
+                .withIndices(1, 2));
+        DidoData orangeKey = DidoData.withSchema(SubSchema.from(schema).withIndices(1)).of("Orange");
+        test.onDelete(orangeKey);
+
+        assertThat(results, empty());
+
+        tasks.forEach(Runnable::run);
+
+        assertThat(results, contains(
+                "onPartial: " + PartialUpdate.from(DidoData.withSchema(subSchema).of("Apple", 2))
+                        .withIndices(1, 2),
+                "onDelete: " + orangeKey));
+
+        test.close();
+    }
+}
@@ -0,0 +1,270 @@
+package dido.flow.util;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class AsyncDispatcherTest {
+
+    DataSchema schema = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Qty", int.class)
+            .addNamed("Price", double.class)
+            .build();
+
+    static class Recorder implements AsyncDispatcher.Target<String> {
+
+        final List<String> results = new ArrayList<>();
+
+        @Override
+        public synchronized void onData(String key, DidoData data) {
+            results.add("onData: " + key + ", " + data);
+        }
+
+        @Override
+        public synchronized void onPartial(String key, PartialUpdate partial) {
+            results.add("onPartial: " + key + ", " + partial);
+        }
+
+        @Override
+        public synchronized void onDelete(String key, DidoData keyData) {
+            results.add("onDelete: " + key);
+        }
+
+        synchronized List<String> results() {
+            return new ArrayList<>(results);
+        }
+    }
+
+    /** Runs tasks only when asked, so the test decides when the subscriber is ready. */
+    static class ManualExecutor implements Executor {
+
+        List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> toRun = new ArrayList<>(tasks);
+            tasks.clear();
+            toRun.forEach(Runnable::run);
+        }
+    }
+
+    DidoData data(String key, int qty) {
+        return DidoData.withSchema(schema).of(key, qty, 1.0);
+    }
+
+    PartialUpdate partial(String key, int index, Object value) {
+        SubSchema subSchema = SubSchema.from(schema).withIndices(1, index);
+        return PartialUpdate.from(DidoData.withSchema(subSchema).of(key, value))
+                .withIndices(1, index);
+    }
+
+    @Test
+    void dropOldest() {
+
+        Recorder recorder = new Recorder();
+        ManualExecutor executor = new ManualExecutor();
+
+        AsyncDispatcher<String> test = AsyncDispatcher.settings()
+                .capacity(2)
+                .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .executor(executor)
+                .create(schema, recorder);
+
+        test.onData("A", data("A", 1));
+        test.onData("B", data("B", 2));
+        test.onData("C", data("C", 3));
+
+        assertThat(test.droppedCount(), is(1L));
+        assertThat(test.pendingCount(), is(2));
+        assertThat(executor.tasks, hasSize(1));
+
+        executor.runAll();
+
+        assertThat(recorder.results(), contains(
+                "onData: B, " + data("B", 2),
+                "onData: C, " + data("C", 3)));
+    }
+
+    @Test
+    void disconnect() {
+
+        Recorder recorder = new Recorder();
+        ManualExecutor executor = new ManualExecutor();
+        AtomicBoolean disconnected = new AtomicBoolean();
+
+        AsyncDispatcher<String> test = AsyncDispatcher.settings()
+                .capacity(2)
+                .overflowPolicy(OverflowPolicy.DISCONNECT)
+                .executor(executor)
+                .onDisconnect(() -> disconnected.set(true))
+                .create(schema, recorder);
+
+        test.onData("A", data("A", 1));
+        test.onData("B", data("B", 2));
+
+        assertThat(disconnected.get(), is(false));
+
+        test.onData("C", data("C", 3));
+
+        assertThat(disconnected.get(), is(true));
+        assertThat(test.isDisconnected(), is(true));
+
+        test.onData("D", data("D", 4));
+        executor.runAll();
+
+        assertThat(recorder.results(), empty());
+    }
+
+    @Test
+    void conflate() {
+
+        Recorder recorder = new Recorder();
+        ManualExecutor executor = new ManualExecutor();
+
+        AsyncDispatcher<String> test = AsyncDispatcher.settings()
+                .capacity(2)
+                .overflowPolicy(OverflowPolicy.CONFLATE)
+                .executor(executor)
+                .create(schema, recorder);
+
+        test.onPartial("A", partial("A", 2, 5));
+        test.onPartial("A", partial("A", 3, 2.5));
+        test.onData("B", data("B", 2));
+        test.onPartial("B", partial("B", 2, 3));
+        test.onDelete("A", null);
+        test.onData("A", data("A", 7));
+
+        assertThat(test.pendingCount(), is(2));
+
+        executor.runAll();
+
+        assertThat(recorder.results(), contains(
+                "onData: A, " + data("A", 7),
+                "onData: B, " + data("B", 3)));
+    }
+
+    @Test
+    void blockWaitsForSubscriberWithVirtualThreads() throws InterruptedException {
+
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onData(String key, DidoData data) {
+                try {
+                    Thread.sleep(1);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onData(key, data);
+            }
+        };
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            AsyncDispatcher<String> test = AsyncDispatcher.settings()
+                    .capacity(4)
+                    .overflowPolicy(OverflowPolicy.BLOCK)
+                    .executor(executor)
+                    .create(schema, recorder);
+
+            for (int i = 0; i < 50; ++i) {
+                test.onData("K" + i, data("K" + i, i));
+                assertThat(test.pendingCount(), lessThanOrEqualTo(4));
+            }
+
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+        }
+
+        List<String> results = recorder.results();
+        assertThat(results, hasSize(50));
+        assertThat(results.get(49), is("onData: K49, " + data("K49", 49)));
+    }
+
+    @Test
+    void bufferedEventsAreCopied() {
+
+        Recorder recorder = new Recorder();
+        ManualExecutor executor = new ManualExecutor();
+
+        AsyncDispatcher<String> test = AsyncDispatcher.settings()
+                .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .executor(executor)
+                .create(schema, recorder);
+
+        MutableData row = MutableArrayData.copy(data("A", 1));
+        test.onData("A", row);
+        row.setAt(2, 2);
+
+        PartialUpdate partial = PartialUpdate.from(row).withIndices(2);
+        test.onPartial("A", partial);
+        row.setAt(2, 3);
+
+        executor.runAll();
+
+        assertThat(recorder.results(), contains(
+                "onData: A, " + data("A", 1),
+                "onPartial: A, " + PartialUpdate.from(data("A", 2)).withIndices(2)));
+    }
+
+    @Test
+    void subscriberErrorsAreReportedAndBlockedPublishersCarryOn() {
+
+        List<RuntimeException> errors = new CopyOnWriteArrayList<>();
+
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onData(String key, DidoData data) {
+                if (data.getIntAt(2) % 2 == 1) {
+                    throw new IllegalArgumentException("Odd " + key);
+                }
+                super.onData(key, data);
+            }
+        };
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+                AsyncDispatcher<String> test = AsyncDispatcher.settings()
+                        .capacity(2)
+                        .overflowPolicy(OverflowPolicy.BLOCK)
+                        .executor(executor)
+                        .errorHandler(errors::add)
+                        .create(schema, recorder);
+
+                for (int i = 0; i < 50; ++i) {
+                    test.onData("K" + i, data("K" + i, i));
+                }
+
+                executor.shutdown();
+                assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+            }
+        });
+
+        assertThat(recorder.results(), hasSize(25));
+        assertThat(errors, hasSize(25));
+    }
+}
@@ -23,5 +23,18 @@ class KeyExtractorsTest {
                 .of("Apple", 23.2));
 
         assertThat(key, is("Apple"));
+        assertThat(test.indicesRead(), is(new int[] { 1 }));
+    }
+
+    @Test
+    void fromNamed() {
+
+        KeyExtractor<?> test = KeyExtractors.fromNamed("Price").keyExtractorFor(schema);
+
+        Comparable<?> key = test.keyOf(DidoData.withSchema(schema)
+                .of("Apple", 23.2));
+
+        assertThat(key, is(23.2));
+        assertThat(test.indicesRead(), is(new int[] { 2 }));
     }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package dido.flow.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class MpscRingBufferTest {
+
+    @Test
+    void offerUntilFullThenDrain() {
+
+        MpscRingBuffer<String> test = new MpscRingBuffer<>(3);
+
+        assertThat(test.capacity(), is(4));
+        assertThat(test.poll(), nullValue());
+
+        assertThat(test.offer("a"), is(true));
+        assertThat(test.offer("b"), is(true));
+        assertThat(test.offer("c"), is(true));
+        assertThat(test.offer("d"), is(true));
+        assertThat(test.offer("e"), is(false));
+
+        assertThat(test.size(), is(4));
+
+        List<String> results = new ArrayList<>();
+        assertThat(test.drain(results::add, 3), is(3));
+        assertThat(results, contains("a", "b", "c"));
+
+        assertThat(test.offer("e"), is(true));
+        assertThat(test.offer("f"), is(true));
+        assertThat(test.offer("g"), is(true));
+        assertThat(test.offer("h"), is(false));
+
+        results.clear();
+        assertThat(test.drain(results::add, 10), is(4));
+        assertThat(results, contains("d", "e", "f", "g"));
+        assertThat(test.isEmpty(), is(true));
+    }
+
+    @Test
+    void manyProducersKeepTheirOwnOrder() throws InterruptedException {
+
+        int producers = 4;
+        int perProducer = 20_000;
+
+        MpscRingBuffer<long[]> test = new MpscRingBuffer<>(64);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; ++p) {
+            int producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (long i = 0; i < perProducer; ++i) {
+                    long[] element = {producer, i};
+                    while (!test.offer(element)) {
+                        WaitStrategy.YIELD.idle();
+                    }
+                }
+            }));
+        }
+
+        long[] next = new long[producers];
+        int received = 0;
+        int outOfOrder = 0;
+        while (received < producers * perProducer) {
+            long[] element = test.poll();
+            if (element == null) {
+                WaitStrategy.YIELD.idle();
+                continue;
+            }
+            if (element[1] != next[(int) element[0]]++) {
+                ++outOfOrder;
+            }
+            ++received;
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(outOfOrder, is(0));
+        assertThat(test.poll(), nullValue());
+    }
+}
@@ -1,5 +1,15 @@
 package dido.operators.transform;
 
+/**
+ * Defines an operation on a row, which asks the context for getters and setters of the
+ * fields it needs when it is prepared.
+ * <p>
+ * The getters and setters asked for are taken to be the fields the operation reads and
+ * writes, so a live table can work out the order to run operations in and which to run
+ * when some fields change. An operation should ask for a getter for every field it reads.
+ * One that asks for none is run whenever anything changes.
+ * </p>
+ */
 public interface OperationDefinition {
 
     Runnable prepare(OperationContext context);
@@ -2,9 +2,11 @@ package dido.table;
 
 import dido.data.DataSchema;
 import dido.data.DidoData;
+import dido.table.util.TableSnapshot;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 public interface DataTable<K extends Comparable<K>> {
 
@@ -20,4 +22,28 @@ public interface DataTable<K extends Comparable<K>> {
 
     KeyedSubscription tableSubscribe(KeyedSubscriber<K> listener);
 
+    /**
+     * Pass each key and row to the action, in the order of {@link #entrySet()}. Tables
+     * that can, do this straight from their own structures without building entries.
+     *
+     * @param action The action to perform for each row.
+     */
+    default void forEachRow(BiConsumer<? super K, ? super DidoData> action) {
+        for (Map.Entry<K, DidoData> entry : entrySet()) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Provide an unchanging view of the table as it is now. Tables that can, provide this
+     * without blocking or copying, so that it is safe to read from another thread while
+     * updates continue. By default, the rows are copied, which is only safe if the table
+     * isn't being updated.
+     *
+     * @return A snapshot of the table.
+     */
+    default DataTable<K> snapshot() {
+        return TableSnapshot.copyOf(this);
+    }
+
 }
@@ -10,4 +10,19 @@ public interface KeyedSubscriber<K extends Comparable<K>> {
     void onPartial(K key, PartialUpdate data);
 
     void onDelete(K key);
+
+    /**
+     * Called before a run of related events so that work may be put off until
+     * {@link #onBatchEnd()}.
+     *
+     * @see dido.flow.DidoSubscriber#onBatchStart()
+     */
+    default void onBatchStart() {
+    }
+
+    /**
+     * Called after the last event of a batch.
+     */
+    default void onBatchEnd() {
+    }
 }
@@ -0,0 +1,84 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+import dido.data.partial.IndexBitSet;
+import dido.flow.QuietlyCloseable;
+import dido.operators.transform.ValueGetter;
+import dido.table.LiveValue;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The change tracking and listeners shared by the values of an {@link ArrayRowImpl}.
+ * Subclasses hold the value, primitive ones without boxing, and mark the row's changes
+ * when it changes.
+ */
+abstract class AbstractLiveValue implements LiveValue {
+
+    private final List<Consumer<? super ValueGetter>> listeners = new ArrayList<>();
+
+    /** Where to mark a change, if anywhere. */
+    private IndexBitSet dirty;
+
+    private int index;
+
+    /**
+     * Create the value best suited to a field type.
+     */
+    static AbstractLiveValue forType(Type type) {
+        if (type == double.class) {
+            return new DoubleLiveValue();
+        }
+        else if (type == long.class) {
+            return new LongLiveValue();
+        }
+        else if (type == int.class) {
+            return new IntLiveValue();
+        }
+        else if (type == boolean.class) {
+            return new BooleanLiveValue();
+        }
+        else {
+            return new ObjectLiveValue();
+        }
+    }
+
+    /**
+     * Mark changes to this value at an index of a row's changes.
+     */
+    void attach(IndexBitSet dirty, int index) {
+        this.dirty = dirty;
+        this.index = index;
+    }
+
+    protected void markChanged() {
+        if (dirty != null) {
+            dirty.set(index);
+        }
+    }
+
+    /**
+     * Set from a field of some data, reading primitives as primitives.
+     */
+    abstract void load(DidoData data, int index);
+
+    /**
+     * Forget the value and the listeners so the value can be used again.
+     */
+    void reset() {
+        listeners.clear();
+    }
+
+    @Override
+    public QuietlyCloseable addChangeListener(Consumer<? super ValueGetter> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    protected void fireChange() {
+        listeners.forEach(listener -> listener.accept(this));
+    }
+}
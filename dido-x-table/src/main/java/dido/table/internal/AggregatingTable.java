@@ -0,0 +1,520 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.FieldGetter;
+import dido.data.ReadSchema;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SchemaBuilder;
+import dido.data.util.EmptyData;
+import dido.flow.QuietlyCloseable;
+import dido.flow.util.KeyExtractor;
+import dido.flow.util.KeyExtractors;
+import dido.table.CloseableTable;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+import dido.table.util.KeyedDataSubscribers;
+
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * A table of aggregates over the rows of a source table, one row per group. The group is
+ * a field of the source or is given by a {@link KeyExtractor}. The first field is the
+ * group, the rest are the aggregates in the order they were added.
+ * <p>
+ * The contribution of each source row is kept, so an event takes the old contribution
+ * out of its group and puts the new one in, without going over the rest of the group.
+ * This is constant time for all but {@link Aggregate#MIN} and {@link Aggregate#MAX},
+ * which keep a sorted count of values and so are logarithmic in the size of the group.
+ * </p>
+ * <p>
+ * Null values aren't included in an aggregate. A group is added when its first row
+ * arrives, and deleted when its last row goes. Changes to a group are passed on as
+ * partial updates of just the aggregates that changed.
+ * </p>
+ * <p>
+ * Sums for {@link Aggregate#SUM} and {@link Aggregate#AVG} are compensated, using the
+ * Kahan-Babuska variant of Kahan summation, so that taking out large values that were
+ * put in doesn't leave rounding errors behind, and they start again from zero whenever
+ * a group has no values.
+ * </p>
+ *
+ * @param <G> The type of the group, which is the key of this table.
+ * @param <K> The type of the key of the source table.
+ */
+public class AggregatingTable<G extends Comparable<G>, K extends Comparable<K>>
+        implements CloseableTable<G> {
+
+    public enum Aggregate {
+
+        /** The sum of the values, as a double. */
+        SUM,
+
+        /** The number of rows in the group, as a long. The field is ignored. */
+        COUNT,
+
+        /** The smallest value, as a double. */
+        MIN,
+
+        /** The largest value, as a double. */
+        MAX,
+
+        /** The mean of the values, as a double. */
+        AVG,
+
+        /**
+         * The most recently received value, of the same type as the field. This isn't
+         * changed when the row it came from is deleted.
+         */
+        LAST,
+    }
+
+    private record Column(Aggregate aggregate, FieldGetter getter) {
+    }
+
+    /**
+     * What a source row adds to its group.
+     */
+    private static class Contribution<G> {
+
+        final G group;
+
+        final double[] values;
+
+        final Object[] lasts;
+
+        Contribution(G group, int columns) {
+            this.group = group;
+            this.values = new double[columns];
+            this.lasts = new Object[columns];
+        }
+    }
+
+    private class Group {
+
+        final MutableData row;
+
+        long count;
+
+        final double[] sums;
+
+        /** The low order parts lost from the sums. */
+        final double[] compensations;
+
+        final long[] counts;
+
+        final TreeMap<Double, Integer>[] sorted;
+
+        final boolean[] lastChanged;
+
+        @SuppressWarnings("unchecked")
+        Group(G key) {
+            row = MutableArrayData.copy(EmptyData.withSchema(schema));
+            row.setAt(1, key);
+            sums = new double[columns.length];
+            compensations = new double[columns.length];
+            counts = new long[columns.length];
+            sorted = new TreeMap[columns.length];
+            lastChanged = new boolean[columns.length];
+            for (int c = 0; c < columns.length; ++c) {
+                Aggregate aggregate = columns[c].aggregate();
+                if (aggregate == Aggregate.MIN || aggregate == Aggregate.MAX) {
+                    sorted[c] = new TreeMap<>();
+                }
+            }
+        }
+
+        void add(Contribution<G> contribution) {
+            ++count;
+            for (int c = 0; c < columns.length; ++c) {
+                Object last = contribution.lasts[c];
+                if (last != null && !last.equals(row.getAt(c + 2))) {
+                    row.setAt(c + 2, last);
+                    lastChanged[c] = true;
+                }
+                double value = contribution.values[c];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                addToSum(c, value);
+                ++counts[c];
+                if (sorted[c] != null) {
+                    sorted[c].merge(value, 1, Integer::sum);
+                }
+            }
+        }
+
+        void remove(Contribution<G> contribution) {
+            --count;
+            for (int c = 0; c < columns.length; ++c) {
+                double value = contribution.values[c];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                if (--counts[c] == 0) {
+                    sums[c] = 0;
+                    compensations[c] = 0;
+                }
+                else {
+                    addToSum(c, -value);
+                }
+                if (sorted[c] != null) {
+                    sorted[c].computeIfPresent(value, (v, n) -> n == 1 ? null : n - 1);
+                }
+            }
+        }
+
+        private void addToSum(int c, double value) {
+            double sum = sums[c];
+            double total = sum + value;
+            if (Math.abs(sum) >= Math.abs(value)) {
+                compensations[c] += (sum - total) + value;
+            }
+            else {
+                compensations[c] += (value - total) + sum;
+            }
+            sums[c] = total;
+        }
+
+        /**
+         * Write the aggregates into the row.
+         *
+         * @return The indices that changed.
+         */
+        int[] update() {
+            int[] changed = new int[columns.length];
+            int n = 0;
+            for (int c = 0; c < columns.length; ++c) {
+                int index = c + 2;
+                if (columns[c].aggregate() == Aggregate.LAST) {
+                    if (lastChanged[c]) {
+                        lastChanged[c] = false;
+                        changed[n++] = index;
+                    }
+                    continue;
+                }
+                Object value = switch (columns[c].aggregate()) {
+                    case SUM -> counts[c] == 0 ? null : sums[c] + compensations[c];
+                    case COUNT -> count;
+                    case MIN -> sorted[c].isEmpty() ? null : sorted[c].firstKey();
+                    case MAX -> sorted[c].isEmpty() ? null : sorted[c].lastKey();
+                    case AVG -> counts[c] == 0 ? null : (sums[c] + compensations[c]) / counts[c];
+                    case LAST -> throw new IllegalStateException();
+                };
+                if (!Objects.equals(value, row.getAt(index))) {
+                    if (value == null) {
+                        row.clearAt(index);
+                    }
+                    else {
+                        row.setAt(index, value);
+                    }
+                    changed[n++] = index;
+                }
+            }
+            return Arrays.copyOf(changed, n);
+        }
+    }
+
+    private final DataSchema schema;
+
+    private final Column[] columns;
+
+    private final KeyExtractor<G> groupExtractor;
+
+    /** Source indices that affect the aggregates, or null if the group could read any. */
+    private final BitSet relevant;
+
+    private final DataTable<K> source;
+
+    private final Map<K, Contribution<G>> contributions = new HashMap<>();
+
+    private final Map<G, Group> groups = new TreeMap<>();
+
+    private final KeyedDataSubscribers<G> subscribers;
+
+    private final QuietlyCloseable closeable;
+
+    private AggregatingTable(Settings<G, K> settings) {
+        this.source = settings.source;
+        DataSchema sourceSchema = source.getSchema();
+        ReadSchema readSchema = ReadSchema.from(sourceSchema);
+
+        String groupField = Objects.requireNonNull(settings.groupField, "No group field");
+        Type groupType;
+        if (settings.groupExtractor == null) {
+            int groupIndex = sourceSchema.getIndexNamed(groupField);
+            if (groupIndex == 0) {
+                throw new IllegalArgumentException("No field " + groupField + " in " + sourceSchema);
+            }
+            this.groupExtractor = KeyExtractors.<G>fromNamed(groupField).keyExtractorFor(sourceSchema);
+            groupType = sourceSchema.getTypeAt(groupIndex);
+        }
+        else {
+            this.groupExtractor = settings.groupExtractor;
+            groupType = Objects.requireNonNull(settings.groupType, "No group type");
+        }
+        BitSet relevant = new BitSet();
+        int[] groupReads = groupExtractor.indicesRead();
+        if (groupReads != null) {
+            for (int index : groupReads) {
+                relevant.set(index);
+            }
+        }
+
+        SchemaBuilder builder = DataSchema.builder()
+                .addNamed(groupField, groupType);
+        this.columns = new Column[settings.aggregates.size()];
+        for (int c = 0; c < columns.length; ++c) {
+            Settings.Spec spec = settings.aggregates.get(c);
+            int index = sourceSchema.getIndexNamed(spec.field());
+            if (index == 0 && spec.aggregate() != Aggregate.COUNT) {
+                throw new IllegalArgumentException("No field " + spec.field() + " in " + sourceSchema);
+            }
+            Type type = switch (spec.aggregate()) {
+                case COUNT -> long.class;
+                case LAST -> sourceSchema.getTypeAt(index);
+                default -> double.class;
+            };
+            builder = builder.addNamed(spec.name(), type);
+            columns[c] = new Column(spec.aggregate(),
+                    index == 0 ? null : readSchema.getFieldGetterAt(index));
+            if (index != 0) {
+                relevant.set(index);
+            }
+        }
+        this.relevant = groupReads == null ? null : relevant;
+        this.schema = builder.build();
+        this.subscribers = new KeyedDataSubscribers<>(schema);
+
+        source.forEachRow((key, row) -> {
+            Contribution<G> contribution = contributionOf(row);
+            contributions.put(key, contribution);
+            groupFor(contribution.group).add(contribution);
+        });
+        groups.values().forEach(Group::update);
+
+        this.closeable = source.tableSubscribe(new SourceSubscriber());
+    }
+
+    public static class Settings<G extends Comparable<G>, K extends Comparable<K>> {
+
+        private record Spec(Aggregate aggregate, String field, String name) {
+        }
+
+        private final DataTable<K> source;
+
+        private String groupField;
+
+        private KeyExtractor<G> groupExtractor;
+
+        private Type groupType;
+
+        private final List<Spec> aggregates = new ArrayList<>();
+
+        Settings(DataTable<K> source) {
+            this.source = source;
+        }
+
+        /**
+         * The field to group by. This is also the name of the first field of the table.
+         */
+        public Settings<G, K> groupBy(String field) {
+            this.groupField = field;
+            this.groupExtractor = null;
+            this.groupType = null;
+            return this;
+        }
+
+        /**
+         * Group by whatever a key extractor takes from each source row. If the key
+         * extractor doesn't say which fields it reads, every partial update is taken
+         * to possibly change the group.
+         *
+         * @param keyExtractor Gives the group of a source row.
+         * @param field The name of the first field of the table.
+         * @param type The type of the first field of the table.
+         */
+        public Settings<G, K> groupBy(KeyExtractor<G> keyExtractor, String field, Type type) {
+            this.groupExtractor = Objects.requireNonNull(keyExtractor);
+            this.groupField = field;
+            this.groupType = type;
+            return this;
+        }
+
+        /**
+         * Add an aggregate of a field.
+         *
+         * @param aggregate The aggregate.
+         * @param field The source field. May be null for {@link Aggregate#COUNT}.
+         * @param name The name of the field in this table.
+         */
+        public Settings<G, K> aggregate(Aggregate aggregate, String field, String name) {
+            aggregates.add(new Spec(Objects.requireNonNull(aggregate), field == null ? "" : field,
+                    Objects.requireNonNull(name)));
+            return this;
+        }
+
+        public AggregatingTable<G, K> create() {
+            return new AggregatingTable<>(this);
+        }
+    }
+
+    public static <G extends Comparable<G>, K extends Comparable<K>> Settings<G, K> from(DataTable<K> source) {
+        return new Settings<>(source);
+    }
+
+    private Contribution<G> contributionOf(DidoData row) {
+        Contribution<G> contribution = new Contribution<>(groupExtractor.keyOf(row), columns.length);
+        for (int c = 0; c < columns.length; ++c) {
+            Column column = columns[c];
+            if (column.getter() == null || !column.getter().has(row)) {
+                contribution.values[c] = Double.NaN;
+            }
+            else if (column.aggregate() == Aggregate.LAST) {
+                contribution.values[c] = Double.NaN;
+                contribution.lasts[c] = column.getter().get(row);
+            }
+            else {
+                contribution.values[c] = column.getter().getDouble(row);
+            }
+        }
+        return contribution;
+    }
+
+    private Group groupFor(G key) {
+        return groups.computeIfAbsent(key, Group::new);
+    }
+
+    private void change(K key, Contribution<G> now) {
+
+        Contribution<G> before = now == null ? contributions.remove(key) :
+                contributions.put(key, now);
+
+        Group from = null;
+        if (before != null) {
+            from = groups.get(before.group);
+            from.remove(before);
+        }
+        Group to = null;
+        boolean added = false;
+        if (now != null) {
+            to = groups.get(now.group);
+            if (to == null) {
+                to = groupFor(now.group);
+                added = true;
+            }
+            to.add(now);
+        }
+
+        if (from != null && from != to) {
+            publish(before.group, from, false);
+        }
+        if (to != null) {
+            publish(now.group, to, added);
+        }
+    }
+
+    private void publish(G key, Group group, boolean added) {
+        if (group.count == 0) {
+            groups.remove(key);
+            subscribers.onDelete(key);
+            return;
+        }
+        int[] changed = group.update();
+        if (added) {
+            subscribers.onData(key, group.row);
+        }
+        else if (changed.length > 0) {
+            subscribers.onPartial(key, PartialUpdate.from(group.row).withIndices(changed));
+        }
+    }
+
+    class SourceSubscriber implements KeyedSubscriber<K> {
+
+        @Override
+        public void onData(K key, DidoData data) {
+            change(key, contributionOf(data));
+        }
+
+        /**
+         * Only partials touching the group or an aggregated field matter. The new values
+         * are read from the source row, which has already been updated.
+         */
+        @Override
+        public void onPartial(K key, PartialUpdate partial) {
+            if (relevant == null) {
+                change(key, contributionOf(source.get(key)));
+                return;
+            }
+            for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+                if (relevant.get(index)) {
+                    change(key, contributionOf(source.get(key)));
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onDelete(K key) {
+            if (contributions.containsKey(key)) {
+                change(key, null);
+            }
+        }
+
+        @Override
+        public void onBatchStart() {
+            subscribers.onBatchStart();
+        }
+
+        @Override
+        public void onBatchEnd() {
+            subscribers.onBatchEnd();
+        }
+    }
+
+    @Override
+    public DataSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public boolean containsKey(G key) {
+        return groups.containsKey(key);
+    }
+
+    @Override
+    public DidoData get(G key) {
+        Group group = groups.get(key);
+        return group == null ? null : group.row;
+    }
+
+    @Override
+    public Set<G> keySet() {
+        return Collections.unmodifiableSet(groups.keySet());
+    }
+
+    @Override
+    public Set<Map.Entry<G, DidoData>> entrySet() {
+        return DataJoin.entriesOf(groups.keySet(), key -> groups.get(key).row);
+    }
+
+    @Override
+    public void forEachRow(BiConsumer<? super G, ? super DidoData> action) {
+        groups.forEach((key, group) -> action.accept(key, group.row));
+    }
+
+    @Override
+    public KeyedSubscription tableSubscribe(KeyedSubscriber<G> listener) {
+        return subscribers.addSubscriber(listener);
+    }
+
+    @Override
+    public void close() {
+        closeable.close();
+    }
+}
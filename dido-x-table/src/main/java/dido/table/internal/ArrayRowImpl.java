@@ -3,6 +3,8 @@ package dido.table.internal;
 import dido.data.DataSchema;
 import dido.data.DidoData;
 import dido.data.NoSuchFieldException;
+import dido.data.partial.AbstractPartialUpdate;
+import dido.data.partial.IndexBitSet;
 import dido.data.partial.IndexSequence;
 import dido.data.partial.PartialUpdate;
 import dido.data.useful.AbstractData;
@@ -10,74 +12,98 @@ import dido.flow.DidoSubscriber;
 import dido.table.LiveRow;
 import dido.table.LiveValue;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.Consumer;
 
+/**
+ * A {@link LiveRow} of values in an array. Values mark their index in a bit set of
+ * changes kept by the row, and the changes are passed on as a partial update that is
+ * also kept by the row, so a tick doesn't allocate. The data and partial updates passed
+ * to the subscriber are views of the row, and must not be kept after the call.
+ */
 public class ArrayRowImpl implements LiveRow {
 
     private final DataSchema schema;
 
     private final DidoSubscriber didoSubscriber;
 
-    private final ObjectLiveValue[] values;
+    private final AbstractLiveValue[] values;
+
+    private final IndexBitSet dirty;
+
+    private final RowData rowData = new RowData();
+
+    private final ChangedPartial changedPartial = new ChangedPartial();
 
     public ArrayRowImpl(DataSchema schema,
                         DidoSubscriber didoSubscriber) {
         this.schema = schema;
         this.didoSubscriber = didoSubscriber;
-        values = new ObjectLiveValue[schema.lastIndex()];
+        values = new AbstractLiveValue[schema.lastIndex()];
+        dirty = new IndexBitSet(schema.lastIndex());
         for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
-            values[i -1] = new ObjectLiveValue();
+            values[i -1] = AbstractLiveValue.forType(schema.getTypeAt(i));
+            values[i -1].attach(dirty, i);
         }
     }
 
     void onData(DidoData data, Consumer<LiveRow> ops) {
         load(IndexSequence.fromSchema(data.getSchema()), data, ops);
 
-        boolean changed = false;
-        for (ObjectLiveValue value : values) {
-            if (value.changed) {
-                changed = true;
-                value.changed = false;
+        if (!dirty.isEmpty()) {
+            dirty.clear();
+            if (didoSubscriber != null) {
+                didoSubscriber.onData(rowData);
             }
         }
-        if (changed && didoSubscriber != null) {
-            didoSubscriber.onData(new RowData());
-        }
     }
 
-    public void onPartial(PartialUpdate partial, Consumer<LiveRow> ops) {
-        load(partial, partial.getData(), ops);
+    public void onPartial(PartialUpdate partial, LiveOperation ops) {
+        loadValues(partial, partial.getData());
+        ops.accept(this, partial);
 
-        List<Integer> changed = new ArrayList<>();
-        for (int i = 0; i < values.length; ++i) {
-            if (values[i].changed) {
-                changed.add(i + 1);
-                values[i].changed = false;
+        if (!dirty.isEmpty()) {
+            if (didoSubscriber != null) {
+                didoSubscriber.onPartial(changedPartial);
             }
+            dirty.clear();
+        }
+    }
+
+    void onDelete(DidoData keyData) {
+        if (didoSubscriber != null) {
+            didoSubscriber.onDelete(keyData);
         }
+    }
 
-        if (!changed.isEmpty() && didoSubscriber != null) {
-            int[] ai = changed.stream().mapToInt(Integer::intValue).toArray();
-            didoSubscriber.onPartial(PartialUpdate.from(new RowData()).withIndices(ai));
+    /**
+     * Clear the values and their listeners so the row can be used for another key.
+     */
+    void recycle() {
+        dirty.clear();
+        for (AbstractLiveValue value : values) {
+            if (value != null) {
+                value.reset();
+            }
         }
     }
 
     public DidoData asData() {
-        return new RowData();
+        return rowData;
     }
 
     void load(IndexSequence indices, DidoData data, Consumer<LiveRow> operations) {
+        loadValues(indices, data);
+        operations.accept(this);
+    }
+
+    private void loadValues(IndexSequence indices, DidoData data) {
 
         for (int index = indices.firstIndex(); index > 0; index = indices.nextIndex(index)) {
 
             if (schema.hasIndex(index)) {
-                values[index - 1].set(data.getAt(index));
+                values[index - 1].load(data, index);
             }
         }
-        operations.accept(this);
-
     }
 
     @Override
@@ -119,5 +145,61 @@ public class ArrayRowImpl implements LiveRow {
         public Object getAt(int index) {
             return values[index -1].get();
         }
+
+        @Override
+        public boolean hasAt(int index) {
+            return values[index -1].has();
+        }
+
+        @Override
+        public boolean getBooleanAt(int index) {
+            return values[index -1].getBoolean();
+        }
+
+        @Override
+        public int getIntAt(int index) {
+            return values[index -1].getInt();
+        }
+
+        @Override
+        public long getLongAt(int index) {
+            return values[index -1].getLong();
+        }
+
+        @Override
+        public double getDoubleAt(int index) {
+            return values[index -1].getDouble();
+        }
+    }
+
+    /**
+     * The changes since they were last passed on.
+     */
+    class ChangedPartial extends AbstractPartialUpdate {
+
+        @Override
+        public DidoData getData() {
+            return rowData;
+        }
+
+        @Override
+        public int firstIndex() {
+            return dirty.firstIndex();
+        }
+
+        @Override
+        public int nextIndex(int index) {
+            return dirty.nextIndex(index);
+        }
+
+        @Override
+        public int lastIndex() {
+            return dirty.lastIndex();
+        }
+
+        @Override
+        public int getSize() {
+            return dirty.getSize();
+        }
     }
 }
@@ -0,0 +1,83 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+
+import java.lang.reflect.Type;
+
+/**
+ * A value of a {@code boolean} field, held without boxing.
+ */
+public class BooleanLiveValue extends AbstractLiveValue {
+
+    private boolean value;
+
+    private boolean has;
+
+    @Override
+    public boolean has() {
+        return has;
+    }
+
+    @Override
+    public Type getType() {
+        return boolean.class;
+    }
+
+    @Override
+    public Object get() {
+        return has ? value : null;
+    }
+
+    @Override
+    public boolean getBoolean() {
+        if (!has) {
+            throw new NullPointerException("No value");
+        }
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        if (has) {
+            has = false;
+            markChanged();
+            fireChange();
+        }
+    }
+
+    @Override
+    public void set(Object value) {
+        if (value == null) {
+            clear();
+        }
+        else {
+            setBoolean((Boolean) value);
+        }
+    }
+
+    @Override
+    public void setBoolean(boolean value) {
+        if (!has || this.value != value) {
+            this.value = value;
+            has = true;
+            markChanged();
+            fireChange();
+        }
+    }
+
+    @Override
+    void load(DidoData data, int index) {
+        if (data.hasAt(index)) {
+            setBoolean(data.getBooleanAt(index));
+        }
+        else {
+            clear();
+        }
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        has = false;
+    }
+}
@@ -0,0 +1,491 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.useful.AbstractData;
+
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * A {@link RowStore} that keeps rows as a struct of arrays. Each field in the schema has a
+ * column, which is a primitive array for {@code double}, {@code long} and {@code int}
+ * fields, and a dictionary encoded {@code int} array for {@code String} fields that ask for
+ * it. Any other field is held in an {@code Object} array. Each column has a bitmap of which
+ * rows have a value.
+ * <p>
+ * Rows are handed out as flyweight {@link DidoData} views over the columns by row slot.
+ * A view reflects later updates to its row and is only valid until the row is removed,
+ * after which the slot may be reused for another key.
+ * </p>
+ * <p>
+ * A String dictionary only ever grows, so dictionary encoding is only for fields such as
+ * exchange codes and currencies that are drawn from a limited set of values, never for
+ * the key or anything else that is mostly unique.
+ * </p>
+ */
+class ColumnarRowStore<K extends Comparable<K>> implements RowStore<K> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final DataSchema schema;
+
+    private HashKeyIndex<K> index = new HashKeyIndex<>();
+
+    private final boolean sortedKeys;
+
+    private final Column[] columns;
+
+    /** The indices of the String fields to dictionary encode. */
+    private final BitSet dictionary;
+
+    private int capacity = INITIAL_CAPACITY;
+
+    ColumnarRowStore(DataSchema schema, boolean sortedKeys) {
+        this(schema, sortedKeys, new BitSet());
+    }
+
+    /**
+     * @param dictionary The indices of the String fields to dictionary encode.
+     */
+    ColumnarRowStore(DataSchema schema, boolean sortedKeys, BitSet dictionary) {
+        this.schema = schema;
+        this.sortedKeys = sortedKeys;
+        this.dictionary = (BitSet) dictionary.clone();
+        this.columns = new Column[schema.lastIndex()];
+        for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
+            Type type = schema.getTypeAt(i);
+            if (dictionary.get(i) && type != String.class) {
+                throw new IllegalArgumentException("Only String fields can be dictionary encoded, "
+                        + schema.getFieldNameAt(i) + " is " + type);
+            }
+        }
+        createColumns();
+    }
+
+    private void createColumns() {
+        for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
+            columns[i - 1] = dictionary.get(i) ? new StringColumn(capacity) :
+                    columnFor(schema.getTypeAt(i), capacity);
+        }
+    }
+
+    static Column columnFor(Type type, int capacity) {
+        if (type == double.class || type == Double.class) {
+            return new DoubleColumn(capacity);
+        }
+        else if (type == long.class || type == Long.class) {
+            return new LongColumn(capacity);
+        }
+        else if (type == int.class || type == Integer.class) {
+            return new IntColumn(capacity);
+        }
+        else {
+            return new ObjectColumn(capacity);
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return index.slotOf(key) >= 0;
+    }
+
+    @Override
+    public DidoData get(K key) {
+        int slot = index.slotOf(key);
+        return slot < 0 ? null : new RowView(slot);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return sortedKeys ? index.sortedKeySet() : index.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, DidoData>> iterator() {
+                Iterator<K> keys = keySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K, DidoData> next() {
+                        K key = keys.next();
+                        return Map.entry(key, new RowView(index.slotOf(key)));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    @Override
+    public void put(K key, DidoData data) {
+        int slot = index.add(key);
+        if (slot >= capacity) {
+            capacity = Math.max(slot + 1, capacity + (capacity >> 1));
+            for (Column column : columns) {
+                if (column != null) {
+                    column.ensureCapacity(capacity);
+                }
+            }
+        }
+        DataSchema dataSchema = data.getSchema();
+        for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
+            if (dataSchema.hasIndex(i) && data.hasAt(i)) {
+                columns[i - 1].set(slot, data, i);
+            }
+            else {
+                columns[i - 1].clear(slot);
+            }
+        }
+    }
+
+    @Override
+    public boolean update(K key, PartialUpdate partial) {
+        int slot = index.slotOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        DidoData data = partial.getData();
+        for (int i = partial.firstIndex(); i > 0; i = partial.nextIndex(i)) {
+            if (data.hasAt(i)) {
+                columns[i - 1].set(slot, data, i);
+            }
+            else {
+                columns[i - 1].clear(slot);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        int slot = index.remove(key);
+        if (slot < 0) {
+            return false;
+        }
+        for (Column column : columns) {
+            if (column != null) {
+                column.clear(slot);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drop the index and start again with empty columns, so the space they took can be
+     * collected. Views of the rows can't be used afterwards.
+     */
+    @Override
+    public void close() {
+        index = new HashKeyIndex<>();
+        capacity = INITIAL_CAPACITY;
+        createColumns();
+    }
+
+    /**
+     * A flyweight view of a row.
+     */
+    class RowView extends AbstractData {
+
+        private final int slot;
+
+        RowView(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public DataSchema getSchema() {
+            return schema;
+        }
+
+        @Override
+        public boolean hasAt(int index) {
+            return columns[index - 1].has(slot);
+        }
+
+        @Override
+        public Object getAt(int index) {
+            return columns[index - 1].get(slot);
+        }
+
+        @Override
+        public int getIntAt(int index) {
+            return columns[index - 1].getInt(slot);
+        }
+
+        @Override
+        public long getLongAt(int index) {
+            return columns[index - 1].getLong(slot);
+        }
+
+        @Override
+        public double getDoubleAt(int index) {
+            return columns[index - 1].getDouble(slot);
+        }
+
+        @Override
+        public String getStringAt(int index) {
+            return columns[index - 1].getString(slot);
+        }
+    }
+
+    /**
+     * A column of values with a presence bitmap.
+     */
+    abstract static class Column {
+
+        private long[] present;
+
+        Column(int capacity) {
+            present = new long[wordsFor(capacity)];
+        }
+
+        static int wordsFor(int capacity) {
+            return (capacity + 63) >>> 6;
+        }
+
+        void ensureCapacity(int capacity) {
+            int words = wordsFor(capacity);
+            if (words > present.length) {
+                present = Arrays.copyOf(present, words);
+            }
+            growTo(capacity);
+        }
+
+        abstract void growTo(int capacity);
+
+        boolean has(int slot) {
+            return (present[slot >>> 6] & (1L << slot)) != 0;
+        }
+
+        void markPresent(int slot) {
+            present[slot >>> 6] |= 1L << slot;
+        }
+
+        void clear(int slot) {
+            present[slot >>> 6] &= ~(1L << slot);
+        }
+
+        /**
+         * Set the value from the field of some data. The field is known to have a value.
+         */
+        abstract void set(int slot, DidoData data, int index);
+
+        abstract Object getValue(int slot);
+
+        Object get(int slot) {
+            return has(slot) ? getValue(slot) : null;
+        }
+
+        int getInt(int slot) {
+            return ((Number) get(slot)).intValue();
+        }
+
+        long getLong(int slot) {
+            return ((Number) get(slot)).longValue();
+        }
+
+        double getDouble(int slot) {
+            return ((Number) get(slot)).doubleValue();
+        }
+
+        String getString(int slot) {
+            Object value = get(slot);
+            return value == null ? null : value.toString();
+        }
+    }
+
+    static class DoubleColumn extends Column {
+
+        private double[] values;
+
+        DoubleColumn(int capacity) {
+            super(capacity);
+            values = new double[capacity];
+        }
+
+        @Override
+        void growTo(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int slot, DidoData data, int index) {
+            values[slot] = data.getDoubleAt(index);
+            markPresent(slot);
+        }
+
+        @Override
+        Object getValue(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        double getDouble(int slot) {
+            return has(slot) ? values[slot] : super.getDouble(slot);
+        }
+    }
+
+    static class LongColumn extends Column {
+
+        private long[] values;
+
+        LongColumn(int capacity) {
+            super(capacity);
+            values = new long[capacity];
+        }
+
+        @Override
+        void growTo(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int slot, DidoData data, int index) {
+            values[slot] = data.getLongAt(index);
+            markPresent(slot);
+        }
+
+        @Override
+        Object getValue(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        long getLong(int slot) {
+            return has(slot) ? values[slot] : super.getLong(slot);
+        }
+
+        @Override
+        double getDouble(int slot) {
+            return has(slot) ? values[slot] : super.getDouble(slot);
+        }
+    }
+
+    static class IntColumn extends Column {
+
+        private int[] values;
+
+        IntColumn(int capacity) {
+            super(capacity);
+            values = new int[capacity];
+        }
+
+        @Override
+        void growTo(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int slot, DidoData data, int index) {
+            values[slot] = data.getIntAt(index);
+            markPresent(slot);
+        }
+
+        @Override
+        Object getValue(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        int getInt(int slot) {
+            return has(slot) ? values[slot] : super.getInt(slot);
+        }
+
+        @Override
+        long getLong(int slot) {
+            return has(slot) ? values[slot] : super.getLong(slot);
+        }
+
+        @Override
+        double getDouble(int slot) {
+            return has(slot) ? values[slot] : super.getDouble(slot);
+        }
+    }
+
+    static class StringColumn extends Column {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        private final List<String> dictionary = new ArrayList<>();
+
+        private int[] values;
+
+        StringColumn(int capacity) {
+            super(capacity);
+            values = new int[capacity];
+        }
+
+        @Override
+        void growTo(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int slot, DidoData data, int index) {
+            String value = data.getStringAt(index);
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codes.put(value, code);
+            }
+            values[slot] = code;
+            markPresent(slot);
+        }
+
+        @Override
+        Object getValue(int slot) {
+            return dictionary.get(values[slot]);
+        }
+
+        @Override
+        String getString(int slot) {
+            return has(slot) ? dictionary.get(values[slot]) : null;
+        }
+    }
+
+    static class ObjectColumn extends Column {
+
+        private Object[] values;
+
+        ObjectColumn(int capacity) {
+            super(capacity);
+            values = new Object[capacity];
+        }
+
+        @Override
+        void growTo(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int slot, DidoData data, int index) {
+            values[slot] = data.getAt(index);
+            markPresent(slot);
+        }
+
+        @Override
+        void clear(int slot) {
+            super.clear(slot);
+            values[slot] = null;
+        }
+
+        @Override
+        Object getValue(int slot) {
+            return values[slot];
+        }
+    }
+}
@@ -2,6 +2,8 @@ package dido.table.internal;
 
 import dido.data.DataSchema;
 import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
 import dido.data.partial.IndexSequence;
 import dido.data.partial.PartialUpdate;
 import dido.data.util.EmptyData;
@@ -15,10 +17,8 @@ import dido.table.KeyedSubscriber;
 import dido.table.KeyedSubscription;
 import dido.table.util.KeyedDataSubscribers;
 
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class DataJoin<K extends Comparable<K>>
@@ -30,6 +30,12 @@ public class DataJoin<K extends Comparable<K>>
     private static class LeftJoinToken {
     }
 
+    private static class OuterJoinToken {
+    }
+
+    private record MaterialisedToken(boolean keepLeft, boolean keepRight) {
+    }
+
     private final KeyedDataSubscribers<K> subscribers;
 
     private final Concatenator concatenator;
@@ -80,6 +86,30 @@ public class DataJoin<K extends Comparable<K>>
         this.subscribers = new KeyedDataSubscribers<>(concatenator.getSchema());
     }
 
+    private DataJoin(DataTable<K> left,
+                     DataTable<K> right,
+                     OuterJoinToken ignored,
+                     QuietlyCloseable additionalClosable) {
+        this.left = left;
+        this.right = right;
+        this.concatenator = Concatenator.fromSchemas(left.getSchema(), right.getSchema());
+        this.additionalClosable = additionalClosable;
+        this.subscribers = new KeyedDataSubscribers<>(concatenator.getSchema());
+        this.join = new OuterJoin();
+    }
+
+    private DataJoin(DataTable<K> left,
+                     DataTable<K> right,
+                     MaterialisedToken token,
+                     QuietlyCloseable additionalClosable) {
+        this.left = left;
+        this.right = right;
+        this.concatenator = Concatenator.fromSchemas(left.getSchema(), right.getSchema());
+        this.additionalClosable = additionalClosable;
+        this.subscribers = new KeyedDataSubscribers<>(concatenator.getSchema());
+        this.join = new MaterialisedJoin(token.keepLeft(), token.keepRight());
+    }
+
     public static class From<K extends Comparable<K>> {
 
         private final DataTable<K> left;
@@ -108,20 +138,41 @@ public class DataJoin<K extends Comparable<K>>
 
         private final DataTable<K> left;
 
+        private boolean materialised;
+
         public PrimaryKeys(DataTable<K> left) {
             this.left = Objects.requireNonNull(left);
         }
 
+        /**
+         * Keep the joined rows rather than building them on each lookup.
+         *
+         * @see DataJoin.MaterialisedJoin
+         */
+        public PrimaryKeys<K> materialised() {
+            this.materialised = true;
+            return this;
+        }
+
         public DataJoin<K> innerJoin(DataTable<K> right) {
+            if (materialised) {
+                return new DataJoin<>(left, right, new MaterialisedToken(false, false), null);
+            }
             return new DataJoin<>(left, right, new InnerJoinToken());
         }
 
         public DataJoin<K> leftJoin(DataTable<K> right) {
+            if (materialised) {
+                return new DataJoin<>(left, right, new MaterialisedToken(true, false), null);
+            }
             return new DataJoin<>(left, right, new LeftJoinToken());
         }
 
         public DataJoin<K> outerJoin(DataTable<K> right) {
-            return null;
+            if (materialised) {
+                return new DataJoin<>(left, right, new MaterialisedToken(true, true), null);
+            }
+            return new DataJoin<>(left, right, new OuterJoinToken(), null);
         }
     }
 
@@ -131,26 +182,67 @@ public class DataJoin<K extends Comparable<K>>
 
         private final KeyExtractor<K2> keyExtractor;
 
+        private boolean materialised;
+
+        private Collection<String> reads;
+
         public ForeignKey(DataTable<K1> left, KeyExtractor<K2> keyExtractor) {
             this.keyExtractor = Objects.requireNonNull(keyExtractor);
             this.left = Objects.requireNonNull(left);
         }
 
+        /**
+         * Keep the joined rows rather than building them on each lookup.
+         *
+         * @see DataJoin.MaterialisedJoin
+         */
+        public ForeignKey<K1, K2> materialised() {
+            this.materialised = true;
+            return this;
+        }
+
+        /**
+         * The fields of the left table the foreign key is taken from, for a key extractor
+         * that doesn't say. Partial updates to none of them aren't looked up again.
+         */
+        public ForeignKey<K1, K2> reading(String... fields) {
+            this.reads = List.of(fields);
+            return this;
+        }
+
         public DataJoin<K1> innerJoin(DataTable<K2> right) {
             CloseableTable<K1> reKeyedRight = ForeignKeyedTable.byForeignKey(
-                    left, right, keyExtractor);
+                    left, right, keyExtractor, reads);
+            if (materialised) {
+                return new DataJoin<>(left, reKeyedRight,
+                        new MaterialisedToken(false, false), reKeyedRight);
+            }
             return new DataJoin<>(left, reKeyedRight,
                     new InnerJoinToken(), reKeyedRight);
         }
 
         public DataJoin<K1> leftJoin(DataTable<K2> right) {
-            CloseableTable<K1> reKeyedRight = ForeignKeyedTable.byForeignKey(left, right, keyExtractor);
+            CloseableTable<K1> reKeyedRight = ForeignKeyedTable.byForeignKey(left, right, keyExtractor, reads);
+            if (materialised) {
+                return new DataJoin<>(left, reKeyedRight,
+                        new MaterialisedToken(true, false), reKeyedRight);
+            }
             return new DataJoin<>(left, reKeyedRight,
                     new LeftJoinToken(), reKeyedRight);
         }
 
+        /**
+         * With a foreign key the right side only has rows for keys on the left, so this
+         * gives the same rows as a left join.
+         */
         public DataJoin<K1> outerJoin(DataTable<K2> right) {
-            return null;
+            CloseableTable<K1> reKeyedRight = ForeignKeyedTable.byForeignKey(left, right, keyExtractor, reads);
+            if (materialised) {
+                return new DataJoin<>(left, reKeyedRight,
+                        new MaterialisedToken(true, true), reKeyedRight);
+            }
+            return new DataJoin<>(left, reKeyedRight,
+                    new OuterJoinToken(), reKeyedRight);
         }
     }
 
@@ -192,6 +284,37 @@ public class DataJoin<K extends Comparable<K>>
         }
     }
 
+    /**
+     * A view of entries over the keys, with each row joined as it is reached, so nothing
+     * is built up front.
+     */
+    static <K> Set<Map.Entry<K, DidoData>> entriesOf(Set<K> keys, Function<? super K, ? extends DidoData> rowOf) {
+
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, DidoData>> iterator() {
+                Iterator<K> it = keys.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K, DidoData> next() {
+                        K key = it.next();
+                        return Map.entry(key, rowOf.apply(key));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
     interface View<K> extends QuietlyCloseable {
 
         boolean containsKey(K key);
@@ -204,93 +327,123 @@ public class DataJoin<K extends Comparable<K>>
     }
 
 
+    /**
+     * A join of the keys on both sides. The keys in the join are kept up to date from
+     * the subscriptions to each side, so key lookups and iteration don't need to
+     * compare the two sides.
+     */
     class InnerJoin implements View<K> {
 
+        private final Set<K> keys = new TreeSet<>();
+
         private final QuietlyCloseable leftClose;
 
         private final QuietlyCloseable rightClose;
 
         InnerJoin() {
 
+            for (K key : left.keySet()) {
+                if (right.containsKey(key)) {
+                    keys.add(key);
+                }
+            }
+
             leftClose = left.tableSubscribe(new KeyedSubscriber<K>() {
                 @Override
                 public void onData(K key, DidoData data) {
-                    DidoData combined = get(key);
-                    if (combined != null) {
-                        subscribers.onData(key, combined);
+                    DidoData rightData = right.get(key);
+                    if (rightData != null) {
+                        keys.add(key);
+                        subscribers.onData(key, concatenator.concat(data, rightData));
                     }
                 }
 
                 @Override
-                public void onPartial(K key, PartialUpdate data) {
-                    if (containsKey(key)) {
-                        subscribers.onPartial(key, data);
+                public void onPartial(K key, PartialUpdate partial) {
+                    if (keys.contains(key)) {
+                        subscribers.onPartial(key, PartialUpdate
+                                .from(concatenator.concat(partial.getData(), null))
+                                .withIndices(partial.getIndices()));
                     }
                 }
 
                 @Override
                 public void onDelete(K key) {
-                    DidoData rightData = right.get(key);
-                    if (rightData != null) {
+                    if (keys.remove(key)) {
                         subscribers.onDelete(key);
                     }
                 }
+
+                @Override
+                public void onBatchStart() {
+                    subscribers.onBatchStart();
+                }
+
+                @Override
+                public void onBatchEnd() {
+                    subscribers.onBatchEnd();
+                }
             });
             rightClose = right.tableSubscribe(new KeyedSubscriber<>() {
                 @Override
                 public void onData(K key, DidoData data) {
-                    DidoData combined = get(key);
-                    if (combined != null) {
-                        subscribers.onData(key, combined);
+                    DidoData leftData = left.get(key);
+                    if (leftData != null) {
+                        keys.add(key);
+                        subscribers.onData(key, concatenator.concat(leftData, data));
                     }
                 }
 
                 @Override
-                public void onPartial(K key, PartialUpdate data) {
-                    if (containsKey(key)) {
-                        subscribers.onPartial(key, data);
+                public void onPartial(K key, PartialUpdate partial) {
+                    if (keys.contains(key)) {
+                        subscribers.onPartial(key,
+                                PartialUpdate.from(concatenator.concat(null, partial.getData()))
+                                    .withIndices(partial.transpose(
+                                            left.getSchema().lastIndex()).getIndices()));
                     }
                 }
 
                 @Override
                 public void onDelete(K key) {
-                    DidoData leftData = left.get(key);
-                    if (leftData != null) {
+                    if (keys.remove(key)) {
                         subscribers.onDelete(key);
                     }
                 }
+
+                @Override
+                public void onBatchStart() {
+                    subscribers.onBatchStart();
+                }
+
+                @Override
+                public void onBatchEnd() {
+                    subscribers.onBatchEnd();
+                }
             });
         }
 
         @Override
         public boolean containsKey(K key) {
-            return left.containsKey(key) && right.containsKey(key);
+            return keys.contains(key);
         }
 
         @Override
         public DidoData get(K key) {
-            DidoData leftData = left.get(key);
-            DidoData rightData = right.get(key);
-            if (leftData == null || rightData == null) {
+            if (!keys.contains(key)) {
                 return null;
-            } else {
-                return concatenator.concat(leftData, rightData);
             }
+            return concatenator.concat(left.get(key), right.get(key));
         }
 
         @Override
         public Set<K> keySet() {
-            Set<K> keys = new TreeSet<>(left.keySet());
-            keys.retainAll(right.keySet());
-            return keys;
+            return Collections.unmodifiableSet(keys);
         }
 
         @Override
         public Set<Map.Entry<K, DidoData>> entrySet() {
-
-            return keySet().stream()
-                    .map(k -> Map.entry(k, get(k)))
-                    .collect(Collectors.toSet());
+            return entriesOf(keys, key -> concatenator.concat(left.get(key), right.get(key)));
         }
 
         @Override
@@ -331,6 +484,16 @@ public class DataJoin<K extends Comparable<K>>
                         subscribers.onDelete(key);
                     }
                 }
+
+                @Override
+                public void onBatchStart() {
+                    subscribers.onBatchStart();
+                }
+
+                @Override
+                public void onBatchEnd() {
+                    subscribers.onBatchEnd();
+                }
             });
             rightClose = right.tableSubscribe(new KeyedSubscriber<K>() {
                 @Override
@@ -361,6 +524,16 @@ public class DataJoin<K extends Comparable<K>>
                                                 .transpose(left.getSchema().lastIndex()).getIndices()));
                     }
                 }
+
+                @Override
+                public void onBatchStart() {
+                    subscribers.onBatchStart();
+                }
+
+                @Override
+                public void onBatchEnd() {
+                    subscribers.onBatchEnd();
+                }
             });
         }
 
@@ -401,4 +574,364 @@ public class DataJoin<K extends Comparable<K>>
         }
     }
 
+    /**
+     * A join of the keys on either side, with the missing side empty. As with
+     * {@link InnerJoin} the keys are kept up to date from the subscriptions. A side
+     * appearing or disappearing while the other side remains is passed on as a partial
+     * update of that side's fields.
+     */
+    class OuterJoin implements View<K> {
+
+        private final Set<K> keys = new TreeSet<>();
+
+        private final QuietlyCloseable leftClose;
+
+        private final QuietlyCloseable rightClose;
+
+        OuterJoin() {
+
+            keys.addAll(left.keySet());
+            keys.addAll(right.keySet());
+
+            int offset = left.getSchema().lastIndex();
+            int[] leftIndices = left.getSchema().getIndices();
+            int[] rightIndices = IndexSequence.fromSchema(right.getSchema())
+                    .transpose(offset).getIndices();
+
+            leftClose = left.tableSubscribe(new KeyedSubscriber<K>() {
+                @Override
+                public void onData(K key, DidoData data) {
+                    keys.add(key);
+                    subscribers.onData(key, concatenator.concat(data, rightOrEmpty(key)));
+                }
+
+                @Override
+                public void onPartial(K key, PartialUpdate partial) {
+                    subscribers.onPartial(key, PartialUpdate
+                            .from(concatenator.concat(partial.getData(), null))
+                            .withIndices(partial.getIndices()));
+                }
+
+                @Override
+                public void onDelete(K key) {
+                    DidoData rightData = right.get(key);
+                    if (rightData == null) {
+                        keys.remove(key);
+                        subscribers.onDelete(key);
+                    }
+                    else {
+                        subscribers.onPartial(key,
+                                PartialUpdate.from(concatenator.concat(null, rightData))
+                                        .withIndices(leftIndices));
+                    }
+                }
+
+                @Override
+                public void onBatchStart() {
+                    subscribers.onBatchStart();
+                }
+
+                @Override
+                public void onBatchEnd() {
+                    subscribers.onBatchEnd();
+                }
+            });
+            rightClose = right.tableSubscribe(new KeyedSubscriber<K>() {
+                @Override
+                public void onData(K key, DidoData data) {
+                    keys.add(key);
+                    subscribers.onData(key, concatenator.concat(leftOrEmpty(key), data));
+                }
+
+                @Override
+                public void onPartial(K key, PartialUpdate partial) {
+                    subscribers.onPartial(key,
+                            PartialUpdate.from(concatenator.concat(null, partial.getData()))
+                                    .withIndices(partial.transpose(offset).getIndices()));
+                }
+
+                @Override
+                public void onDelete(K key) {
+                    DidoData leftData = left.get(key);
+                    if (leftData == null) {
+                        keys.remove(key);
+                        subscribers.onDelete(key);
+                    }
+                    else {
+                        subscribers.onPartial(key,
+                                PartialUpdate.from(concatenator.concat(leftData, null))
+                                        .withIndices(rightIndices));
+                    }
+                }
+
+                @Override
+                public void onBatchStart() {
+                    subscribers.onBatchStart();
+                }
+
+                @Override
+                public void onBatchEnd() {
+                    subscribers.onBatchEnd();
+                }
+            });
+        }
+
+        private DidoData leftOrEmpty(K key) {
+            return Objects.requireNonNullElseGet(left.get(key),
+                    () -> EmptyData.withSchema(left.getSchema()));
+        }
+
+        private DidoData rightOrEmpty(K key) {
+            return Objects.requireNonNullElseGet(right.get(key),
+                    () -> EmptyData.withSchema(right.getSchema()));
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return keys.contains(key);
+        }
+
+        @Override
+        public DidoData get(K key) {
+            if (!keys.contains(key)) {
+                return null;
+            }
+            return concatenator.concat(leftOrEmpty(key), rightOrEmpty(key));
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return Collections.unmodifiableSet(keys);
+        }
+
+        @Override
+        public Set<Map.Entry<K, DidoData>> entrySet() {
+            return entriesOf(keys, this::get);
+        }
+
+        @Override
+        public void close() {
+            leftClose.close();
+            rightClose.close();
+        }
+    }
+
+    /**
+     * A join that keeps each joined row, for any kind of join. Lookups are a map get, and an update to
+     * one side is copied into the half of the row it affects. Partial updates are passed
+     * on as partial updates of the joined row, with the indices of the right side moved
+     * past those of the left.
+     * <p>
+     * Rows given out, from {@link #get(Object)} or to subscribers, are the kept rows so
+     * they change with later updates. Anything wanting to keep a row as it is must copy it.
+     * </p>
+     */
+    class MaterialisedJoin implements View<K> {
+
+        private final boolean keepLeft;
+
+        private final boolean keepRight;
+
+        private final int offset;
+
+        private final Map<K, MutableData> rows = new TreeMap<>();
+
+        private final QuietlyCloseable leftClose;
+
+        private final QuietlyCloseable rightClose;
+
+        MaterialisedJoin(boolean keepLeft, boolean keepRight) {
+            this.keepLeft = keepLeft;
+            this.keepRight = keepRight;
+            this.offset = left.getSchema().lastIndex();
+
+            for (Map.Entry<K, DidoData> entry : left.entrySet()) {
+                DidoData rightData = right.get(entry.getKey());
+                if (rightData != null || keepLeft) {
+                    rows.put(entry.getKey(), newRow(entry.getValue(), rightData));
+                }
+            }
+            if (keepRight) {
+                for (Map.Entry<K, DidoData> entry : right.entrySet()) {
+                    if (!rows.containsKey(entry.getKey())) {
+                        rows.put(entry.getKey(), newRow(null, entry.getValue()));
+                    }
+                }
+            }
+
+            leftClose = left.tableSubscribe(new KeyedSubscriber<K>() {
+                @Override
+                public void onData(K key, DidoData data) {
+                    MutableData row = rows.get(key);
+                    if (row == null) {
+                        DidoData rightData = right.get(key);
+                        if (rightData == null && !keepLeft) {
+                            return;
+                        }
+                        row = newRow(data, rightData);
+                        rows.put(key, row);
+                    }
+                    else {
+                        copyInto(row, data, 0);
+                    }
+                    subscribers.onData(key, row);
+                }
+
+                @Override
+                public void onPartial(K key, PartialUpdate partial) {
+                    MutableData row = rows.get(key);
+                    if (row != null) {
+                        subscribers.onPartial(key, applyPartial(row, partial, 0));
+                    }
+                }
+
+                @Override
+                public void onDelete(K key) {
+                    MutableData row = rows.get(key);
+                    if (row == null) {
+                        return;
+                    }
+                    if (keepRight && right.containsKey(key)) {
+                        subscribers.onPartial(key, clear(row, left.getSchema(), 0));
+                    }
+                    else {
+                        rows.remove(key);
+                        subscribers.onDelete(key);
+                    }
+                }
+
+                @Override
+                public void onBatchStart() {
+                    subscribers.onBatchStart();
+                }
+
+                @Override
+                public void onBatchEnd() {
+                    subscribers.onBatchEnd();
+                }
+            });
+            rightClose = right.tableSubscribe(new KeyedSubscriber<K>() {
+                @Override
+                public void onData(K key, DidoData data) {
+                    MutableData row = rows.get(key);
+                    if (row == null) {
+                        DidoData leftData = left.get(key);
+                        if (leftData == null && !keepRight) {
+                            return;
+                        }
+                        row = newRow(leftData, data);
+                        rows.put(key, row);
+                    }
+                    else {
+                        copyInto(row, data, offset);
+                    }
+                    subscribers.onData(key, row);
+                }
+
+                @Override
+                public void onPartial(K key, PartialUpdate partial) {
+                    MutableData row = rows.get(key);
+                    if (row != null) {
+                        subscribers.onPartial(key, applyPartial(row, partial, offset));
+                    }
+                }
+
+                @Override
+                public void onDelete(K key) {
+                    MutableData row = rows.get(key);
+                    if (row == null) {
+                        return;
+                    }
+                    if (keepLeft && left.containsKey(key)) {
+                        subscribers.onPartial(key, clear(row, right.getSchema(), offset));
+                    }
+                    else {
+                        rows.remove(key);
+                        subscribers.onDelete(key);
+                    }
+                }
+
+                @Override
+                public void onBatchStart() {
+                    subscribers.onBatchStart();
+                }
+
+                @Override
+                public void onBatchEnd() {
+                    subscribers.onBatchEnd();
+                }
+            });
+        }
+
+        private MutableData newRow(DidoData leftData, DidoData rightData) {
+            return MutableArrayData.copy(concatenator.concat(
+                    Objects.requireNonNullElseGet(leftData,
+                            () -> EmptyData.withSchema(left.getSchema())),
+                    Objects.requireNonNullElseGet(rightData,
+                            () -> EmptyData.withSchema(right.getSchema()))));
+        }
+
+        private void copyInto(MutableData row, DidoData data, int by) {
+            DataSchema schema = data.getSchema();
+            for (int index = schema.firstIndex(); index > 0; index = schema.nextIndex(index)) {
+                setOrClear(row, index + by, data, index);
+            }
+        }
+
+        private PartialUpdate applyPartial(MutableData row, PartialUpdate partial, int by) {
+            DidoData data = partial.getData();
+            int[] indices = new int[partial.getSize()];
+            int i = 0;
+            for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+                setOrClear(row, index + by, data, index);
+                indices[i++] = index + by;
+            }
+            return PartialUpdate.from(row).withIndices(indices);
+        }
+
+        private PartialUpdate clear(MutableData row, DataSchema schema, int by) {
+            int[] indices = new int[schema.getSize()];
+            int i = 0;
+            for (int index = schema.firstIndex(); index > 0; index = schema.nextIndex(index)) {
+                row.clearAt(index + by);
+                indices[i++] = index + by;
+            }
+            return PartialUpdate.from(row).withIndices(indices);
+        }
+
+        private static void setOrClear(MutableData row, int rowIndex, DidoData data, int index) {
+            if (data.hasAt(index)) {
+                row.setAt(rowIndex, data.getAt(index));
+            }
+            else {
+                row.clearAt(rowIndex);
+            }
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return rows.containsKey(key);
+        }
+
+        @Override
+        public DidoData get(K key) {
+            return rows.get(key);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return Collections.unmodifiableSet(rows.keySet());
+        }
+
+        @Override
+        public Set<Map.Entry<K, DidoData>> entrySet() {
+            return Collections.<K, DidoData>unmodifiableMap(rows).entrySet();
+        }
+
+        @Override
+        public void close() {
+            leftClose.close();
+            rightClose.close();
+        }
+    }
 }
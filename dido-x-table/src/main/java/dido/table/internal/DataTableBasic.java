@@ -3,43 +3,90 @@ package dido.table.internal;
 
 import dido.data.DataSchema;
 import dido.data.DidoData;
-import dido.data.mutable.MutableArrayData;
-import dido.data.mutable.MutableData;
 import dido.data.partial.PartialUpdate;
 import dido.flow.DidoSubscriber;
 import dido.flow.util.KeyExtractor;
 import dido.flow.util.KeyExtractors;
+import dido.table.CloseableTable;
 import dido.table.DataTable;
 import dido.table.KeyedSubscriber;
 import dido.table.KeyedSubscription;
 import dido.table.util.KeyedDataSubscribers;
+import dido.table.util.TableSnapshot;
 
+import java.util.BitSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 
-public class DataTableBasic<K extends Comparable<K>> implements DataTable<K>, DidoSubscriber {
+public class DataTableBasic<K extends Comparable<K>> implements CloseableTable<K>, DidoSubscriber {
 
     private final DataSchema schema;
 
     private final KeyExtractor<K> keyExtractor;
 
-    private final Map<K, MutableData> rows = new TreeMap<>();
+    private final RowStore<K> rows;
 
     private final KeyedDataSubscribers<K> subscribers;
 
-    DataTableBasic(DataSchema schema, KeyExtractor<K> keyExtractor) {
+    DataTableBasic(DataSchema schema, KeyExtractor<K> keyExtractor, RowStore<K> rows) {
         this.schema = schema;
         this.keyExtractor = keyExtractor;
+        this.rows = rows;
         this.subscribers = new KeyedDataSubscribers<>(schema);
     }
 
+    /**
+     * How rows are stored.
+     */
+    public enum Storage {
+
+        /** Rows are kept in a {@link TreeMap}. Keys are always in order. */
+        TREE,
+
+        /**
+         * Rows are found with an open addressing hash index. Keys are only in order if
+         * {@link Settings#sortedKeys(boolean)} is set.
+         */
+        HASH,
+
+        /**
+         * Rows are held in primitive columns, one per field, found with the same hash
+         * index as {@link #HASH}. Updates to primitive fields don't box and the rows take
+         * much less memory. Rows from {@link DataTableBasic#get(Comparable)} are views
+         * that are only valid until the row is deleted.
+         */
+        COLUMNAR,
+
+        /**
+         * Rows are held outside the Java heap in fixed width records laid out from the
+         * schema, found with the same hash index as {@link #HASH}. This is for very large
+         * tables where GC work would otherwise be a problem. As with {@link #COLUMNAR},
+         * rows are views that are only valid until the row is deleted.
+         */
+        OFF_HEAP,
+
+        /**
+         * Rows are held in a persistent tree that is replaced, not changed, on each
+         * update. Updates cost more, but {@link DataTableBasic#snapshot()} is free and
+         * safe to read from any thread while updates continue.
+         */
+        PERSISTENT,
+    }
+
     public static class Settings<K extends Comparable<K>> {
 
         private final DataSchema schema;
 
         private KeyExtractor<K> keyExtractor;
 
+        private Storage storage;
+
+        private boolean sortedKeys;
+
+        private final BitSet dictionary = new BitSet();
+
         Settings(DataSchema schema) {
             this.schema = schema;
         }
@@ -49,10 +96,55 @@ public class DataTableBasic<K extends Comparable<K>> implements DataTable<K>, Di
             return this;
         }
 
+        /**
+         * How the table stores its rows. Defaults to {@link Storage#TREE}.
+         */
+        public Settings<K> storage(Storage storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        /**
+         * For storage that isn't naturally ordered, should {@link DataTableBasic#keySet()}
+         * and {@link DataTableBasic#entrySet()} be in key order. The order is worked out when first asked for
+         * after a change in keys, so this costs nothing on the update path.
+         */
+        public Settings<K> sortedKeys(boolean sortedKeys) {
+            this.sortedKeys = sortedKeys;
+            return this;
+        }
+
+        /**
+         * With {@link Storage#COLUMNAR}, hold these String fields as codes into a dictionary
+         * of their values. The dictionary is never cleared, so this is only for fields with
+         * few distinct values, and never the key.
+         */
+        public Settings<K> dictionaryEncoded(String... fields) {
+            for (String field : fields) {
+                int index = schema.getIndexNamed(field);
+                if (index == 0) {
+                    throw new IllegalArgumentException("No field " + field + " in " + schema);
+                }
+                dictionary.set(index);
+            }
+            return this;
+        }
+
         public DataTableBasic<K> create() {
             return new DataTableBasic<>(schema,
                     keyExtractor == null ? KeyExtractors.<K>fromFirstField().keyExtractorFor(schema) :
-                            keyExtractor);
+                            keyExtractor,
+                    createStore());
+        }
+
+        RowStore<K> createStore() {
+            return switch (Objects.requireNonNullElse(storage, Storage.TREE)) {
+                case TREE -> new MapRowStore<K>(new TreeMap<>());
+                case HASH -> new HashRowStore<>(sortedKeys);
+                case COLUMNAR -> new ColumnarRowStore<>(schema, sortedKeys, dictionary);
+                case OFF_HEAP -> new OffHeapRowStore<>(schema, sortedKeys);
+                case PERSISTENT -> new PersistentRowStore<>();
+            };
         }
     }
 
@@ -81,10 +173,18 @@ public class DataTableBasic<K extends Comparable<K>> implements DataTable<K>, Di
         return rows.keySet();
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
     @Override
     public Set<Map.Entry<K, DidoData>> entrySet() {
-        return (Set) rows.entrySet();
+        return rows.entrySet();
+    }
+
+    /**
+     * Provide a snapshot of the table. With {@link Storage#PERSISTENT} this is taken
+     * without copying or locking, otherwise the rows are copied.
+     */
+    @Override
+    public DataTable<K> snapshot() {
+        return TableSnapshot.of(schema, rows.snapshot());
     }
 
     @Override
@@ -94,46 +194,68 @@ public class DataTableBasic<K extends Comparable<K>> implements DataTable<K>, Di
 
     @Override
     public void onData(DidoData data) {
+        put(keyExtractor.keyOf(data), data);
+    }
 
-        K key = keyExtractor.keyOf(data);
+    @Override
+    public void onPartial(PartialUpdate partial) {
+        update(keyExtractor.keyOf(partial.getData()), partial);
+    }
 
-        MutableData row = rows.computeIfAbsent(key,
-                k -> MutableArrayData.copy(data));
+    @Override
+    public void onDelete(DidoData keyData) {
+        delete(keyExtractor.keyOf(keyData));
+    }
 
-        subscribers.onData(key, data);
+    @Override
+    public void onBatchStart() {
+        subscribers.onBatchStart();
     }
 
     @Override
-    public void onPartial(PartialUpdate partial) {
+    public void onBatchEnd() {
+        subscribers.onBatchEnd();
+    }
 
-        DidoData data = partial.getData();
+    /**
+     * Remove all rows without telling subscribers, and release any storage held outside
+     * the heap.
+     */
+    @Override
+    public void close() {
+        rows.close();
+    }
 
-        K key = keyExtractor.keyOf(data);
+    /**
+     * The rows of {@link #snapshot()}, without the table around them.
+     */
+    Map<K, DidoData> snapshotRows() {
+        return rows.snapshot();
+    }
 
-        MutableData row = rows.get(key);
-        if (row == null) {
-            throw new IllegalArgumentException("No row for key " + key);
-        }
+    KeyExtractor<K> getKeyExtractor() {
+        return keyExtractor;
+    }
 
-        for (int index : partial.getIndices()) {
-            if (data.hasAt(index)) {
-                row.setAt(index, data.getAt(index));
-            }
-            else {
-                row.clearAt(index);
-            }
+    void put(K key, DidoData data) {
+
+        rows.put(key, data);
+
+        subscribers.onData(key, data);
+    }
+
+    void update(K key, PartialUpdate partial) {
+
+        if (!rows.update(key, partial)) {
+            throw new IllegalArgumentException("No row for key " + key);
         }
 
         subscribers.onPartial(key, partial);
     }
 
-    @Override
-    public void onDelete(DidoData keyData) {
-
-        K key = keyExtractor.keyOf(keyData);
+    void delete(K key) {
 
-        MutableData row = rows.remove(key);
-        if (row == null) {
+        if (!rows.remove(key)) {
             throw new IllegalArgumentException("No row for key " + key);
         }
 
@@ -0,0 +1,93 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+
+import java.lang.reflect.Type;
+
+/**
+ * A value of a {@code double} field, held without boxing.
+ */
+public class DoubleLiveValue extends AbstractLiveValue {
+
+    private double value;
+
+    private boolean has;
+
+    @Override
+    public boolean has() {
+        return has;
+    }
+
+    @Override
+    public Type getType() {
+        return double.class;
+    }
+
+    @Override
+    public Object get() {
+        return has ? value : null;
+    }
+
+    @Override
+    public double getDouble() {
+        if (!has) {
+            throw new NullPointerException("No value");
+        }
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        if (has) {
+            has = false;
+            markChanged();
+            fireChange();
+        }
+    }
+
+    @Override
+    public void set(Object value) {
+        if (value == null) {
+            clear();
+        }
+        else {
+            setDouble(((Number) value).doubleValue());
+        }
+    }
+
+    @Override
+    public void setDouble(double value) {
+        if (!has || Double.doubleToLongBits(this.value) != Double.doubleToLongBits(value)) {
+            this.value = value;
+            has = true;
+            markChanged();
+            fireChange();
+        }
+    }
+
+    @Override
+    public void setInt(int value) {
+        setDouble(value);
+    }
+
+    @Override
+    public void setLong(long value) {
+        setDouble(value);
+    }
+
+    @Override
+    void load(DidoData data, int index) {
+        if (data.hasAt(index)) {
+            setDouble(data.getDoubleAt(index));
+        }
+        else {
+            clear();
+        }
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        has = false;
+    }
+}
@@ -0,0 +1,217 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.QuietlyCloseable;
+import dido.table.CloseableTable;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+import dido.table.util.KeyedDataSubscribers;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * A view of the rows of a source table that match a predicate. Only the keys that match
+ * are kept, the rows are those of the source.
+ * <p>
+ * A row that starts to match is passed on as data, one that stops matching as a delete,
+ * and partial updates to a matching row are passed on as they are. If the fields the
+ * predicate reads are given, a partial that doesn't touch any of them can't change whether
+ * a row matches, so the predicate isn't tested again. Otherwise it is tested on every
+ * partial.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ */
+public class FilteredTable<K extends Comparable<K>> implements CloseableTable<K> {
+
+    private final DataTable<K> source;
+
+    private final Predicate<? super DidoData> predicate;
+
+    /** Source indices the predicate reads, or null if not known. */
+    private final BitSet reads;
+
+    private final Set<K> keys = new TreeSet<>();
+
+    private final KeyedDataSubscribers<K> subscribers;
+
+    private final QuietlyCloseable closeable;
+
+    private FilteredTable(Settings<K> settings) {
+        this.source = settings.source;
+        this.predicate = Objects.requireNonNull(settings.predicate, "No predicate");
+        DataSchema schema = source.getSchema();
+        if (settings.reads == null) {
+            this.reads = null;
+        }
+        else {
+            this.reads = new BitSet();
+            for (String field : settings.reads) {
+                int index = schema.getIndexNamed(field);
+                if (index == 0) {
+                    throw new IllegalArgumentException("No field " + field + " in " + schema);
+                }
+                reads.set(index);
+            }
+        }
+        this.subscribers = new KeyedDataSubscribers<>(schema);
+
+        source.forEachRow((key, row) -> {
+            if (predicate.test(row)) {
+                keys.add(key);
+            }
+        });
+
+        this.closeable = source.tableSubscribe(new SourceSubscriber());
+    }
+
+    public static class Settings<K extends Comparable<K>> {
+
+        private final DataTable<K> source;
+
+        private Predicate<? super DidoData> predicate;
+
+        private Collection<String> reads;
+
+        Settings(DataTable<K> source) {
+            this.source = source;
+        }
+
+        public Settings<K> where(Predicate<? super DidoData> predicate) {
+            this.predicate = predicate;
+            return this;
+        }
+
+        /**
+         * The fields the predicate reads. Partials that update none of them don't test
+         * the predicate again.
+         */
+        public Settings<K> reading(String... fields) {
+            this.reads = List.of(fields);
+            return this;
+        }
+
+        public FilteredTable<K> create() {
+            return new FilteredTable<>(this);
+        }
+    }
+
+    public static <K extends Comparable<K>> Settings<K> from(DataTable<K> source) {
+        return new Settings<>(source);
+    }
+
+    private boolean readsAny(PartialUpdate partial) {
+        if (reads == null) {
+            return true;
+        }
+        for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+            if (reads.get(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    class SourceSubscriber implements KeyedSubscriber<K> {
+
+        @Override
+        public void onData(K key, DidoData data) {
+            if (predicate.test(data)) {
+                keys.add(key);
+                subscribers.onData(key, data);
+            }
+            else if (keys.remove(key)) {
+                subscribers.onDelete(key);
+            }
+        }
+
+        /**
+         * The source row has already been updated, so the predicate is tested on that.
+         */
+        @Override
+        public void onPartial(K key, PartialUpdate partial) {
+            boolean was = keys.contains(key);
+            if (!readsAny(partial)) {
+                if (was) {
+                    subscribers.onPartial(key, partial);
+                }
+                return;
+            }
+            DidoData row = source.get(key);
+            boolean is = predicate.test(row);
+            if (is && was) {
+                subscribers.onPartial(key, partial);
+            }
+            else if (is) {
+                keys.add(key);
+                subscribers.onData(key, row);
+            }
+            else if (was) {
+                keys.remove(key);
+                subscribers.onDelete(key);
+            }
+        }
+
+        @Override
+        public void onDelete(K key) {
+            if (keys.remove(key)) {
+                subscribers.onDelete(key);
+            }
+        }
+
+        @Override
+        public void onBatchStart() {
+            subscribers.onBatchStart();
+        }
+
+        @Override
+        public void onBatchEnd() {
+            subscribers.onBatchEnd();
+        }
+    }
+
+    @Override
+    public DataSchema getSchema() {
+        return source.getSchema();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public DidoData get(K key) {
+        return keys.contains(key) ? source.get(key) : null;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return DataJoin.entriesOf(keys, source::get);
+    }
+
+    @Override
+    public void forEachRow(BiConsumer<? super K, ? super DidoData> action) {
+        keys.forEach(key -> action.accept(key, source.get(key)));
+    }
+
+    @Override
+    public KeyedSubscription tableSubscribe(KeyedSubscriber<K> listener) {
+        return subscribers.addSubscriber(listener);
+    }
+
+    @Override
+    public void close() {
+        closeable.close();
+    }
+}
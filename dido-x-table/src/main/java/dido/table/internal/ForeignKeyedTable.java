@@ -12,8 +12,25 @@ import dido.table.KeyedSubscription;
 import dido.table.util.KeyedDataSubscribers;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 
+/**
+ * A view of a reference table keyed by the keys of a child table that refers to it.
+ * The child to reference mapping, and which children have a reference row, are kept up
+ * to date from both tables so lookups and iteration don't scan the children.
+ * <p>
+ * Changes to the reference table are passed on for each child referring to it. A child
+ * that is added or deleted isn't passed on as the child table reports that, but a child
+ * whose foreign key changes, by data or a partial update, is passed on as data from the
+ * new reference row, or as a delete if there isn't one. A null foreign key refers to
+ * no row. If the fields the foreign key is taken from are known, a partial update to
+ * the child that touches none of them can't change the foreign key, so the child row
+ * isn't looked up.
+ * </p>
+ *
+ * @param <K1> The type of the child key.
+ * @param <K2> The type of the reference key.
+ */
 class ForeignKeyedTable<K1 extends Comparable<K1>, K2 extends Comparable<K2>>
         implements CloseableTable<K1> {
 
@@ -21,6 +38,9 @@ class ForeignKeyedTable<K1 extends Comparable<K1>, K2 extends Comparable<K2>>
 
     private final Map<K2, Set<K1>> mappingFrom = new HashMap<>();
 
+    /** Children whose reference row exists. */
+    private final Set<K1> live = new TreeSet<>();
+
     private final DataTable<K2> otherTable;
 
     private final KeyedDataSubscribers<K1> subscribers;
@@ -37,6 +57,7 @@ class ForeignKeyedTable<K1 extends Comparable<K1>, K2 extends Comparable<K2>>
         public void onData(K2 key, DidoData data) {
             Set<K1> lefts = mappingFrom.get(key);
             if (lefts != null) {
+                live.addAll(lefts);
                 for (K1 left : lefts) {
                     subscribers.onData(left, data);
                 }
@@ -57,52 +78,187 @@ class ForeignKeyedTable<K1 extends Comparable<K1>, K2 extends Comparable<K2>>
         public void onDelete(K2 key) {
             Set<K1> lefts = mappingFrom.get(key);
             if (lefts != null) {
+                live.removeAll(lefts);
                 for (K1 left : lefts) {
                     subscribers.onDelete(left);
                 }
             }
         }
+
+        @Override
+        public void onBatchStart() {
+            subscribers.onBatchStart();
+        }
+
+        @Override
+        public void onBatchEnd() {
+            subscribers.onBatchEnd();
+        }
     }
 
-    public static <K1 extends Comparable<K1>, K2 extends Comparable<K2>>
-    CloseableTable<K1> byForeignKey(DataTable<K1> childTable, DataTable<K2> referenceTable, KeyExtractor<K2> keyExtractor) {
+    class ChildTableSubscriber implements KeyedSubscriber<K1> {
 
-        ForeignKeyedTable<K1, K2> table = new ForeignKeyedTable<>(referenceTable);
+        private final DataTable<K1> childTable;
+
+        private final KeyExtractor<K2> keyExtractor;
+
+        /** Child indices the foreign key is taken from, or null if not known. */
+        private final BitSet reads;
+
+        ChildTableSubscriber(DataTable<K1> childTable, KeyExtractor<K2> keyExtractor, BitSet reads) {
+            this.childTable = childTable;
+            this.keyExtractor = keyExtractor;
+            this.reads = reads;
+        }
 
-        KeyedSubscriber<K1> childSubscriber = new KeyedSubscriber<>() {
-            @Override
-            public void onData(K1 key, DidoData data) {
-                K2 other = keyExtractor.keyOf(data);
-                table.mappingTo.put(key, other);
-                table.mappingFrom.computeIfAbsent(other, k -> new TreeSet<>()).add(key);
+        private boolean readsAny(PartialUpdate partial) {
+            if (reads == null) {
+                return true;
             }
+            for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+                if (reads.get(index)) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-            @Override
-            public void onPartial(K1 key, PartialUpdate data) {
-                // Nothing to do.
+        @Override
+        public void onData(K1 key, DidoData data) {
+            repoint(key, keyExtractor.keyOf(data));
+        }
+
+        /**
+         * The partial may or may not include the foreign key, so it's taken from the
+         * child row, which has already been updated.
+         */
+        @Override
+        public void onPartial(K1 key, PartialUpdate partial) {
+            if (!readsAny(partial)) {
+                return;
+            }
+            DidoData row = childTable.get(key);
+            if (row != null) {
+                repoint(key, keyExtractor.keyOf(row));
             }
+        }
 
-            @Override
-            public void onDelete(K1 key) {
-                K2 other = table.mappingTo.remove(key);
-                Set<K1> set = table.mappingFrom.get(other);
-                set.remove(key);
-                if (set.isEmpty()) {
-                    table.mappingFrom.remove(other);
-                }
+        @Override
+        public void onDelete(K1 key) {
+            K2 other = mappingTo.remove(key);
+            if (other != null) {
+                unlink(key, other);
             }
-        };
+            live.remove(key);
+        }
 
-        childTable.entrySet().forEach(
-                e -> childSubscriber.onData(e.getKey(), e.getValue()));
+        @Override
+        public void onBatchStart() {
+            subscribers.onBatchStart();
+        }
 
-        table.closeables.add(childTable.tableSubscribe(childSubscriber));
+        @Override
+        public void onBatchEnd() {
+            subscribers.onBatchEnd();
+        }
+    }
+
+    /**
+     * Point a child at a reference key. A null key is kept as a mapping to nothing, so
+     * the child is known when it later gets a key.
+     */
+    private void repoint(K1 key, K2 other) {
+        boolean known = mappingTo.containsKey(key);
+        K2 existing = mappingTo.put(key, other);
+        if (known && Objects.equals(other, existing)) {
+            return;
+        }
+        if (existing != null) {
+            unlink(key, existing);
+        }
+        if (other == null) {
+            if (live.remove(key)) {
+                subscribers.onDelete(key);
+            }
+            return;
+        }
+        mappingFrom.computeIfAbsent(other, k -> new TreeSet<>()).add(key);
+
+        DidoData data = otherTable.get(other);
+        if (data == null) {
+            if (live.remove(key)) {
+                subscribers.onDelete(key);
+            }
+        }
+        else {
+            live.add(key);
+            if (known) {
+                subscribers.onData(key, data);
+            }
+        }
+    }
+
+    private void unlink(K1 key, K2 other) {
+        Set<K1> set = mappingFrom.get(other);
+        set.remove(key);
+        if (set.isEmpty()) {
+            mappingFrom.remove(other);
+        }
+    }
+
+    public static <K1 extends Comparable<K1>, K2 extends Comparable<K2>>
+    CloseableTable<K1> byForeignKey(DataTable<K1> childTable, DataTable<K2> referenceTable, KeyExtractor<K2> keyExtractor) {
+        return byForeignKey(childTable, referenceTable, keyExtractor, null);
+    }
+
+    /**
+     * Create the view, given the child fields the foreign key is taken from.
+     *
+     * @param reads The names of the fields the key extractor reads. If null, those the
+     *              key extractor says it reads, if any, are used.
+     */
+    public static <K1 extends Comparable<K1>, K2 extends Comparable<K2>>
+    CloseableTable<K1> byForeignKey(DataTable<K1> childTable, DataTable<K2> referenceTable,
+                                    KeyExtractor<K2> keyExtractor, Collection<String> reads) {
+
+        ForeignKeyedTable<K1, K2> table = new ForeignKeyedTable<>(referenceTable);
+
+        for (Map.Entry<K1, DidoData> entry : childTable.entrySet()) {
+            table.repoint(entry.getKey(), keyExtractor.keyOf(entry.getValue()));
+        }
+
+        table.closeables.add(childTable.tableSubscribe(
+                table.new ChildTableSubscriber(childTable, keyExtractor,
+                        indicesRead(childTable.getSchema(), keyExtractor, reads))));
 
         table.closeables.add(referenceTable.tableSubscribe(table.new ReferenceTableSubscriber()));
 
         return table;
     }
 
+    private static BitSet indicesRead(DataSchema schema, KeyExtractor<?> keyExtractor,
+                                      Collection<String> reads) {
+        BitSet indices = new BitSet();
+        if (reads != null) {
+            for (String field : reads) {
+                int index = schema.getIndexNamed(field);
+                if (index == 0) {
+                    throw new IllegalArgumentException("No field " + field + " in " + schema);
+                }
+                indices.set(index);
+            }
+            return indices;
+        }
+        int[] read = keyExtractor.indicesRead();
+        if (read == null) {
+            return null;
+        }
+        for (int index : read) {
+            indices.set(index);
+        }
+        return indices;
+    }
+
     @Override
     public DataSchema getSchema() {
         return otherTable.getSchema();
@@ -110,36 +266,32 @@ class ForeignKeyedTable<K1 extends Comparable<K1>, K2 extends Comparable<K2>>
 
     @Override
     public boolean containsKey(K1 key) {
-        K2 otherKey = mappingTo.get(key);
-        if (otherKey == null) {
-            return false;
-        }
-        return otherTable.containsKey(otherKey);
+        return live.contains(key);
     }
 
     @Override
     public DidoData get(K1 key) {
-        K2 otherKey = mappingTo.get(key);
-        if (otherKey == null) {
+        if (!live.contains(key)) {
             return null;
         }
-        return otherTable.get(otherKey);
+        return otherTable.get(mappingTo.get(key));
     }
 
     @Override
     public Set<K1> keySet() {
-        return mappingTo.entrySet().stream()
-                .filter(e -> otherTable.containsKey(e.getValue()))
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
+        return Collections.unmodifiableSet(live);
     }
 
     @Override
     public Set<Map.Entry<K1, DidoData>> entrySet() {
-        return mappingTo.entrySet().stream()
-                .filter(e -> otherTable.containsKey(e.getValue()))
-                .map(e -> Map.entry(e.getKey(), otherTable.get(e.getValue())))
-                .collect(Collectors.toSet());
+        return DataJoin.entriesOf(live, key -> otherTable.get(mappingTo.get(key)));
+    }
+
+    @Override
+    public void forEachRow(BiConsumer<? super K1, ? super DidoData> action) {
+        for (K1 key : live) {
+            action.accept(key, otherTable.get(mappingTo.get(key)));
+        }
     }
 
     @Override
@@ -0,0 +1,271 @@
+package dido.table.internal;
+
+import java.util.*;
+
+/**
+ * An open addressing (linear probing) hash index from a key to a dense row slot. Slots
+ * of removed keys are recycled so that storage indexed by slot stays compact. Removal
+ * uses backward shift deletion so there are no tombstones to slow probing down
+ * under churn.
+ * <p>
+ * An ordered view of the keys is built lazily on first request and kept until the
+ * key membership next changes.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ */
+class HashKeyIndex<K extends Comparable<K>> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    /** Resize when the table is more than this full, in 1/16ths. */
+    private static final int LOAD_FACTOR_16THS = 11;
+
+    private Object[] table;
+
+    private int[] tableSlots;
+
+    private int mask;
+
+    private Object[] slotKeys;
+
+    private int[] freeSlots = new int[MIN_CAPACITY];
+
+    private int freeCount;
+
+    private int slotLimit;
+
+    private int size;
+
+    private SortedSet<K> sortedKeys;
+
+    HashKeyIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    HashKeyIndex(int expectedSize) {
+        int capacity = tableCapacityFor(expectedSize);
+        table = new Object[capacity];
+        tableSlots = new int[capacity];
+        mask = capacity - 1;
+        slotKeys = new Object[Math.max(MIN_CAPACITY, expectedSize)];
+    }
+
+    static int tableCapacityFor(int expectedSize) {
+        int needed = (int) Math.min(1L << 30, (expectedSize * 16L) / LOAD_FACTOR_16THS + 1);
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private int indexFor(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Find the slot of a key.
+     *
+     * @param key The key. Must not be null.
+     * @return The slot or -1 if the key isn't in the index.
+     */
+    int slotOf(K key) {
+        Object[] table = this.table;
+        for (int i = indexFor(key); ; i = (i + 1) & mask) {
+            Object existing = table[i];
+            if (existing == null) {
+                return -1;
+            }
+            if (existing.equals(key)) {
+                return tableSlots[i];
+            }
+        }
+    }
+
+    /**
+     * Add a key if it's not already in the index.
+     *
+     * @param key The key. Must not be null.
+     * @return The slot of the key. A new key may be given the slot of a previously
+     * removed key.
+     */
+    int add(K key) {
+        Objects.requireNonNull(key, "Key must not be null");
+        int i = indexFor(key);
+        for (; ; i = (i + 1) & mask) {
+            Object existing = table[i];
+            if (existing == null) {
+                break;
+            }
+            if (existing.equals(key)) {
+                return tableSlots[i];
+            }
+        }
+        int slot = nextFreeSlot();
+        table[i] = key;
+        tableSlots[i] = slot;
+        slotKeys[slot] = key;
+        sortedKeys = null;
+        if (++size * 16 > table.length * LOAD_FACTOR_16THS) {
+            rehash(table.length << 1);
+        }
+        return slot;
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param key The key.
+     * @return The slot the key was in, which is now free for reuse, or -1 if the key
+     * wasn't in the index.
+     */
+    int remove(K key) {
+        for (int i = indexFor(key); ; i = (i + 1) & mask) {
+            Object existing = table[i];
+            if (existing == null) {
+                return -1;
+            }
+            if (existing.equals(key)) {
+                int slot = tableSlots[i];
+                deleteAt(i);
+                slotKeys[slot] = null;
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount << 1);
+                }
+                freeSlots[freeCount++] = slot;
+                --size;
+                sortedKeys = null;
+                return slot;
+            }
+        }
+    }
+
+    private void deleteAt(int gap) {
+        for (int j = (gap + 1) & mask; ; j = (j + 1) & mask) {
+            Object key = table[j];
+            if (key == null) {
+                break;
+            }
+            int ideal = indexFor(key);
+            if (((gap - ideal) & mask) < ((j - ideal) & mask)) {
+                table[gap] = key;
+                tableSlots[gap] = tableSlots[j];
+                gap = j;
+            }
+        }
+        table[gap] = null;
+    }
+
+    private int nextFreeSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotLimit == slotKeys.length) {
+            slotKeys = Arrays.copyOf(slotKeys, slotLimit + (slotLimit >> 1));
+        }
+        return slotLimit++;
+    }
+
+    private void rehash(int newCapacity) {
+        Object[] oldTable = table;
+        int[] oldSlots = tableSlots;
+        table = new Object[newCapacity];
+        tableSlots = new int[newCapacity];
+        mask = newCapacity - 1;
+        for (int i = 0; i < oldTable.length; ++i) {
+            Object key = oldTable[i];
+            if (key != null) {
+                int j = indexFor(key);
+                while (table[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                table[j] = key;
+                tableSlots[j] = oldSlots[i];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    K keyAt(int slot) {
+        return (K) slotKeys[slot];
+    }
+
+    /**
+     * One more than the highest slot ever handed out. Storage indexed by slot needs to
+     * be at least this big.
+     */
+    int slotLimit() {
+        return slotLimit;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The next occupied slot at or after the given one.
+     *
+     * @return The slot or -1 if there are no more.
+     */
+    int nextSlot(int from) {
+        Object[] slotKeys = this.slotKeys;
+        for (int slot = from; slot < slotLimit; ++slot) {
+            if (slotKeys[slot] != null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A read only view of the keys in no particular order.
+     */
+    Set<K> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new Iterator<>() {
+
+                    int slot = nextSlot(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot >= 0;
+                    }
+
+                    @Override
+                    public K next() {
+                        if (slot < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        K key = keyAt(slot);
+                        slot = nextSlot(slot + 1);
+                        return key;
+                    }
+                };
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean contains(Object o) {
+                return o != null && slotOf((K) o) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * A read only view of the keys in natural order. This is built on first use and
+     * reused until a key is added or removed.
+     */
+    SortedSet<K> sortedKeySet() {
+        SortedSet<K> sorted = sortedKeys;
+        if (sorted == null) {
+            sorted = Collections.unmodifiableSortedSet(new TreeSet<>(keySet()));
+            sortedKeys = sorted;
+        }
+        return sorted;
+    }
+}
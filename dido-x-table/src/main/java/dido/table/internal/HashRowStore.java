@@ -0,0 +1,111 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+
+import java.util.*;
+
+/**
+ * A {@link RowStore} that finds rows with a {@link HashKeyIndex} rather than a tree, so
+ * lookups don't need to compare keys. Rows are held in an array indexed by the key's slot.
+ * <p>
+ * Keys are in no particular order unless sorted keys are requested, in which case
+ * {@link #keySet()} and {@link #entrySet()} are in key order. The ordering is only
+ * worked out when asked for, and is kept until a key is added or removed.
+ * </p>
+ */
+class HashRowStore<K extends Comparable<K>> implements RowStore<K> {
+
+    private HashKeyIndex<K> index = new HashKeyIndex<>();
+
+    private final boolean sortedKeys;
+
+    private MutableData[] rows = new MutableData[16];
+
+    HashRowStore(boolean sortedKeys) {
+        this.sortedKeys = sortedKeys;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return index.slotOf(key) >= 0;
+    }
+
+    @Override
+    public DidoData get(K key) {
+        int slot = index.slotOf(key);
+        return slot < 0 ? null : rows[slot];
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return sortedKeys ? index.sortedKeySet() : index.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, DidoData>> iterator() {
+                Iterator<K> keys = keySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K, DidoData> next() {
+                        K key = keys.next();
+                        return Map.entry(key, rows[index.slotOf(key)]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    @Override
+    public void put(K key, DidoData data) {
+        int slot = index.add(key);
+        if (slot >= rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(slot + 1, rows.length + (rows.length >> 1)));
+        }
+        rows[slot] = MutableArrayData.copy(data);
+    }
+
+    @Override
+    public boolean update(K key, PartialUpdate partial) {
+        int slot = index.slotOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        RowStore.applyPartial(rows[slot], partial);
+        return true;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        int slot = index.remove(key);
+        if (slot < 0) {
+            return false;
+        }
+        rows[slot] = null;
+        return true;
+    }
+
+    /**
+     * Drop the index and rows, so the space they took can be collected.
+     */
+    @Override
+    public void close() {
+        index = new HashKeyIndex<>();
+        rows = new MutableData[16];
+    }
+}
@@ -0,0 +1,93 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+
+import java.lang.reflect.Type;
+
+/**
+ * A value of a {@code int} field, held without boxing.
+ */
+public class IntLiveValue extends AbstractLiveValue {
+
+    private int value;
+
+    private boolean has;
+
+    @Override
+    public boolean has() {
+        return has;
+    }
+
+    @Override
+    public Type getType() {
+        return int.class;
+    }
+
+    @Override
+    public Object get() {
+        return has ? value : null;
+    }
+
+    @Override
+    public int getInt() {
+        if (!has) {
+            throw new NullPointerException("No value");
+        }
+        return value;
+    }
+
+    @Override
+    public long getLong() {
+        return getInt();
+    }
+
+    @Override
+    public double getDouble() {
+        return getInt();
+    }
+
+    @Override
+    public void clear() {
+        if (has) {
+            has = false;
+            markChanged();
+            fireChange();
+        }
+    }
+
+    @Override
+    public void set(Object value) {
+        if (value == null) {
+            clear();
+        }
+        else {
+            setInt(((Number) value).intValue());
+        }
+    }
+
+    @Override
+    public void setInt(int value) {
+        if (!has || this.value != value) {
+            this.value = value;
+            has = true;
+            markChanged();
+            fireChange();
+        }
+    }
+
+    @Override
+    void load(DidoData data, int index) {
+        if (data.hasAt(index)) {
+            setInt(data.getIntAt(index));
+        }
+        else {
+            clear();
+        }
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        has = false;
+    }
+}
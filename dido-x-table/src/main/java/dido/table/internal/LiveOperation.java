@@ -1,6 +1,7 @@
 package dido.table.internal;
 
 import dido.data.DataSchema;
+import dido.data.partial.IndexSequence;
 import dido.table.LiveRow;
 
 import java.util.function.Consumer;
@@ -11,4 +12,14 @@ public interface LiveOperation extends Consumer<LiveRow> {
 
     DataSchema getOutSchema();
 
+    /**
+     * Run only the operations affected by a change to some fields of the row.
+     *
+     * @param row The row.
+     * @param changed The indices of the fields that changed.
+     */
+    default void accept(LiveRow row, IndexSequence changed) {
+        accept(row);
+    }
+
 }
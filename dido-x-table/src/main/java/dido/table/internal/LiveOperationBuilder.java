@@ -4,6 +4,7 @@ import dido.data.DataSchema;
 import dido.data.NoSuchFieldException;
 import dido.data.SchemaFactory;
 import dido.data.SchemaField;
+import dido.data.partial.IndexSequence;
 import dido.data.schema.SubSchema;
 import dido.operators.transform.OperationContext;
 import dido.operators.transform.OperationDefinition;
@@ -13,6 +14,7 @@ import dido.table.LiveRow;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -21,6 +23,18 @@ import java.util.function.Consumer;
 /**
  * Create an operation by providing an {@link dido.operators.transform.OperationContext}
  * for a {@link dido.table.LiveTable}.
+ * <p>
+ * The fields each operation gets getters and setters for are recorded. Operations are
+ * run after the operations that write the fields they read, whatever order they were
+ * added in, and otherwise in the order they were added. Operations that depend on each
+ * other in a cycle are rejected.
+ * </p>
+ * <p>
+ * A partial update only runs the operations that read a changed field, or a field
+ * written by another operation that was run. An operation that reads no fields, such as
+ * one that stamps the time of the update, is taken to depend on every field and is run
+ * for every update.
+ * </p>
  */
 public class LiveOperationBuilder {
 
@@ -39,6 +53,11 @@ public class LiveOperationBuilder {
         return new LiveOperationBuilder(SchemaFactory.newInstanceFrom(incomingSchema));
     }
 
+    /**
+     * Gives operations getters and setters onto the row being processed. The primitive
+     * methods go straight to the primitive methods of the row's value so a value held as a
+     * primitive isn't boxed.
+     */
     static class RowManager implements Consumer<LiveRow> {
 
         private LiveRow row;
@@ -61,6 +80,31 @@ public class LiveOperationBuilder {
                 public Object get() {
                     return row.getValueAt(index).get();
                 }
+
+                @Override
+                public boolean has() {
+                    return row.getValueAt(index).has();
+                }
+
+                @Override
+                public boolean getBoolean() {
+                    return row.getValueAt(index).getBoolean();
+                }
+
+                @Override
+                public int getInt() {
+                    return row.getValueAt(index).getInt();
+                }
+
+                @Override
+                public long getLong() {
+                    return row.getValueAt(index).getLong();
+                }
+
+                @Override
+                public double getDouble() {
+                    return row.getValueAt(index).getDouble();
+                }
             };
         }
 
@@ -72,13 +116,38 @@ public class LiveOperationBuilder {
 
                 @Override
                 public Type getType() {
-                    return null;
+                    return type;
                 }
 
                 @Override
                 public void set(Object value) {
                     row.getValueAt(index).set(value);
                 }
+
+                @Override
+                public void clear() {
+                    row.getValueAt(index).clear();
+                }
+
+                @Override
+                public void setBoolean(boolean value) {
+                    row.getValueAt(index).setBoolean(value);
+                }
+
+                @Override
+                public void setInt(int value) {
+                    row.getValueAt(index).setInt(value);
+                }
+
+                @Override
+                public void setLong(long value) {
+                    row.getValueAt(index).setLong(value);
+                }
+
+                @Override
+                public void setDouble(double value) {
+                    row.getValueAt(index).setDouble(value);
+                }
             };
         }
     }
@@ -94,6 +163,12 @@ public class LiveOperationBuilder {
 
         class LiveOperationContext implements OperationContext {
 
+            /** The indices read by the operation being prepared. */
+            BitSet reads;
+
+            /** The indices written by the operation being prepared. */
+            BitSet writes;
+
             @Override
             public Type typeOfNamed(String name) {
                 return schemaFactory.getTypeNamed(name);
@@ -105,6 +180,7 @@ public class LiveOperationBuilder {
                 if (index == 0) {
                     throw new NoSuchFieldException(name, schemaFactory);
                 }
+                reads.set(index);
                 return rowManager.createValueGetter(schemaFactory.getTypeAt(index), index);
             }
 
@@ -116,6 +192,7 @@ public class LiveOperationBuilder {
                     index = newField.getIndex();
                     outFields.add(newField.getName());
                 }
+                writes.set(index);
                 return rowManager.createValueSetter(schemaFactory.getTypeAt(index), index);
             }
 
@@ -125,11 +202,27 @@ public class LiveOperationBuilder {
             }
         }
 
-        OperationContext context = new LiveOperationContext();
+        LiveOperationContext context = new LiveOperationContext();
+
+        int count = opDefs.size();
+        Runnable[] prepared = new Runnable[count];
+        BitSet[] preparedReads = new BitSet[count];
+        BitSet[] preparedWrites = new BitSet[count];
+        for (int i = 0; i < count; ++i) {
+            context.reads = preparedReads[i] = new BitSet();
+            context.writes = preparedWrites[i] = new BitSet();
+            prepared[i] = opDefs.get(i).prepare(context);
+        }
 
-        List<Runnable> operations = opDefs.stream()
-                .map(od -> od.prepare(context))
-                .toList();
+        int[] order = order(preparedReads, preparedWrites);
+        Runnable[] operations = new Runnable[count];
+        BitSet[] reads = new BitSet[count];
+        BitSet[] writes = new BitSet[count];
+        for (int i = 0; i < count; ++i) {
+            operations[i] = prepared[order[i]];
+            reads[i] = preparedReads[order[i]];
+            writes[i] = preparedWrites[order[i]];
+        }
 
         DataSchema schema = schemaFactory.toSchema();
         DataSchema outSchema = SubSchema.from(schema).withNames(outFields);
@@ -145,12 +238,86 @@ public class LiveOperationBuilder {
                 return outSchema;
             }
 
+            /** Changed indices, kept between calls so as not to allocate. */
+            private final BitSet dirty = new BitSet();
+
             @Override
             public void accept(LiveRow row) {
                 rowManager.accept(row);
-                operations.forEach(Runnable::run);
+                for (Runnable operation : operations) {
+                    operation.run();
+                }
+            }
+
+            /**
+             * Operations are run after those they depend on, so marking what an
+             * operation writes as changed is enough for later operations that read it to
+             * run too.
+             */
+            @Override
+            public void accept(LiveRow row, IndexSequence changed) {
+                rowManager.accept(row);
+                dirty.clear();
+                for (int index = changed.firstIndex(); index > 0; index = changed.nextIndex(index)) {
+                    dirty.set(index);
+                }
+                for (int i = 0; i < operations.length; ++i) {
+                    if (reads[i].isEmpty() || reads[i].intersects(dirty)) {
+                        operations[i].run();
+                        dirty.or(writes[i]);
+                    }
+                }
             }
         };
     }
 
+    /**
+     * Order operations so that each comes after those that write a field it reads. Where
+     * there's a choice the earliest added comes first. An operation that reads a field
+     * it writes doesn't depend on itself.
+     *
+     * @return The indices of the operations in the order to run them.
+     */
+    static int[] order(BitSet[] reads, BitSet[] writes) {
+        int count = reads.length;
+        boolean[][] dependsOn = new boolean[count][count];
+        int[] waiting = new int[count];
+        for (int i = 0; i < count; ++i) {
+            for (int j = 0; j < count; ++j) {
+                if (i != j && writes[j].intersects(reads[i])) {
+                    dependsOn[i][j] = true;
+                    ++waiting[i];
+                }
+            }
+        }
+        int[] order = new int[count];
+        boolean[] done = new boolean[count];
+        for (int n = 0; n < count; ++n) {
+            int next = -1;
+            for (int i = 0; i < count; ++i) {
+                if (!done[i] && waiting[i] == 0) {
+                    next = i;
+                    break;
+                }
+            }
+            if (next < 0) {
+                List<Integer> cycle = new ArrayList<>();
+                for (int i = 0; i < count; ++i) {
+                    if (!done[i]) {
+                        cycle.add(i);
+                    }
+                }
+                throw new IllegalArgumentException("Operations " + cycle +
+                        ", in the order they were added, read fields written by each other in a cycle");
+            }
+            done[next] = true;
+            order[n] = next;
+            for (int i = 0; i < count; ++i) {
+                if (dependsOn[i][next]) {
+                    --waiting[i];
+                }
+            }
+        }
+        return order;
+    }
 }
@@ -3,6 +3,7 @@ package dido.table.internal;
 import dido.data.DataSchema;
 import dido.data.DidoData;
 import dido.data.partial.PartialUpdate;
+import dido.flow.DidoPublisher;
 import dido.flow.DidoSubscriber;
 import dido.flow.DidoSubscription;
 import dido.flow.util.KeyExtractor;
@@ -18,7 +19,14 @@ import dido.table.util.KeyedDataSubscribers;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K> {
+/**
+ * A {@link LiveTable} of {@link ArrayRowImpl}s. Deleted rows are cleared and kept on a
+ * free list, up to a limit, to be used again for new keys, so data from a row must not
+ * be held on to after the row is deleted.
+ *
+ * @param <K> The type of the key.
+ */
+public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K>, DidoPublisher {
 
     private final DataSchema schema;
 
@@ -32,6 +40,12 @@ public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K> {
 
     private final List<DidoSubscriber> didoSubscribers = new ArrayList<>();
 
+    private final DidoSubscriber internalSubscriber = new InternalDidoSubscriber();
+
+    private final Deque<ArrayRowImpl> freeRows = new ArrayDeque<>();
+
+    private final int maxFreeRows;
+
     private LiveTableBasic(Settings<K> settings) {
         this.ops = settings.operationBuilder.build();
         this.schema = ops.getOutSchema();
@@ -39,6 +53,7 @@ public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K> {
                 ((KeyExtractorProvider<K>)KeyExtractors.fromFirstField())
                         .keyExtractorFor(schema) : settings.keyExtractor;
         this.subscribers = new KeyedDataSubscribers<>(schema);
+        this.maxFreeRows = settings.maxFreeRows;
     }
 
     public static class Settings<K extends Comparable<K>> {
@@ -47,6 +62,8 @@ public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K> {
 
         private KeyExtractor<? extends K> keyExtractor;
 
+        private int maxFreeRows = 1024;
+
         public Settings(DataSchema schema) {
             this.operationBuilder = LiveOperationBuilder.forSchema(schema);
         }
@@ -56,12 +73,20 @@ public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K> {
             return this;
         }
 
+        /**
+         * The most deleted rows to keep for reuse. 0 turns reuse off.
+         */
+        public Settings<K> maxFreeRows(int maxFreeRows) {
+            this.maxFreeRows = maxFreeRows;
+            return this;
+        }
+
         public Settings<K> addOperation(OperationDefinition opDef) {
             operationBuilder.addOp(opDef);
             return this;
         }
 
-        LiveTable<K> create() {
+        public LiveTableBasic<K> create() {
 
             return new LiveTableBasic<>(this);
         }
@@ -93,8 +118,7 @@ public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K> {
     public void onData(DidoData data) {
 
         K key = keyExtractor.keyOf(data);
-        ArrayRowImpl arrayRow = rows.computeIfAbsent(key,
-                k -> new ArrayRowImpl(schema, new InternalDidoSubscriber()));
+        ArrayRowImpl arrayRow = rows.computeIfAbsent(key, k -> newRow());
 
         arrayRow.onData(data, ops);
         ops.accept(arrayRow);
@@ -115,6 +139,24 @@ public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K> {
     @Override
     public void onDelete(DidoData keyData) {
 
+        K key = keyExtractor.keyOf(keyData);
+        ArrayRowImpl arrayRow = rows.remove(key);
+        if (arrayRow == null) {
+            throw new IllegalArgumentException("No row for key " + key);
+        }
+
+        arrayRow.onDelete(keyData);
+        subscribers.onDelete(key);
+
+        if (freeRows.size() < maxFreeRows) {
+            arrayRow.recycle();
+            freeRows.push(arrayRow);
+        }
+    }
+
+    private ArrayRowImpl newRow() {
+        ArrayRowImpl arrayRow = freeRows.poll();
+        return arrayRow == null ? new ArrayRowImpl(schema, internalSubscriber) : arrayRow;
     }
 
     @Override
@@ -156,8 +198,29 @@ public class LiveTableBasic<K extends Comparable<K>> implements LiveTable<K> {
         return subscribers.addSubscriber(listener);
     }
 
+    /**
+     * Subscribe to the changes to rows after operations have run. Data and partial
+     * updates are views of the row, and must not be kept after the call.
+     */
     @Override
-    public void close() {
+    public DidoSubscription didoSubscribe(DidoSubscriber subscriber) {
+        didoSubscribers.add(subscriber);
+        return new DidoSubscription() {
+            @Override
+            public DataSchema getSchema() {
+                return schema;
+            }
+
+            @Override
+            public void close() {
+                didoSubscribers.remove(subscriber);
+            }
+        };
+    }
 
+    @Override
+    public void close() {
+        rows.clear();
+        freeRows.clear();
     }
 }
@@ -0,0 +1,93 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+
+import java.lang.reflect.Type;
+
+/**
+ * A value of a {@code long} field, held without boxing.
+ */
+public class LongLiveValue extends AbstractLiveValue {
+
+    private long value;
+
+    private boolean has;
+
+    @Override
+    public boolean has() {
+        return has;
+    }
+
+    @Override
+    public Type getType() {
+        return long.class;
+    }
+
+    @Override
+    public Object get() {
+        return has ? value : null;
+    }
+
+    @Override
+    public long getLong() {
+        if (!has) {
+            throw new NullPointerException("No value");
+        }
+        return value;
+    }
+
+    @Override
+    public double getDouble() {
+        return getLong();
+    }
+
+    @Override
+    public void clear() {
+        if (has) {
+            has = false;
+            markChanged();
+            fireChange();
+        }
+    }
+
+    @Override
+    public void set(Object value) {
+        if (value == null) {
+            clear();
+        }
+        else {
+            setLong(((Number) value).longValue());
+        }
+    }
+
+    @Override
+    public void setLong(long value) {
+        if (!has || this.value != value) {
+            this.value = value;
+            has = true;
+            markChanged();
+            fireChange();
+        }
+    }
+
+    @Override
+    public void setInt(int value) {
+        setLong(value);
+    }
+
+    @Override
+    void load(DidoData data, int index) {
+        if (data.hasAt(index)) {
+            setLong(data.getLongAt(index));
+        }
+        else {
+            clear();
+        }
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        has = false;
+    }
+}
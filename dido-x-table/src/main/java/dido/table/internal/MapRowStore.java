@@ -0,0 +1,67 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link RowStore} that keeps a copy of each row in a {@link Map}.
+ */
+class MapRowStore<K extends Comparable<K>> implements RowStore<K> {
+
+    private final Map<K, MutableData> rows;
+
+    MapRowStore(Map<K, MutableData> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return rows.containsKey(key);
+    }
+
+    @Override
+    public DidoData get(K key) {
+        return rows.get(key);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return rows.keySet();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return (Set) rows.entrySet();
+    }
+
+    @Override
+    public void put(K key, DidoData data) {
+        rows.put(key, MutableArrayData.copy(data));
+    }
+
+    @Override
+    public boolean update(K key, PartialUpdate partial) {
+        MutableData row = rows.get(key);
+        if (row == null) {
+            return false;
+        }
+        RowStore.applyPartial(row, partial);
+        return true;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        return rows.remove(key) != null;
+    }
+
+    @Override
+    public void close() {
+        rows.clear();
+    }
+}
@@ -0,0 +1,43 @@
+package dido.table.internal;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * The class {@link MethodOperationBuilder} defines again as a hidden class for each
+ * operation it prepares, with the handle to invoke as the class data. This class itself
+ * is never initialised, only its bytes are used.
+ * <p>
+ * The handle is held in a static final field, which the JIT treats as a constant, so it
+ * can inline through the handle to the processor's method. An instance field holding the
+ * handle can't be trusted not to change, so each run would be an indirect call.
+ * </p>
+ */
+final class MethodInvokerTemplate implements Runnable {
+
+    private static final MethodHandle HANDLE;
+
+    static {
+        try {
+            HANDLE = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME,
+                    MethodHandle.class);
+        }
+        catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            HANDLE.invokeExact();
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
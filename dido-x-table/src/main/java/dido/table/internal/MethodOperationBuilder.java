@@ -5,55 +5,116 @@ import dido.operators.transform.OperationDefinition;
 import dido.operators.transform.ValueGetter;
 import dido.operators.transform.ValueSetter;
 
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 
 /**
- * Create an operation that invokes a method.
+ * Create an operation that invokes a method. The parameters of the method are the fields
+ * read and written in the order they are given. A field read is passed as the type of
+ * the parameter, primitives without boxing. A field written is passed as a
+ * {@link Consumer}, or an {@link IntConsumer}, {@link LongConsumer} or
+ * {@link DoubleConsumer} to write a primitive without boxing.
+ * <p>
+ * The method is bound to a {@link MethodHandle} once, when the operation is prepared,
+ * so running the operation doesn't use reflection. The handle is then made the constant
+ * of a hidden class defined for the operation from {@link MethodInvokerTemplate}, so the
+ * JIT can inline the processor's method as if it were called directly.
+ * </p>
  */
 public class MethodOperationBuilder {
 
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
     private final List<ParamMaker> paramMakers = new ArrayList<>();
 
     interface ParamMaker {
 
-        Supplier<Object> toParam(OperationContext context);
+        /**
+         * Provide a handle that takes nothing and gives a parameter of the given type.
+         */
+        MethodHandle toParam(OperationContext context, Class<?> type);
 
     }
 
     record ReadParamMaker(String name) implements ParamMaker {
 
         @Override
-        public Supplier<Object> toParam(OperationContext context) {
+        public MethodHandle toParam(OperationContext context, Class<?> type) {
             ValueGetter getter = context.getterNamed(name);
-            return getter::get;
+            MethodHandle get;
+            if (type.isPrimitive()) {
+                String primitive = type.getName();
+                get = findGetter("get" + Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1),
+                        type);
+            }
+            else {
+                get = findGetter("get", Object.class).asType(MethodType.methodType(type, ValueGetter.class));
+            }
+            return get.bindTo(getter);
         }
     }
 
     record WriteParamMaker(String name) implements ParamMaker {
 
         @Override
-        public Supplier<Object> toParam(OperationContext context) {
-            Type type = context.typeOfNamed(name);
-            ValueSetter setter = context.setterNamed(name, type);
-            return () -> (Consumer<Object>) setter::set;
+        public MethodHandle toParam(OperationContext context, Class<?> type) {
+            ValueSetter setter = context.setterNamed(name, context.typeOfNamed(name));
+            return writer(setter, type);
         }
     }
 
     record WriteNewParamMaker(String name, Type type) implements ParamMaker {
 
         @Override
-        public Supplier<Object> toParam(OperationContext context) {
-            ValueSetter setter = context.setterNamed(name, type);
-            return () -> (Consumer<Object>) setter::set;
+        public MethodHandle toParam(OperationContext context, Class<?> type) {
+            ValueSetter setter = context.setterNamed(name, this.type);
+            return writer(setter, type);
+        }
+    }
+
+    static MethodHandle findGetter(String name, Class<?> type) {
+        try {
+            return LOOKUP.findVirtual(ValueGetter.class, name, MethodType.methodType(type));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No getter for " + type, e);
         }
     }
 
+    static MethodHandle writer(ValueSetter setter, Class<?> type) {
+        Object writer;
+        if (type == IntConsumer.class) {
+            writer = (IntConsumer) setter::setInt;
+        }
+        else if (type == LongConsumer.class) {
+            writer = (LongConsumer) setter::setLong;
+        }
+        else if (type == DoubleConsumer.class) {
+            writer = (DoubleConsumer) setter::setDouble;
+        }
+        else if (type.isAssignableFrom(Consumer.class)) {
+            writer = (Consumer<Object>) setter::set;
+        }
+        else {
+            throw new IllegalArgumentException("Can't write a field with a parameter of " + type);
+        }
+        return MethodHandles.constant(type, writer);
+    }
+
     public MethodOperationBuilder readingNamed(String name) {
         paramMakers.add(new ReadParamMaker(name));
         return this;
@@ -69,46 +130,101 @@ public class MethodOperationBuilder {
         return this;
     }
 
+    /**
+     * Create an operation that invokes the only instance method of the processor's class
+     * with a parameter for each field read and written.
+     *
+     * @throws IllegalArgumentException If there isn't exactly one such method.
+     */
     public OperationDefinition processor(Object processor) {
+        return processor(processor, null);
+    }
 
-        Method m = processor.getClass().getDeclaredMethods()[0];
+    /**
+     * Create an operation that invokes the named method of the processor with a parameter
+     * for each field read and written.
+     *
+     * @param methodName The name of the method, or null for any name.
+     * @throws IllegalArgumentException If there isn't exactly one such method.
+     */
+    public OperationDefinition processor(Object processor, String methodName) {
+
+        Method method = findMethod(processor.getClass(), methodName, paramMakers.size());
+        method.setAccessible(true);
+        MethodHandle handle;
+        try {
+            handle = LOOKUP.unreflect(method).bindTo(processor);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Can't access " + method, e);
+        }
+        Class<?>[] types = method.getParameterTypes();
+        List<ParamMaker> makers = List.copyOf(paramMakers);
 
         return context -> {
-
-            List<Supplier<Object>> suppliers  = paramMakers.stream()
-                    .map(pf -> pf.toParam(context))
-                    .toList();
-
-            return new MethodInvoker(m, processor, suppliers);
+            MethodHandle invoker = handle;
+            for (int i = 0; i < types.length; ++i) {
+                invoker = MethodHandles.collectArguments(invoker, 0,
+                        makers.get(i).toParam(context, types[i]));
+            }
+            return invoker(invoker.asType(MethodType.methodType(void.class)));
         };
     }
 
-    static class MethodInvoker implements Runnable {
-
-        private final Method method;
+    /**
+     * Define a hidden class that invokes the given handle.
+     *
+     * @param handle A handle that takes nothing and returns nothing.
+     */
+    static Runnable invoker(MethodHandle handle) {
+        try {
+            MethodHandles.Lookup invokerLookup = LOOKUP.defineHiddenClassWithClassData(
+                    TemplateBytes.BYTES, handle, true);
+            return (Runnable) invokerLookup.findConstructor(invokerLookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Failed to define invoker for " + handle, e);
+        }
+    }
 
-        private final Object object;
+    /**
+     * The bytes of {@link MethodInvokerTemplate}, read when first needed.
+     */
+    static class TemplateBytes {
 
-        private final List<Supplier<Object>> suppliers;
+        static final String NAME = "MethodInvokerTemplate.class";
 
-        MethodInvoker(Method method,
-                      Object object, List<Supplier<Object>> suppliers) {
-            this.method = method;
-            this.object = object;
-            this.suppliers = suppliers;
-        }
+        static final byte[] BYTES;
 
-        @Override
-        public void run() {
-            Object[] params = suppliers.stream()
-                    .map(Supplier::get)
-                    .toArray();
-            try {
-                method.invoke(object, params);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new RuntimeException(e);
+        static {
+            try (InputStream in = MethodOperationBuilder.class.getResourceAsStream(NAME)) {
+                if (in == null) {
+                    throw new IllegalStateException("No " + NAME);
+                }
+                BYTES = in.readAllBytes();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
+    }
 
+    static Method findMethod(Class<?> type, String methodName, int parameterCount) {
+        List<Method> methods = Arrays.stream(type.getDeclaredMethods())
+                .filter(m -> !m.isSynthetic() && !Modifier.isStatic(m.getModifiers()))
+                .filter(m -> methodName == null || methodName.equals(m.getName()))
+                .filter(m -> m.getParameterCount() == parameterCount)
+                .toList();
+        if (methods.size() != 1) {
+            throw new IllegalArgumentException("Expected one method" +
+                    (methodName == null ? "" : " named " + methodName) +
+                    " with " + parameterCount + " parameters on " + type.getName() +
+                    " but found " + methods);
+        }
+        return methods.getFirst();
     }
 }
@@ -0,0 +1,283 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+import dido.data.util.EmptyData;
+import dido.flow.QuietlyCloseable;
+import dido.operators.Concatenator;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+import dido.table.util.KeyedDataSubscribers;
+
+import java.util.*;
+
+/**
+ * A join of any number of tables on the same key. The output schema is all the input
+ * schemas one after another, and each input has a range of the output indices. The
+ * joined rows are kept, so an event from an input is copied into its range and passed
+ * on once, rather than through a {@link DataJoin} for each extra table.
+ * <p>
+ * An inner join has the keys in every table. A left join has the keys in the first
+ * table, with the fields of tables missing the key empty.
+ * </p>
+ * <p>
+ * As with a materialised {@link DataJoin}, rows given out are the kept rows so
+ * change with later updates.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ */
+public class MultiJoin<K extends Comparable<K>> implements DataTable<K>, QuietlyCloseable {
+
+    static final int MAX_TABLES = Long.SIZE;
+
+    private final List<DataTable<K>> tables;
+
+    private final int[] offsets;
+
+    private final DataSchema schema;
+
+    private final long visibleMask;
+
+    private final Map<K, Entry> entries = new HashMap<>();
+
+    private final Set<K> keys = new TreeSet<>();
+
+    private final KeyedDataSubscribers<K> subscribers;
+
+    private final List<QuietlyCloseable> closeables = new ArrayList<>();
+
+    /**
+     * A joined row and which tables have the key.
+     */
+    static class Entry {
+
+        final MutableData row;
+
+        long present;
+
+        Entry(MutableData row) {
+            this.row = row;
+        }
+    }
+
+    private MultiJoin(List<DataTable<K>> tables, boolean keepFirst) {
+        if (tables.size() < 2 || tables.size() > MAX_TABLES) {
+            throw new IllegalArgumentException("Between 2 and " + MAX_TABLES +
+                    " tables may be joined, not " + tables.size());
+        }
+        this.tables = List.copyOf(tables);
+        this.offsets = new int[tables.size()];
+        DataSchema[] schemas = new DataSchema[tables.size()];
+        int offset = 0;
+        for (int i = 0; i < schemas.length; ++i) {
+            schemas[i] = tables.get(i).getSchema();
+            offsets[i] = offset;
+            offset += schemas[i].lastIndex();
+        }
+        this.schema = Concatenator.fromSchemas(schemas).getSchema();
+        this.visibleMask = keepFirst ? 1L : tables.size() == MAX_TABLES ? -1L : (1L << tables.size()) - 1;
+        this.subscribers = new KeyedDataSubscribers<>(schema);
+
+        for (int i = 0; i < schemas.length; ++i) {
+            for (Map.Entry<K, DidoData> row : tables.get(i).entrySet()) {
+                put(i, row.getKey(), row.getValue());
+            }
+        }
+        for (int i = 0; i < schemas.length; ++i) {
+            closeables.add(tables.get(i).tableSubscribe(new InputSubscriber(i)));
+        }
+    }
+
+    public static class From<K extends Comparable<K>> {
+
+        private final List<DataTable<K>> tables = new ArrayList<>();
+
+        From(DataTable<K> first) {
+            tables.add(Objects.requireNonNull(first));
+        }
+
+        /**
+         * Add the next table. Its fields follow those of the tables before.
+         */
+        public From<K> and(DataTable<K> table) {
+            tables.add(Objects.requireNonNull(table));
+            return this;
+        }
+
+        public MultiJoin<K> innerJoin() {
+            return new MultiJoin<>(tables, false);
+        }
+
+        public MultiJoin<K> leftJoin() {
+            return new MultiJoin<>(tables, true);
+        }
+    }
+
+    public static <K extends Comparable<K>> From<K> from(DataTable<K> first) {
+        return new From<>(first);
+    }
+
+    private boolean isVisible(Entry entry) {
+        return (entry.present & visibleMask) == visibleMask;
+    }
+
+    /**
+     * Copy data into its range of the row.
+     *
+     * @return The entry, or null if not visible.
+     */
+    private Entry put(int table, K key, DidoData data) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(MutableArrayData.copy(EmptyData.withSchema(schema)));
+            entries.put(key, entry);
+        }
+        int offset = offsets[table];
+        DataSchema dataSchema = data.getSchema();
+        for (int index = dataSchema.firstIndex(); index > 0; index = dataSchema.nextIndex(index)) {
+            setOrClear(entry.row, index + offset, data, index);
+        }
+        entry.present |= 1L << table;
+        if (isVisible(entry)) {
+            keys.add(key);
+            return entry;
+        }
+        else {
+            return null;
+        }
+    }
+
+    private static void setOrClear(MutableData row, int rowIndex, DidoData data, int index) {
+        if (data.hasAt(index)) {
+            row.setAt(rowIndex, data.getAt(index));
+        }
+        else {
+            row.clearAt(rowIndex);
+        }
+    }
+
+    class InputSubscriber implements KeyedSubscriber<K> {
+
+        private final int table;
+
+        private final int offset;
+
+        private final long bit;
+
+        private final int[] allIndices;
+
+        InputSubscriber(int table) {
+            this.table = table;
+            this.offset = offsets[table];
+            this.bit = 1L << table;
+            int[] indices = tables.get(table).getSchema().getIndices();
+            for (int i = 0; i < indices.length; ++i) {
+                indices[i] += offset;
+            }
+            this.allIndices = indices;
+        }
+
+        @Override
+        public void onData(K key, DidoData data) {
+            Entry entry = put(table, key, data);
+            if (entry != null) {
+                subscribers.onData(key, entry.row);
+            }
+        }
+
+        @Override
+        public void onPartial(K key, PartialUpdate partial) {
+            Entry entry = entries.get(key);
+            if (entry == null || (entry.present & bit) == 0) {
+                return;
+            }
+            DidoData data = partial.getData();
+            int[] indices = new int[partial.getSize()];
+            int i = 0;
+            for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+                setOrClear(entry.row, index + offset, data, index);
+                indices[i++] = index + offset;
+            }
+            if (isVisible(entry)) {
+                subscribers.onPartial(key, PartialUpdate.from(entry.row).withIndices(indices));
+            }
+        }
+
+        @Override
+        public void onDelete(K key) {
+            Entry entry = entries.get(key);
+            if (entry == null || (entry.present & bit) == 0) {
+                return;
+            }
+            boolean wasVisible = isVisible(entry);
+            for (int index : allIndices) {
+                entry.row.clearAt(index);
+            }
+            entry.present &= ~bit;
+            if (entry.present == 0) {
+                entries.remove(key);
+            }
+            if (!wasVisible) {
+                return;
+            }
+            if (isVisible(entry)) {
+                subscribers.onPartial(key, PartialUpdate.from(entry.row).withIndices(allIndices));
+            }
+            else {
+                keys.remove(key);
+                subscribers.onDelete(key);
+            }
+        }
+
+        @Override
+        public void onBatchStart() {
+            subscribers.onBatchStart();
+        }
+
+        @Override
+        public void onBatchEnd() {
+            subscribers.onBatchEnd();
+        }
+    }
+
+    @Override
+    public DataSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public DidoData get(K key) {
+        Entry entry = entries.get(key);
+        return entry == null || !isVisible(entry) ? null : entry.row;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return DataJoin.entriesOf(keys, key -> entries.get(key).row);
+    }
+
+    @Override
+    public KeyedSubscription tableSubscribe(KeyedSubscriber<K> listener) {
+        return subscribers.addSubscriber(listener);
+    }
+
+    @Override
+    public void close() {
+        closeables.forEach(QuietlyCloseable::close);
+    }
+}
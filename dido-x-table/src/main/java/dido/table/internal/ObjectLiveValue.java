@@ -1,20 +1,11 @@
 package dido.table.internal;
 
-import dido.flow.QuietlyCloseable;
-import dido.operators.transform.ValueGetter;
-import dido.table.LiveValue;
+import dido.data.DidoData;
 
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
-import java.util.function.Consumer;
 
-public class ObjectLiveValue implements LiveValue {
-
-    private final List<Consumer<? super ValueGetter>> listeners = new ArrayList<>();
-
-    boolean changed;
+public class ObjectLiveValue extends AbstractLiveValue {
 
     private Object value;
 
@@ -35,32 +26,26 @@ public class ObjectLiveValue implements LiveValue {
 
     @Override
     public void clear() {
-        if (value != null) {
-            changed = true;
-        }
         set(null);
     }
 
     @Override
     public void set(Object value) {
-        if (Objects.equals(this.value, value)) {
-            changed = false;
-        }
-        else {
-            changed = true;
+        if (!Objects.equals(this.value, value)) {
             this.value = value;
+            markChanged();
             fireChange();
         }
     }
 
-
     @Override
-    public QuietlyCloseable addChangeListener(Consumer<? super ValueGetter> listener) {
-        listeners.add(listener);
-        return () -> listeners.remove(listener);
+    void load(DidoData data, int index) {
+        set(data.getAt(index));
     }
 
-    protected void fireChange() {
-        listeners.forEach(listener -> listener.accept(this));
+    @Override
+    void reset() {
+        super.reset();
+        value = null;
     }
 }
@@ -0,0 +1,465 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.useful.AbstractData;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A {@link RowStore} that keeps row data outside the Java heap so that very large tables
+ * add little to GC work. Each row is a fixed width record laid out from the schema: a
+ * presence bitmap followed by each field in schema order. {@code double}, {@code long}
+ * and {@code int} fields are held inline. {@code String} fields hold a reference into a
+ * {@link StringArena} which is also off heap, and reuses the space of replaced and
+ * removed Strings. Fields of any other type are kept on heap.
+ * <p>
+ * Records are held in direct {@link ByteBuffer} chunks so that there is no limit of 2GB on
+ * the size of the table. Keys are held on heap in a {@link HashKeyIndex}.
+ * </p>
+ * <p>
+ * As with {@link ColumnarRowStore}, rows are handed out as flyweight views that are only
+ * valid until the row is removed.
+ * </p>
+ */
+class OffHeapRowStore<K extends Comparable<K>> implements RowStore<K> {
+
+    /** Size of a chunk of records. */
+    static final int CHUNK_BYTES = 1 << 24;
+
+    private final DataSchema schema;
+
+    private HashKeyIndex<K> index = new HashKeyIndex<>();
+
+    private final boolean sortedKeys;
+
+    private final Kind[] kinds;
+
+    private final int[] offsets;
+
+    private final int stride;
+
+    private final int rowsPerChunk;
+
+    private final StringArena arena = new StringArena();
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+
+    private Object[][] objects;
+
+    enum Kind {
+        DOUBLE(8),
+        LONG(8),
+        INT(4),
+        STRING(StringArena.REF_BYTES),
+        OBJECT(0);
+
+        final int width;
+
+        Kind(int width) {
+            this.width = width;
+        }
+
+        static Kind of(Type type) {
+            if (type == double.class || type == Double.class) {
+                return DOUBLE;
+            }
+            else if (type == long.class || type == Long.class) {
+                return LONG;
+            }
+            else if (type == int.class || type == Integer.class) {
+                return INT;
+            }
+            else if (type == String.class) {
+                return STRING;
+            }
+            else {
+                return OBJECT;
+            }
+        }
+    }
+
+    OffHeapRowStore(DataSchema schema, boolean sortedKeys) {
+        this(schema, sortedKeys, CHUNK_BYTES);
+    }
+
+    OffHeapRowStore(DataSchema schema, boolean sortedKeys, int chunkBytes) {
+        this.schema = schema;
+        this.sortedKeys = sortedKeys;
+        int lastIndex = schema.lastIndex();
+        this.kinds = new Kind[lastIndex];
+        this.offsets = new int[lastIndex];
+        this.objects = new Object[lastIndex][];
+
+        int offset = (lastIndex + 7) >>> 3;
+        for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
+            Kind kind = Kind.of(schema.getTypeAt(i));
+            kinds[i - 1] = kind;
+            offsets[i - 1] = offset;
+            offset += kind.width;
+            if (kind == Kind.OBJECT) {
+                objects[i - 1] = new Object[16];
+            }
+        }
+        this.stride = Math.max(1, offset);
+        this.rowsPerChunk = Math.max(1, chunkBytes / stride);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return index.slotOf(key) >= 0;
+    }
+
+    @Override
+    public DidoData get(K key) {
+        int slot = index.slotOf(key);
+        return slot < 0 ? null : new RowView(slot);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return sortedKeys ? index.sortedKeySet() : index.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, DidoData>> iterator() {
+                Iterator<K> keys = keySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K, DidoData> next() {
+                        K key = keys.next();
+                        return Map.entry(key, new RowView(index.slotOf(key)));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    @Override
+    public void put(K key, DidoData data) {
+        int slot = index.add(key);
+        ensureCapacity(slot);
+        DataSchema dataSchema = data.getSchema();
+        ByteBuffer chunk = chunks[slot / rowsPerChunk];
+        int base = (slot % rowsPerChunk) * stride;
+        for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
+            if (dataSchema.hasIndex(i) && data.hasAt(i)) {
+                set(chunk, base, slot, data, i);
+            }
+            else {
+                clear(chunk, base, slot, i);
+            }
+        }
+    }
+
+    @Override
+    public boolean update(K key, PartialUpdate partial) {
+        int slot = index.slotOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        DidoData data = partial.getData();
+        ByteBuffer chunk = chunks[slot / rowsPerChunk];
+        int base = (slot % rowsPerChunk) * stride;
+        for (int i = partial.firstIndex(); i > 0; i = partial.nextIndex(i)) {
+            if (data.hasAt(i)) {
+                set(chunk, base, slot, data, i);
+            }
+            else {
+                clear(chunk, base, slot, i);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        int slot = index.remove(key);
+        if (slot < 0) {
+            return false;
+        }
+        ByteBuffer chunk = chunks[slot / rowsPerChunk];
+        int base = (slot % rowsPerChunk) * stride;
+        for (int i = schema.firstIndex(); i > 0; i = schema.nextIndex(i)) {
+            clear(chunk, base, slot, i);
+            if (kinds[i - 1] == Kind.STRING) {
+                arena.release(chunk, base + offsets[i - 1]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove all rows and drop the off heap buffers so their memory is freed when they
+     * are collected. Views of the rows can't be used afterwards.
+     */
+    @Override
+    public void close() {
+        index = new HashKeyIndex<>();
+        chunks = new ByteBuffer[0];
+        for (int i = 0; i < objects.length; ++i) {
+            if (objects[i] != null) {
+                objects[i] = new Object[16];
+            }
+        }
+        arena.close();
+    }
+
+    /**
+     * The number of bytes allocated outside the heap, for monitoring.
+     */
+    long offHeapBytes() {
+        return (long) chunks.length * rowsPerChunk * stride + arena.allocatedBytes();
+    }
+
+    private void ensureCapacity(int slot) {
+        int chunk = slot / rowsPerChunk;
+        if (chunk >= chunks.length) {
+            int oldLength = chunks.length;
+            chunks = Arrays.copyOf(chunks, chunk + 1);
+            for (int c = oldLength; c <= chunk; ++c) {
+                chunks[c] = ByteBuffer.allocateDirect(rowsPerChunk * stride)
+                        .order(ByteOrder.nativeOrder());
+            }
+        }
+        for (int i = 0; i < objects.length; ++i) {
+            Object[] values = objects[i];
+            if (values != null && slot >= values.length) {
+                objects[i] = Arrays.copyOf(values, Math.max(slot + 1, values.length + (values.length >> 1)));
+            }
+        }
+    }
+
+    private void set(ByteBuffer chunk, int base, int slot, DidoData data, int index) {
+        int at = base + offsets[index - 1];
+        switch (kinds[index - 1]) {
+            case DOUBLE -> chunk.putDouble(at, data.getDoubleAt(index));
+            case LONG -> chunk.putLong(at, data.getLongAt(index));
+            case INT -> chunk.putInt(at, data.getIntAt(index));
+            case STRING -> arena.store(chunk, at, data.getStringAt(index));
+            case OBJECT -> objects[index - 1][slot] = data.getAt(index);
+        }
+        int bit = index - 1;
+        chunk.put(base + (bit >>> 3), (byte) (chunk.get(base + (bit >>> 3)) | (1 << (bit & 7))));
+    }
+
+    private void clear(ByteBuffer chunk, int base, int slot, int index) {
+        if (kinds[index - 1] == Kind.OBJECT) {
+            objects[index - 1][slot] = null;
+        }
+        int bit = index - 1;
+        chunk.put(base + (bit >>> 3), (byte) (chunk.get(base + (bit >>> 3)) & ~(1 << (bit & 7))));
+    }
+
+    private static boolean has(ByteBuffer chunk, int base, int index) {
+        int bit = index - 1;
+        return (chunk.get(base + (bit >>> 3)) & (1 << (bit & 7))) != 0;
+    }
+
+    /**
+     * A flyweight view of a row.
+     */
+    class RowView extends AbstractData {
+
+        private final int slot;
+
+        RowView(int slot) {
+            this.slot = slot;
+        }
+
+        private ByteBuffer chunk() {
+            return chunks[slot / rowsPerChunk];
+        }
+
+        private int at(int index) {
+            return (slot % rowsPerChunk) * stride + offsets[index - 1];
+        }
+
+        @Override
+        public DataSchema getSchema() {
+            return schema;
+        }
+
+        @Override
+        public boolean hasAt(int index) {
+            return has(chunk(), (slot % rowsPerChunk) * stride, index);
+        }
+
+        @Override
+        public Object getAt(int index) {
+            if (!hasAt(index)) {
+                return null;
+            }
+            return switch (kinds[index - 1]) {
+                case DOUBLE -> chunk().getDouble(at(index));
+                case LONG -> chunk().getLong(at(index));
+                case INT -> chunk().getInt(at(index));
+                case STRING -> arena.load(chunk(), at(index));
+                case OBJECT -> objects[index - 1][slot];
+            };
+        }
+
+        @Override
+        public int getIntAt(int index) {
+            return kinds[index - 1] == Kind.INT ? chunk().getInt(at(index)) :
+                    ((Number) getAt(index)).intValue();
+        }
+
+        @Override
+        public long getLongAt(int index) {
+            return switch (kinds[index - 1]) {
+                case LONG -> chunk().getLong(at(index));
+                case INT -> chunk().getInt(at(index));
+                default -> ((Number) getAt(index)).longValue();
+            };
+        }
+
+        @Override
+        public double getDoubleAt(int index) {
+            return switch (kinds[index - 1]) {
+                case DOUBLE -> chunk().getDouble(at(index));
+                case LONG -> chunk().getLong(at(index));
+                case INT -> chunk().getInt(at(index));
+                default -> ((Number) getAt(index)).doubleValue();
+            };
+        }
+
+        @Override
+        public String getStringAt(int index) {
+            Object value = getAt(index);
+            return value == null ? null : value.toString();
+        }
+    }
+
+    /**
+     * Off heap storage for UTF-8 encoded Strings. A field holds a reference of the address,
+     * the length, and the capacity of its allocation. Allocations are rounded up to a power
+     * of two, and a new value that fits in the field's allocation is written in place.
+     * Allocations that are outgrown, or whose row is removed, go on a free list for their
+     * size, which is used before any new space.
+     */
+    static class StringArena {
+
+        static final int REF_BYTES = 16;
+
+        static final int ARENA_CHUNK_BYTES = 1 << 20;
+
+        static final int MIN_BYTES = 16;
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+
+        /** Free addresses, by size class. */
+        private final long[][] free = new long[Integer.SIZE][];
+
+        private final int[] freeCounts = new int[Integer.SIZE];
+
+        private ByteBuffer current;
+
+        private long allocated;
+
+        void store(ByteBuffer record, int at, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int capacity = record.getInt(at + 12);
+            if (capacity < bytes.length) {
+                release(record, at);
+                capacity = sizeFor(bytes.length);
+                record.putLong(at, allocate(capacity));
+                record.putInt(at + 12, capacity);
+            }
+            if (bytes.length > 0) {
+                long address = record.getLong(at);
+                chunks.get((int) (address >>> 32)).put((int) address, bytes);
+            }
+            record.putInt(at + 8, bytes.length);
+        }
+
+        String load(ByteBuffer record, int at) {
+            int length = record.getInt(at + 8);
+            if (length == 0) {
+                return "";
+            }
+            long address = record.getLong(at);
+            byte[] bytes = new byte[length];
+            chunks.get((int) (address >>> 32)).get((int) address, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Give back the allocation of a field, if it has one.
+         */
+        void release(ByteBuffer record, int at) {
+            int capacity = record.getInt(at + 12);
+            if (capacity == 0) {
+                return;
+            }
+            int sizeClass = sizeClassOf(capacity);
+            long[] addresses = free[sizeClass];
+            if (addresses == null) {
+                addresses = free[sizeClass] = new long[16];
+            }
+            else if (freeCounts[sizeClass] == addresses.length) {
+                addresses = free[sizeClass] = Arrays.copyOf(addresses, addresses.length * 2);
+            }
+            addresses[freeCounts[sizeClass]++] = record.getLong(at);
+            record.putLong(at, 0L);
+            record.putInt(at + 8, 0);
+            record.putInt(at + 12, 0);
+        }
+
+        private long allocate(int size) {
+            int sizeClass = sizeClassOf(size);
+            if (freeCounts[sizeClass] > 0) {
+                return free[sizeClass][--freeCounts[sizeClass]];
+            }
+            if (current == null || current.remaining() < size) {
+                current = ByteBuffer.allocateDirect(Math.max(ARENA_CHUNK_BYTES, size));
+                chunks.add(current);
+                allocated += current.capacity();
+            }
+            long address = ((long) (chunks.size() - 1) << 32) | current.position();
+            current.position(current.position() + size);
+            return address;
+        }
+
+        static int sizeFor(int length) {
+            return length <= MIN_BYTES ? MIN_BYTES : Integer.highestOneBit(length - 1) << 1;
+        }
+
+        private static int sizeClassOf(int size) {
+            return Integer.numberOfTrailingZeros(size);
+        }
+
+        long allocatedBytes() {
+            return allocated;
+        }
+
+        /**
+         * Drop all the buffers so their memory can be freed.
+         */
+        void close() {
+            chunks.clear();
+            current = null;
+            Arrays.fill(free, null);
+            Arrays.fill(freeCounts, 0);
+            allocated = 0;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+import dido.table.util.PersistentTreeMap;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link RowStore} that never changes a row or the map of rows once they have been
+ * published. An update copies the row and makes a new version of the map that shares
+ * all but the path to the row with the old one. The current version is held in a
+ * volatile field so a snapshot is just a read of that field.
+ * <p>
+ * Key and entry sets are of the version current when they were asked for, so iterating
+ * them never fails because of a concurrent change.
+ * </p>
+ */
+class PersistentRowStore<K extends Comparable<K>> implements RowStore<K> {
+
+    private volatile PersistentTreeMap<K, DidoData> rows = PersistentTreeMap.empty();
+
+    @Override
+    public boolean containsKey(K key) {
+        return rows.containsKey(key);
+    }
+
+    @Override
+    public DidoData get(K key) {
+        return rows.get(key);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(rows.keySet());
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return rows.entrySet();
+    }
+
+    @Override
+    public void put(K key, DidoData data) {
+        rows = rows.plus(key, MutableArrayData.copy(data));
+    }
+
+    @Override
+    public boolean update(K key, PartialUpdate partial) {
+        PersistentTreeMap<K, DidoData> current = rows;
+        DidoData existing = current.get(key);
+        if (existing == null) {
+            return false;
+        }
+        MutableData row = MutableArrayData.copy(existing);
+        RowStore.applyPartial(row, partial);
+        rows = current.plus(key, row);
+        return true;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        PersistentTreeMap<K, DidoData> current = rows;
+        PersistentTreeMap<K, DidoData> removed = current.minus(key);
+        if (removed == current) {
+            return false;
+        }
+        rows = removed;
+        return true;
+    }
+
+    @Override
+    public Map<K, DidoData> snapshot() {
+        return rows;
+    }
+    /**
+     * Start again from an empty root. Snapshots already taken are unaffected.
+     */
+    @Override
+    public void close() {
+        rows = PersistentTreeMap.empty();
+    }
+}
@@ -0,0 +1,400 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SchemaBuilder;
+import dido.data.util.EmptyData;
+import dido.flow.QuietlyCloseable;
+import dido.table.CloseableTable;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+import dido.table.util.KeyedDataSubscribers;
+import dido.table.util.OrderStatisticTree;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * The first rows of a source table in the order of some of its fields, up to a limit.
+ * The rows are the source rows with a {@link #RANK} field added, starting at 1. Ties
+ * are broken by key, and null values go last.
+ * <p>
+ * Every source row is kept in an {@link OrderStatisticTree}, so finding where a row
+ * moves from and to is O(log n) in the size of the source. Only the rows between the
+ * two places can change rank, so only those within the limit are passed on, as
+ * partial updates of just the rank. Rows that come into the limit are passed on as data
+ * and rows that go out as deletes. Partials to a row in the limit that don't touch the
+ * order are passed through.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ */
+public class RankedTable<K extends Comparable<K>> implements CloseableTable<K> {
+
+    public static final String RANK = "Rank";
+
+    private static final int ABSENT = Integer.MAX_VALUE;
+
+    private final DataTable<K> source;
+
+    private final DataSchema schema;
+
+    private final int rankIndex;
+
+    private final int[] orderIndices;
+
+    /** Source indices of the order. */
+    private final BitSet ordered = new BitSet();
+
+    private final int limit;
+
+    private final Map<K, Ranked<K>> entries = new HashMap<>();
+
+    private final OrderStatisticTree<Ranked<K>> tree;
+
+    /** Rows within the limit. */
+    private final Map<K, MutableData> rows = new TreeMap<>();
+
+    private final KeyedDataSubscribers<K> subscribers;
+
+    private final QuietlyCloseable closeable;
+
+    private record Ranked<K>(K key, Object[] values) {
+    }
+
+    private RankedTable(Settings<K> settings) {
+        this.source = settings.source;
+        if (settings.limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1, was " + settings.limit);
+        }
+        this.limit = settings.limit;
+        DataSchema sourceSchema = source.getSchema();
+        if (settings.order.isEmpty()) {
+            throw new IllegalArgumentException("No order");
+        }
+        this.orderIndices = new int[settings.order.size()];
+        boolean[] descending = new boolean[orderIndices.length];
+        for (int i = 0; i < orderIndices.length; ++i) {
+            Settings.Order order = settings.order.get(i);
+            int index = sourceSchema.getIndexNamed(order.field());
+            if (index == 0) {
+                throw new IllegalArgumentException("No field " + order.field() + " in " + sourceSchema);
+            }
+            orderIndices[i] = index;
+            descending[i] = order.descending();
+            ordered.set(index);
+        }
+        this.tree = new OrderStatisticTree<>(comparator(descending));
+
+        this.schema = SchemaBuilder.builderFrom(sourceSchema)
+                .addNamed(RANK, int.class)
+                .build();
+        this.rankIndex = schema.lastIndex();
+        this.subscribers = new KeyedDataSubscribers<>(schema);
+
+        source.forEachRow((key, row) -> {
+            Ranked<K> ranked = rankedOf(key, row);
+            entries.put(key, ranked);
+            tree.add(ranked);
+        });
+        for (int position = 0; position < Math.min(limit, tree.size()); ++position) {
+            enter(tree.get(position).key(), position);
+        }
+
+        this.closeable = source.tableSubscribe(new SourceSubscriber());
+    }
+
+    public static class Settings<K extends Comparable<K>> {
+
+        private record Order(String field, boolean descending) {
+        }
+
+        private final DataTable<K> source;
+
+        private final List<Order> order = new ArrayList<>();
+
+        private int limit = Integer.MAX_VALUE;
+
+        Settings(DataTable<K> source) {
+            this.source = source;
+        }
+
+        /**
+         * Order by a field, smallest first, after any fields already given.
+         */
+        public Settings<K> ascending(String field) {
+            order.add(new Order(Objects.requireNonNull(field), false));
+            return this;
+        }
+
+        /**
+         * Order by a field, largest first, after any fields already given.
+         */
+        public Settings<K> descending(String field) {
+            order.add(new Order(Objects.requireNonNull(field), true));
+            return this;
+        }
+
+        public Settings<K> limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        public RankedTable<K> create() {
+            return new RankedTable<>(this);
+        }
+    }
+
+    public static <K extends Comparable<K>> Settings<K> from(DataTable<K> source) {
+        return new Settings<>(source);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K extends Comparable<K>> Comparator<Ranked<K>> comparator(boolean[] descending) {
+        return (a, b) -> {
+            for (int i = 0; i < descending.length; ++i) {
+                Object x = a.values()[i];
+                Object y = b.values()[i];
+                if (x == null || y == null) {
+                    if (x != y) {
+                        return x == null ? 1 : -1;
+                    }
+                    continue;
+                }
+                int c = ((Comparable) x).compareTo(y);
+                if (c != 0) {
+                    return descending[i] ? -c : c;
+                }
+            }
+            return a.key().compareTo(b.key());
+        };
+    }
+
+    private Ranked<K> rankedOf(K key, DidoData row) {
+        Object[] values = new Object[orderIndices.length];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = row.getAt(orderIndices[i]);
+        }
+        return new Ranked<>(key, values);
+    }
+
+    private static void copy(MutableData row, DidoData data, int index) {
+        if (data.hasAt(index)) {
+            row.setAt(index, data.getAt(index));
+        }
+        else {
+            row.clearAt(index);
+        }
+    }
+
+    private void enter(K key, int position) {
+        DidoData data = source.get(key);
+        MutableData row = MutableArrayData.copy(EmptyData.withSchema(schema));
+        DataSchema dataSchema = data.getSchema();
+        for (int index = dataSchema.firstIndex(); index > 0; index = dataSchema.nextIndex(index)) {
+            copy(row, data, index);
+        }
+        row.setAt(rankIndex, position + 1);
+        rows.put(key, row);
+        subscribers.onData(key, row);
+    }
+
+    private void leave(K key) {
+        rows.remove(key);
+        subscribers.onDelete(key);
+    }
+
+    private void rank(K key, int position) {
+        MutableData row = rows.get(key);
+        row.setAt(rankIndex, position + 1);
+        subscribers.onPartial(key, PartialUpdate.from(row).withIndices(rankIndex));
+    }
+
+    /**
+     * Pass on a change to a row that is within the limit before and after.
+     *
+     * @param indices The changed source indices, or null for all of them.
+     */
+    private void update(K key, DidoData data, int[] indices, int position) {
+        MutableData row = rows.get(key);
+        if (indices == null) {
+            DataSchema dataSchema = data.getSchema();
+            for (int index = dataSchema.firstIndex(); index > 0; index = dataSchema.nextIndex(index)) {
+                copy(row, data, index);
+            }
+            row.setAt(rankIndex, position + 1);
+            subscribers.onData(key, row);
+            return;
+        }
+        for (int index : indices) {
+            copy(row, data, index);
+        }
+        if (row.getIntAt(rankIndex) != position + 1) {
+            row.setAt(rankIndex, position + 1);
+            indices = Arrays.copyOf(indices, indices.length + 1);
+            indices[indices.length - 1] = rankIndex;
+        }
+        if (indices.length > 0) {
+            subscribers.onPartial(key, PartialUpdate.from(row).withIndices(indices));
+        }
+    }
+
+    /**
+     * Move a row in the order and pass on what changes within the limit.
+     *
+     * @param data The source row, or null if deleted.
+     * @param indices The changed source indices, or null for all of them.
+     */
+    private void change(K key, DidoData data, int[] indices) {
+
+        int from = ABSENT;
+        Ranked<K> before = entries.remove(key);
+        if (before != null) {
+            from = tree.indexOf(before);
+            tree.remove(before);
+        }
+        int to = ABSENT;
+        if (data != null) {
+            Ranked<K> now = rankedOf(key, data);
+            entries.put(key, now);
+            tree.add(now);
+            to = tree.indexOf(now);
+        }
+        int size = tree.size();
+
+        if (to < from) {
+            // Rows between move down one and the row at the limit goes out.
+            if (to < limit && from >= limit && limit < size) {
+                leave(tree.get(limit).key());
+            }
+            if (to < limit) {
+                if (from < limit) {
+                    update(key, data, indices, to);
+                }
+                else {
+                    enter(key, to);
+                }
+            }
+            int last = Math.min(from, limit - 1);
+            for (int position = to + 1; position <= last && position < size; ++position) {
+                rank(tree.get(position).key(), position);
+            }
+        }
+        else if (from < to) {
+            // Rows between move up one and the row at the limit comes in.
+            if (from < limit) {
+                if (to < limit) {
+                    update(key, data, indices, to);
+                }
+                else {
+                    leave(key);
+                }
+            }
+            int last = Math.min(to - 1, limit - 1);
+            for (int position = from; position <= last && position < size; ++position) {
+                if (position + 1 < limit) {
+                    rank(tree.get(position).key(), position);
+                }
+                else {
+                    enter(tree.get(position).key(), position);
+                }
+            }
+        }
+        else if (to < limit) {
+            update(key, data, indices, to);
+        }
+    }
+
+    class SourceSubscriber implements KeyedSubscriber<K> {
+
+        @Override
+        public void onData(K key, DidoData data) {
+            change(key, data, null);
+        }
+
+        /**
+         * Partials that don't touch the order are passed through if the row is within
+         * the limit.
+         */
+        @Override
+        public void onPartial(K key, PartialUpdate partial) {
+            int[] indices = new int[partial.getSize()];
+            int n = 0;
+            boolean reorder = false;
+            for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+                indices[n++] = index;
+                reorder |= ordered.get(index);
+            }
+            if (reorder) {
+                change(key, source.get(key), indices);
+            }
+            else if (rows.containsKey(key)) {
+                update(key, partial.getData(), indices, rows.get(key).getIntAt(rankIndex) - 1);
+            }
+        }
+
+        @Override
+        public void onDelete(K key) {
+            if (entries.containsKey(key)) {
+                change(key, null, null);
+            }
+        }
+
+        @Override
+        public void onBatchStart() {
+            subscribers.onBatchStart();
+        }
+
+        @Override
+        public void onBatchEnd() {
+            subscribers.onBatchEnd();
+        }
+    }
+
+    @Override
+    public DataSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return rows.containsKey(key);
+    }
+
+    @Override
+    public DidoData get(K key) {
+        return rows.get(key);
+    }
+
+    /**
+     * The keys within the limit, in key order rather than rank order.
+     */
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(rows.keySet());
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return DataJoin.entriesOf(rows.keySet(), rows::get);
+    }
+
+    @Override
+    public void forEachRow(BiConsumer<? super K, ? super DidoData> action) {
+        rows.forEach(action);
+    }
+
+    @Override
+    public KeyedSubscription tableSubscribe(KeyedSubscriber<K> listener) {
+        return subscribers.addSubscriber(listener);
+    }
+
+    @Override
+    public void close() {
+        closeable.close();
+    }
+}
@@ -12,7 +12,7 @@ import dido.table.KeyedSubscription;
 import dido.table.util.KeyedDataSubscribers;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 
 /**
  *
@@ -82,6 +82,16 @@ class ReKeyedTable<K1 extends Comparable<K1>, K2 extends Comparable<K2>>
                 }
 
             }
+
+            @Override
+            public void onBatchStart() {
+                table.subscribers.onBatchStart();
+            }
+
+            @Override
+            public void onBatchEnd() {
+                table.subscribers.onBatchEnd();
+            }
         };
 
         existingTable.entrySet().forEach(
@@ -115,20 +125,48 @@ class ReKeyedTable<K1 extends Comparable<K1>, K2 extends Comparable<K2>>
         return otherTable.get(otherKey);
     }
 
+    /**
+     * A read only view of the keys, which changes as the table does.
+     */
     @Override
     public Set<K1> keySet() {
-        return new TreeSet<>(mappingTo.keySet());
+        return Collections.unmodifiableSet(mappingTo.keySet());
     }
 
+    /**
+     * A read only view over the key mapping. Each row is looked up in the other table
+     * as it is reached.
+     */
     @Override
     public Set<Map.Entry<K1, DidoData>> entrySet() {
-        Map<K1, DidoData> remap = mappingTo.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        e -> otherTable.get(e.getValue()),
-                        (l, r) -> l,
-                        TreeMap::new));
-        return remap.entrySet();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K1, DidoData>> iterator() {
+                Iterator<Map.Entry<K1, K2>> it = mappingTo.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K1, DidoData> next() {
+                        Map.Entry<K1, K2> mapping = it.next();
+                        return Map.entry(mapping.getKey(), otherTable.get(mapping.getValue()));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return mappingTo.size();
+            }
+        };
+    }
+
+    @Override
+    public void forEachRow(BiConsumer<? super K1, ? super DidoData> action) {
+        mappingTo.forEach((key, otherKey) -> action.accept(key, otherTable.get(otherKey)));
     }
 
     @Override
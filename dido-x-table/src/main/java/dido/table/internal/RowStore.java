@@ -0,0 +1,79 @@
+package dido.table.internal;
+
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Where a {@link DataTableBasic} keeps its rows. The table looks after keys and subscribers,
+ * the store only has to look after the data.
+ *
+ * @param <K> The type of the key.
+ */
+interface RowStore<K extends Comparable<K>> {
+
+    boolean containsKey(K key);
+
+    DidoData get(K key);
+
+    Set<K> keySet();
+
+    Set<Map.Entry<K, DidoData>> entrySet();
+
+    /**
+     * Insert a row or replace an existing one.
+     */
+    void put(K key, DidoData data);
+
+    /**
+     * Update the fields of an existing row.
+     *
+     * @return false if there is no row for the key.
+     */
+    boolean update(K key, PartialUpdate partial);
+
+    /**
+     * Remove a row.
+     *
+     * @return false if there was no row for the key.
+     */
+    boolean remove(K key);
+
+    /**
+     * Remove all rows and release anything held outside the heap.
+     */
+    default void close() {
+    }
+
+    /**
+     * Provide rows that won't change. By default the rows are copied.
+     */
+    default Map<K, DidoData> snapshot() {
+        Map<K, DidoData> copy = new TreeMap<>();
+        for (Map.Entry<K, DidoData> entry : entrySet()) {
+            copy.put(entry.getKey(), MutableArrayData.copy(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Apply a partial update to a mutable row. Fields the update doesn't have
+     * are cleared.
+     */
+    static void applyPartial(MutableData row, PartialUpdate partial) {
+        DidoData data = partial.getData();
+        for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+            if (data.hasAt(index)) {
+                row.setAt(index, data.getAt(index));
+            }
+            else {
+                row.clearAt(index);
+            }
+        }
+    }
+}
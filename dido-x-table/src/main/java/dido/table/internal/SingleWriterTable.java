@@ -0,0 +1,432 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.DidoSubscriber;
+import dido.flow.util.KeyExtractor;
+import dido.flow.util.KeyExtractors;
+import dido.flow.util.MpscRingBuffer;
+import dido.flow.util.WaitStrategy;
+import dido.table.CloseableTable;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A {@link DataTable} whose state is owned by a single writer thread. Updates
+ * from any thread are put on a bounded lock free queue and applied by the writer in
+ * batches, so producers never contend on a lock. Subscribers are only ever called from
+ * the writer thread, so they need not be thread safe. Each batch the writer applies is
+ * passed on to subscribers as a batch, within any batch from a producer.
+ * <p>
+ * When the queue is full producers wait using the {@link WaitStrategy}, and the writer
+ * uses the same strategy while the queue is empty.
+ * </p>
+ * <p>
+ * Reads from other threads are run on the writer thread after all updates queued
+ * before them, and wait for the result. Rows returned are copies.
+ * Reads from a subscriber, which is on the writer thread, go straight to the table.
+ * </p>
+ * <p>
+ * Updates are copied and their keys taken before they are queued, so a producer may
+ * reuse its data as soon as the call returns.
+ * An update that fails, such as a partial for a key that isn't in the table, is passed
+ * to the error handler as the producer has moved on.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ */
+public class SingleWriterTable<K extends Comparable<K>> implements CloseableTable<K>, DidoSubscriber {
+
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    static final int DEFAULT_MAX_BATCH = 1 << 10;
+
+    private final DataTableBasic<K> table;
+
+    private final KeyExtractor<K> keyExtractor;
+
+    private final MpscRingBuffer<Consumer<DataTableBasic<K>>> queue;
+
+    private final WaitStrategy waitStrategy;
+
+    private final int maxBatch;
+
+    private final Consumer<? super RuntimeException> errorHandler;
+
+    private final Thread writer;
+
+    private final boolean persistent;
+
+    /** Reads waiting for the writer, failed if the writer stops first. */
+    private final Set<CompletableFuture<?>> pendingCalls = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    private volatile int lastDrainBatchSize;
+
+    private volatile int maxDrainBatchSize;
+
+    private volatile long drainCount;
+
+    private SingleWriterTable(Settings<K> settings) {
+        DataSchema schema = settings.schema;
+        this.keyExtractor = settings.keyExtractor == null ?
+                KeyExtractors.<K>fromFirstField().keyExtractorFor(schema) : settings.keyExtractor;
+        this.table = DataTableBasic.<K>withSchema(schema)
+                .keyExtractor(keyExtractor)
+                .storage(settings.storage)
+                .sortedKeys(settings.sortedKeys)
+                .create();
+        this.persistent = settings.storage == DataTableBasic.Storage.PERSISTENT;
+        this.queue = new MpscRingBuffer<>(settings.queueCapacity > 0 ?
+                settings.queueCapacity : DEFAULT_CAPACITY);
+        this.waitStrategy = Objects.requireNonNullElse(settings.waitStrategy, WaitStrategy.YIELD);
+        this.maxBatch = settings.maxBatch > 0 ? settings.maxBatch : DEFAULT_MAX_BATCH;
+        this.errorHandler = settings.errorHandler == null ?
+                e -> Thread.currentThread().getUncaughtExceptionHandler()
+                        .uncaughtException(Thread.currentThread(), e) :
+                settings.errorHandler;
+        ThreadFactory threadFactory = settings.threadFactory == null ?
+                Thread.ofPlatform().name("dido-table-writer-", 0).daemon(true).factory() :
+                settings.threadFactory;
+        this.writer = threadFactory.newThread(this::drainLoop);
+        this.writer.start();
+    }
+
+    public static class Settings<K extends Comparable<K>> {
+
+        private final DataSchema schema;
+
+        private KeyExtractor<K> keyExtractor;
+
+        private DataTableBasic.Storage storage;
+
+        private boolean sortedKeys;
+
+        private int queueCapacity;
+
+        private WaitStrategy waitStrategy;
+
+        private int maxBatch;
+
+        private Consumer<? super RuntimeException> errorHandler;
+
+        private ThreadFactory threadFactory;
+
+        Settings(DataSchema schema) {
+            this.schema = schema;
+        }
+
+        public Settings<K> keyExtractor(KeyExtractor<K> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+            return this;
+        }
+
+        /**
+         * @see DataTableBasic.Settings#storage(DataTableBasic.Storage)
+         */
+        public Settings<K> storage(DataTableBasic.Storage storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        /**
+         * @see DataTableBasic.Settings#sortedKeys(boolean)
+         */
+        public Settings<K> sortedKeys(boolean sortedKeys) {
+            this.sortedKeys = sortedKeys;
+            return this;
+        }
+
+        /**
+         * The capacity of the queue of updates. Rounded up to a power of 2. Defaults
+         * to 65536.
+         */
+        public Settings<K> queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * How producers wait for space and the writer waits for updates. Defaults to
+         * {@link WaitStrategy#YIELD}.
+         */
+        public Settings<K> waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * The most updates the writer applies before checking the queue again.
+         * Defaults to 1024.
+         */
+        public Settings<K> maxBatch(int maxBatch) {
+            this.maxBatch = maxBatch;
+            return this;
+        }
+
+        /**
+         * Handles exceptions from applying updates on the writer thread. Defaults to
+         * the writer thread's uncaught exception handler.
+         */
+        public Settings<K> errorHandler(Consumer<? super RuntimeException> errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        /**
+         * Creates the writer thread. Defaults to a daemon platform thread.
+         */
+        public Settings<K> threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        public SingleWriterTable<K> create() {
+            return new SingleWriterTable<>(this);
+        }
+    }
+
+    public static <K extends Comparable<K>> Settings<K> withSchema(DataSchema schema) {
+        return new Settings<>(schema);
+    }
+
+    private void drainLoop() {
+        Consumer<Consumer<DataTableBasic<K>>> apply = this::apply;
+        while (running || !queue.isEmpty()) {
+            if (queue.isEmpty()) {
+                waitStrategy.idle();
+            }
+            else {
+                apply(DataTableBasic::onBatchStart);
+                int batch = queue.drain(apply, maxBatch);
+                apply(DataTableBasic::onBatchEnd);
+                lastDrainBatchSize = batch;
+                if (batch > maxDrainBatchSize) {
+                    maxDrainBatchSize = batch;
+                }
+                ++drainCount;
+            }
+        }
+        // A read that raced with close may be queued behind the end of the loop.
+        for (CompletableFuture<?> pending : pendingCalls) {
+            pending.completeExceptionally(new IllegalStateException("Table is closed"));
+        }
+    }
+
+    private void apply(Consumer<DataTableBasic<K>> event) {
+        try {
+            event.accept(table);
+        }
+        catch (RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private void enqueue(Consumer<DataTableBasic<K>> event) {
+        do {
+            if (!running) {
+                throw new IllegalStateException("Table is closed");
+            }
+        }
+        while (!offerOrWait(event));
+    }
+
+    private boolean offerOrWait(Consumer<DataTableBasic<K>> event) {
+        if (queue.offer(event)) {
+            return true;
+        }
+        waitStrategy.idle();
+        return false;
+    }
+
+    private <T> T call(Function<? super DataTableBasic<K>, ? extends T> query) {
+        if (Thread.currentThread() == writer) {
+            return query.apply(table);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        pendingCalls.add(result);
+        try {
+            enqueue(t -> {
+                try {
+                    result.complete(query.apply(t));
+                }
+                catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result.join();
+        }
+        finally {
+            pendingCalls.remove(result);
+        }
+    }
+
+    private static DidoData copy(DidoData row) {
+        return row == null ? null : MutableArrayData.copy(row);
+    }
+
+    private static PartialUpdate copy(PartialUpdate partial) {
+        return PartialUpdate.from(MutableArrayData.copy(partial.getData()))
+                .withIndices(partial.getIndices());
+    }
+
+    @Override
+    public void onData(DidoData data) {
+        DidoData row = copy(data);
+        K key = keyExtractor.keyOf(row);
+        enqueue(t -> t.put(key, row));
+    }
+
+    @Override
+    public void onPartial(PartialUpdate partial) {
+        PartialUpdate update = copy(partial);
+        K key = keyExtractor.keyOf(update.getData());
+        enqueue(t -> t.update(key, update));
+    }
+
+    @Override
+    public void onDelete(DidoData keyData) {
+        K key = keyExtractor.keyOf(keyData);
+        enqueue(t -> t.delete(key));
+    }
+
+    @Override
+    public void onBatchStart() {
+        enqueue(DataTableBasic::onBatchStart);
+    }
+
+    @Override
+    public void onBatchEnd() {
+        enqueue(DataTableBasic::onBatchEnd);
+    }
+
+    @Override
+    public DataSchema getSchema() {
+        return table.getSchema();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return call(t -> t.containsKey(key));
+    }
+
+    @Override
+    public DidoData get(K key) {
+        return Thread.currentThread() == writer ? table.get(key) :
+                call(t -> copy(t.get(key)));
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return Thread.currentThread() == writer ? table.keySet() :
+                call(t -> Collections.unmodifiableSet(new LinkedHashSet<>(t.keySet())));
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        if (Thread.currentThread() == writer) {
+            return table.entrySet();
+        }
+        return call(t -> {
+            Map<K, DidoData> rows = new LinkedHashMap<>();
+            for (Map.Entry<K, DidoData> entry : t.entrySet()) {
+                rows.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(rows).entrySet();
+        });
+    }
+
+    /**
+     * A snapshot of the table. With {@link DataTableBasic.Storage#PERSISTENT} this is
+     * taken straight away without waiting for the writer, so it may not include updates
+     * still in the queue. Otherwise, it is taken by the writer after queued updates.
+     */
+    @Override
+    public DataTable<K> snapshot() {
+        return persistent ? table.snapshot() : call(DataTableBasic::snapshot);
+    }
+
+    /**
+     * Subscribe on the writer thread, so the subscriber receives all updates queued
+     * after this call returns.
+     */
+    @Override
+    public KeyedSubscription tableSubscribe(KeyedSubscriber<K> listener) {
+        KeyedSubscription subscription = call(t -> t.tableSubscribe(listener));
+        return new KeyedSubscription() {
+            @Override
+            public DataSchema getSchema() {
+                return subscription.getSchema();
+            }
+
+            @Override
+            public void close() {
+                if (running) {
+                    call(t -> {
+                        subscription.close();
+                        return null;
+                    });
+                }
+            }
+        };
+    }
+
+    /**
+     * The number of updates waiting to be applied.
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * The number of updates applied in the last batch.
+     */
+    public int lastDrainBatchSize() {
+        return lastDrainBatchSize;
+    }
+
+    /**
+     * The most updates applied in one batch.
+     */
+    public int maxDrainBatchSize() {
+        return maxDrainBatchSize;
+    }
+
+    /**
+     * The number of batches applied.
+     */
+    public long drainCount() {
+        return drainCount;
+    }
+
+    /**
+     * Stop accepting updates, wait for the writer to apply those already queued, and
+     * stop the writer. An update racing with close may be lost, and a read racing with
+     * close fails. Called from a subscriber, on the writer thread, this doesn't wait
+     * and the writer stops once it has applied what is queued.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.DidoSubscriber;
+import dido.flow.util.KeyExtractor;
+import dido.flow.util.KeyExtractors;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+import dido.table.util.TableSnapshot;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link DataTable} that may be updated from many threads at once. Keys are spread
+ * over a number of stripes, each of which is a {@link DataTableBasic} guarded by its own
+ * lock. Updates to keys in different stripes proceed in parallel.
+ * <p>
+ * The stripe lock is held while subscribers are notified, so all events for a key
+ * reach a subscriber in the order they were applied. Subscribers may however be called
+ * from several threads at once for keys in different stripes and must be thread safe.
+ * Batch boundaries aren't passed on, as updates from different threads don't make up
+ * one batch.
+ * </p>
+ * <p>
+ * {@link #get(Comparable)} returns a copy of the row as it is at that moment.
+ * {@link #keySet()} and {@link #entrySet()} are built a stripe at a time so are
+ * consistent for each stripe but not across them.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ */
+public class StripedDataTable<K extends Comparable<K>> implements DataTable<K>, DidoSubscriber {
+
+    private final DataSchema schema;
+
+    private final KeyExtractor<K> keyExtractor;
+
+    private final DataTableBasic<K>[] stripes;
+
+    private final ReentrantLock[] locks;
+
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    private StripedDataTable(Settings<K> settings) {
+        this.schema = settings.schema;
+        this.keyExtractor = settings.keyExtractor == null ?
+                KeyExtractors.<K>fromFirstField().keyExtractorFor(schema) : settings.keyExtractor;
+
+        int stripeCount = stripeCountFor(settings.stripes);
+        this.mask = stripeCount - 1;
+        this.stripes = new DataTableBasic[stripeCount];
+        this.locks = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; ++i) {
+            stripes[i] = DataTableBasic.<K>withSchema(schema)
+                    .keyExtractor(keyExtractor)
+                    .storage(settings.storage)
+                    .sortedKeys(settings.sortedKeys)
+                    .create();
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    static int stripeCountFor(int requested) {
+        int stripes = requested > 0 ? requested :
+                Runtime.getRuntime().availableProcessors() * 4;
+        return Math.min(1 << 16, Math.max(1, Integer.highestOneBit(stripes - 1) << 1));
+    }
+
+    public static class Settings<K extends Comparable<K>> {
+
+        private final DataSchema schema;
+
+        private KeyExtractor<K> keyExtractor;
+
+        private int stripes;
+
+        private DataTableBasic.Storage storage;
+
+        private boolean sortedKeys;
+
+        Settings(DataSchema schema) {
+            this.schema = schema;
+        }
+
+        public Settings<K> keyExtractor(KeyExtractor<K> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+            return this;
+        }
+
+        /**
+         * The number of stripes. This is rounded up to a power of 2. Defaults to four
+         * times the number of processors.
+         */
+        public Settings<K> stripes(int stripes) {
+            this.stripes = stripes;
+            return this;
+        }
+
+        /**
+         * How each stripe stores its rows.
+         *
+         * @see DataTableBasic.Settings#storage(DataTableBasic.Storage)
+         */
+        public Settings<K> storage(DataTableBasic.Storage storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        /**
+         * @see DataTableBasic.Settings#sortedKeys(boolean)
+         */
+        public Settings<K> sortedKeys(boolean sortedKeys) {
+            this.sortedKeys = sortedKeys;
+            return this;
+        }
+
+        public StripedDataTable<K> create() {
+            return new StripedDataTable<>(this);
+        }
+    }
+
+    public static <K extends Comparable<K>> Settings<K> withSchema(DataSchema schema) {
+        return new Settings<>(schema);
+    }
+
+    int stripeOf(K key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    @Override
+    public DataSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        int stripe = stripeOf(key);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            return stripes[stripe].containsKey(key);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public DidoData get(K key) {
+        int stripe = stripeOf(key);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            DidoData row = stripes[stripe].get(key);
+            return row == null ? null : MutableArrayData.copy(row);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        SortedSet<K> keys = new TreeSet<>();
+        for (int i = 0; i < stripes.length; ++i) {
+            ReentrantLock lock = locks[i];
+            lock.lock();
+            try {
+                keys.addAll(stripes[i].keySet());
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        return Collections.unmodifiableSortedSet(keys);
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        SortedMap<K, DidoData> rows = new TreeMap<>();
+        for (int i = 0; i < stripes.length; ++i) {
+            ReentrantLock lock = locks[i];
+            lock.lock();
+            try {
+                for (Map.Entry<K, DidoData> entry : stripes[i].entrySet()) {
+                    rows.put(entry.getKey(), MutableArrayData.copy(entry.getValue()));
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        return Collections.unmodifiableSortedMap(rows).entrySet();
+    }
+
+    /**
+     * A snapshot that is consistent across all stripes. All stripes are locked while
+     * the snapshot of each is taken, which with {@link DataTableBasic.Storage#PERSISTENT}
+     * is just a read of its current version, so writers are held up for no more than a
+     * read per stripe. The stripe snapshots are merged as the snapshot is read, after the
+     * locks are released.
+     */
+    @Override
+    public DataTable<K> snapshot() {
+        @SuppressWarnings("unchecked")
+        Map<K, DidoData>[] rows = new Map[stripes.length];
+        lockAll();
+        try {
+            for (int i = 0; i < stripes.length; ++i) {
+                rows[i] = stripes[i].snapshotRows();
+            }
+        }
+        finally {
+            unlockAll();
+        }
+        return TableSnapshot.of(schema, new MergedRows(rows));
+    }
+
+    /**
+     * The snapshots of all stripes as one map. Lookups go to the stripe of the key, and
+     * iteration merges the stripes, which are each in key order, into key order.
+     */
+    class MergedRows extends AbstractMap<K, DidoData> {
+
+        private final Map<K, DidoData>[] rows;
+
+        private final int size;
+
+        MergedRows(Map<K, DidoData>[] rows) {
+            this.rows = rows;
+            int size = 0;
+            for (Map<K, DidoData> stripe : rows) {
+                size += stripe.size();
+            }
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public DidoData get(Object key) {
+            return rows[stripeOf((K) key)].get(key);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean containsKey(Object key) {
+            return rows[stripeOf((K) key)].containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<K, DidoData>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<K, DidoData>> iterator() {
+                    return new MergingIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        class MergingIterator implements Iterator<Entry<K, DidoData>> {
+
+            private record Head<K extends Comparable<K>>(Entry<K, DidoData> entry,
+                                                         Iterator<Entry<K, DidoData>> rest) {
+            }
+
+            private final PriorityQueue<Head<K>> heads =
+                    new PriorityQueue<>(Math.max(1, rows.length),
+                            Comparator.comparing(head -> head.entry().getKey()));
+
+            MergingIterator() {
+                for (Map<K, DidoData> stripe : rows) {
+                    advance(stripe.entrySet().iterator());
+                }
+            }
+
+            private void advance(Iterator<Entry<K, DidoData>> stripe) {
+                if (stripe.hasNext()) {
+                    heads.add(new Head<>(stripe.next(), stripe));
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Entry<K, DidoData> next() {
+                Head<K> head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                advance(head.rest());
+                return head.entry();
+            }
+        }
+    }
+
+    /**
+     * Subscribe to all stripes. All stripes are locked while the subscriber is added so
+     * no stripe can get ahead of another.
+     */
+    @Override
+    public KeyedSubscription tableSubscribe(KeyedSubscriber<K> listener) {
+
+        KeyedSubscription[] subscriptions = new KeyedSubscription[stripes.length];
+        lockAll();
+        try {
+            for (int i = 0; i < stripes.length; ++i) {
+                subscriptions[i] = stripes[i].tableSubscribe(listener);
+            }
+        }
+        finally {
+            unlockAll();
+        }
+
+        return new KeyedSubscription() {
+            @Override
+            public DataSchema getSchema() {
+                return schema;
+            }
+
+            @Override
+            public void close() {
+                lockAll();
+                try {
+                    for (KeyedSubscription subscription : subscriptions) {
+                        subscription.close();
+                    }
+                }
+                finally {
+                    unlockAll();
+                }
+            }
+        };
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; --i) {
+            locks[i].unlock();
+        }
+    }
+
+    @Override
+    public void onData(DidoData data) {
+        K key = keyExtractor.keyOf(data);
+        int stripe = stripeOf(key);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            stripes[stripe].put(key, data);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onPartial(PartialUpdate partial) {
+        K key = keyExtractor.keyOf(partial.getData());
+        int stripe = stripeOf(key);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            stripes[stripe].update(key, partial);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onDelete(DidoData keyData) {
+        K key = keyExtractor.keyOf(keyData);
+        int stripe = stripeOf(key);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            stripes[stripe].delete(key);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
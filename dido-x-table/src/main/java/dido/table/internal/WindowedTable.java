@@ -0,0 +1,717 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.FieldGetter;
+import dido.data.ReadSchema;
+import dido.data.partial.PartialUpdate;
+import dido.data.useful.AbstractData;
+import dido.flow.QuietlyCloseable;
+import dido.table.CloseableTable;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+import dido.table.util.KeyedDataSubscribers;
+
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Open, high, low, close, volume and VWAP bars over the ticks of a source table, one
+ * row per key holding the latest bar for that key. A row or partial that has the price
+ * field is a tick, and the volume, if there is a volume field, is read from the same row.
+ * Rows already in the source when the table is created aren't ticks.
+ * <p>
+ * Time is divided into steps aligned to the epoch. A tumbling window is one step long,
+ * a sliding window is a whole number of steps long and moves on a step at a time. The
+ * ticks of each step are kept per key in a ring of primitive slots, one for each step of
+ * the window. Running totals for the window are updated as ticks arrive and as steps
+ * leave the window, so a tick doesn't go over the slots, and the high or low is only
+ * looked for again when the step that held it leaves.
+ * </p>
+ * <p>
+ * Ticks into the open bar are passed on as partial updates of the fields that changed.
+ * When the clock passes the end of a bar the bar is closed, and the whole row is passed
+ * on again as a new row with {@code Closed} set, so the open row already passed on isn't
+ * changed. A closed row is not changed afterwards, the next bar for the key is a new row,
+ * passed on in full when it opens.
+ * </p>
+ * <p>
+ * Bars are only closed when something happens, either a tick from the source or a call
+ * to {@link #poll()}, which should be called regularly on the thread that updates the
+ * source, for instance each step. Time comes from the clock given in the settings, so
+ * tests can move it on as they like.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ */
+public class WindowedTable<K extends Comparable<K>> implements CloseableTable<K> {
+
+    public static final String START = "Start";
+
+    public static final String END = "End";
+
+    public static final String OPEN = "Open";
+
+    public static final String HIGH = "High";
+
+    public static final String LOW = "Low";
+
+    public static final String CLOSE = "Close";
+
+    public static final String VOLUME = "Volume";
+
+    public static final String VWAP = "Vwap";
+
+    public static final String COUNT = "Count";
+
+    public static final String CLOSED = "Closed";
+
+    private static final int START_INDEX = 2;
+
+    private static final int OPEN_INDEX = 4;
+
+    private static final int CLOSED_INDEX = 11;
+
+    private final DataSchema schema;
+
+    private final DataTable<K> source;
+
+    private final FieldGetter priceGetter;
+
+    private final FieldGetter volumeGetter;
+
+    private final int priceIndex;
+
+    private final InstantSource clock;
+
+    private final long stepMillis;
+
+    private final int slots;
+
+    private final Map<K, Bars> bars = new TreeMap<>();
+
+    private final KeyedDataSubscribers<K> subscribers;
+
+    private final QuietlyCloseable closeable;
+
+    /** The step the clock was last seen in. */
+    private long step;
+
+    /**
+     * The ticks of a key, one slot per step of the window, and the totals of the window
+     * of the latest bar, which are kept up to date as ticks arrive and steps leave the
+     * window.
+     */
+    private class Bars {
+
+        /** The step and tick count of each slot. */
+        final long[] slotCounts = new long[slots * 2];
+
+        /** The open, high, low, volume and turnover of each slot. */
+        final double[] slotValues = new double[slots * 5];
+
+        /** The step of the last tick. */
+        long lastStep = Long.MIN_VALUE;
+
+        /** The last step of the window of the totals and the row. */
+        long window = Long.MIN_VALUE;
+
+        double first, high, low, last;
+
+        long firstStep, highStep, lowStep;
+
+        final Sum volume = new Sum();
+
+        final Sum turnover = new Sum();
+
+        long count;
+
+        BarRow row;
+
+        boolean open;
+
+        Bars() {
+            for (int slot = 0; slot < slots; ++slot) {
+                slotCounts[slot * 2] = Long.MIN_VALUE;
+            }
+        }
+
+        private int slotOf(long step) {
+            return (int) Math.floorMod(step, (long) slots);
+        }
+
+        private boolean hasStep(int slot, long step) {
+            return slotCounts[slot * 2] == step;
+        }
+
+        /**
+         * Add a tick in a step of the current window.
+         */
+        void add(long step, double price, double volume) {
+            int slot = slotOf(step);
+            int at = slot * 5;
+            if (!hasStep(slot, step)) {
+                slotCounts[slot * 2] = step;
+                slotCounts[slot * 2 + 1] = 0;
+                slotValues[at] = price;
+                slotValues[at + 1] = price;
+                slotValues[at + 2] = price;
+                slotValues[at + 3] = 0;
+                slotValues[at + 4] = 0;
+            }
+            else {
+                slotValues[at + 1] = Math.max(slotValues[at + 1], price);
+                slotValues[at + 2] = Math.min(slotValues[at + 2], price);
+            }
+            slotValues[at + 3] += volume;
+            slotValues[at + 4] += price * volume;
+            ++slotCounts[slot * 2 + 1];
+
+            if (count == 0) {
+                first = price;
+                firstStep = step;
+                high = price;
+                highStep = step;
+                low = price;
+                lowStep = step;
+            }
+            else {
+                // Ties move to the later step, which leaves the window later.
+                if (price >= high) {
+                    high = price;
+                    highStep = step;
+                }
+                if (price <= low) {
+                    low = price;
+                    lowStep = step;
+                }
+            }
+            last = price;
+            this.volume.add(volume);
+            turnover.add(price * volume);
+            ++count;
+            lastStep = step;
+        }
+
+        /**
+         * Move the totals on to the window ending in the given step, taking out the steps
+         * that leave it. The high or low is only looked for again if the step that
+         * held it leaves.
+         */
+        void moveTo(long window) {
+            if (window == this.window) {
+                return;
+            }
+            if (count == 0 || window - this.window >= slots) {
+                this.window = window;
+                clear();
+                return;
+            }
+            boolean firstLeft = false, highLeft = false, lowLeft = false;
+            for (long s = this.window - slots + 1; s <= window - slots; ++s) {
+                int slot = slotOf(s);
+                if (!hasStep(slot, s)) {
+                    continue;
+                }
+                volume.add(-slotValues[slot * 5 + 3]);
+                turnover.add(-slotValues[slot * 5 + 4]);
+                count -= slotCounts[slot * 2 + 1];
+                firstLeft |= s == firstStep;
+                highLeft |= s == highStep;
+                lowLeft |= s == lowStep;
+            }
+            this.window = window;
+            if (count == 0) {
+                clear();
+                return;
+            }
+            if (firstLeft) {
+                for (long s = window - slots + 1; ; ++s) {
+                    int slot = slotOf(s);
+                    if (hasStep(slot, s)) {
+                        first = slotValues[slot * 5];
+                        firstStep = s;
+                        break;
+                    }
+                }
+            }
+            if (highLeft || lowLeft) {
+                high = Double.NEGATIVE_INFINITY;
+                low = Double.POSITIVE_INFINITY;
+                for (long s = window - slots + 1; s <= window; ++s) {
+                    int slot = slotOf(s);
+                    if (!hasStep(slot, s)) {
+                        continue;
+                    }
+                    if (slotValues[slot * 5 + 1] >= high) {
+                        high = slotValues[slot * 5 + 1];
+                        highStep = s;
+                    }
+                    if (slotValues[slot * 5 + 2] <= low) {
+                        low = slotValues[slot * 5 + 2];
+                        lowStep = s;
+                    }
+                }
+            }
+        }
+
+        private void clear() {
+            volume.clear();
+            turnover.clear();
+            count = 0;
+        }
+
+        /**
+         * Does the window ending in the given step have any ticks.
+         */
+        boolean hasTicks(long window) {
+            return lastStep > window - slots;
+        }
+
+        /**
+         * Write the totals into the open row.
+         *
+         * @return The changed indices.
+         */
+        int[] update() {
+            double volume = this.volume.get();
+            double turnover = this.turnover.get();
+            boolean vwapChanged = row.volume == 0 ? volume != 0 :
+                    volume == 0 || row.turnover / row.volume != turnover / volume;
+            int[] changed = new int[CLOSED_INDEX - OPEN_INDEX];
+            int n = 0;
+            if (row.high != high) {
+                row.high = high;
+                changed[n++] = OPEN_INDEX + 1;
+            }
+            if (row.low != low) {
+                row.low = low;
+                changed[n++] = OPEN_INDEX + 2;
+            }
+            if (row.close != last) {
+                row.close = last;
+                changed[n++] = OPEN_INDEX + 3;
+            }
+            if (row.volume != volume) {
+                row.volume = volume;
+                changed[n++] = OPEN_INDEX + 4;
+            }
+            row.turnover = turnover;
+            if (vwapChanged) {
+                changed[n++] = OPEN_INDEX + 5;
+            }
+            if (row.count != count) {
+                row.count = count;
+                changed[n++] = OPEN_INDEX + 6;
+            }
+            return Arrays.copyOf(changed, n);
+        }
+
+        /**
+         * Start a new row for the window ending in the given step.
+         */
+        void openRow(K key, long window) {
+            moveTo(window);
+            row = new BarRow(key, (window - slots + 1) * stepMillis, (window + 1) * stepMillis);
+            row.open = first;
+            row.high = high;
+            row.low = low;
+            row.close = last;
+            row.volume = volume.get();
+            row.turnover = turnover.get();
+            row.count = count;
+            open = true;
+        }
+
+        /**
+         * Replace the open row with a closed copy, so the open row that was passed on
+         * isn't changed.
+         */
+        void closeRow() {
+            row = row.closedCopy();
+            open = false;
+        }
+    }
+
+    /**
+     * A bar held in primitive fields, so that ticks don't box.
+     */
+    private class BarRow extends AbstractData {
+
+        final K key;
+
+        final long start;
+
+        final long end;
+
+        double open, high, low, close, volume, turnover;
+
+        long count;
+
+        boolean closed;
+
+        BarRow(K key, long start, long end) {
+            this.key = key;
+            this.start = start;
+            this.end = end;
+        }
+
+        BarRow closedCopy() {
+            BarRow copy = new BarRow(key, start, end);
+            copy.open = open;
+            copy.high = high;
+            copy.low = low;
+            copy.close = close;
+            copy.volume = volume;
+            copy.turnover = turnover;
+            copy.count = count;
+            copy.closed = true;
+            return copy;
+        }
+
+        @Override
+        public DataSchema getSchema() {
+            return schema;
+        }
+
+        @Override
+        public boolean hasAt(int index) {
+            return index != OPEN_INDEX + 5 || volume != 0;
+        }
+
+        @Override
+        public Object getAt(int index) {
+            return switch (index) {
+                case 1 -> key;
+                case START_INDEX, START_INDEX + 1, OPEN_INDEX + 6 -> getLongAt(index);
+                case OPEN_INDEX + 5 -> volume == 0 ? null : turnover / volume;
+                case CLOSED_INDEX -> closed;
+                case OPEN_INDEX, OPEN_INDEX + 1, OPEN_INDEX + 2, OPEN_INDEX + 3, OPEN_INDEX + 4 ->
+                        getDoubleAt(index);
+                default -> throw new IndexOutOfBoundsException("No index " + index + " in " + schema);
+            };
+        }
+
+        @Override
+        public double getDoubleAt(int index) {
+            return switch (index) {
+                case OPEN_INDEX -> open;
+                case OPEN_INDEX + 1 -> high;
+                case OPEN_INDEX + 2 -> low;
+                case OPEN_INDEX + 3 -> close;
+                case OPEN_INDEX + 4 -> volume;
+                case OPEN_INDEX + 5 -> turnover / volume;
+                default -> super.getDoubleAt(index);
+            };
+        }
+
+        @Override
+        public long getLongAt(int index) {
+            return switch (index) {
+                case START_INDEX -> start;
+                case START_INDEX + 1 -> end;
+                case OPEN_INDEX + 6 -> count;
+                default -> super.getLongAt(index);
+            };
+        }
+
+        @Override
+        public boolean getBooleanAt(int index) {
+            return index == CLOSED_INDEX ? closed : super.getBooleanAt(index);
+        }
+    }
+
+    /**
+     * A compensated running sum, so that taking out the volume and turnover of steps that
+     * leave the window doesn't leave rounding errors behind.
+     */
+    private static class Sum {
+
+        private double sum;
+
+        private double compensation;
+
+        void add(double value) {
+            double total = sum + value;
+            if (Math.abs(sum) >= Math.abs(value)) {
+                compensation += (sum - total) + value;
+            }
+            else {
+                compensation += (value - total) + sum;
+            }
+            sum = total;
+        }
+
+        double get() {
+            return sum + compensation;
+        }
+
+        void clear() {
+            sum = 0;
+            compensation = 0;
+        }
+    }
+
+    private WindowedTable(Settings<K> settings) {
+        this.source = settings.source;
+        this.clock = Objects.requireNonNull(settings.clock);
+        this.stepMillis = Objects.requireNonNull(settings.step, "No window").toMillis();
+        if (stepMillis <= 0) {
+            throw new IllegalArgumentException("Step must be at least a millisecond, was " + settings.step);
+        }
+        long windowMillis = settings.window.toMillis();
+        if (windowMillis < stepMillis || windowMillis % stepMillis != 0) {
+            throw new IllegalArgumentException("Window " + settings.window +
+                    " must be a whole number of steps of " + settings.step);
+        }
+        this.slots = Math.toIntExact(windowMillis / stepMillis);
+
+        DataSchema sourceSchema = source.getSchema();
+        ReadSchema readSchema = ReadSchema.from(sourceSchema);
+        this.priceIndex = sourceSchema.getIndexNamed(
+                Objects.requireNonNull(settings.priceField, "No price field"));
+        if (priceIndex == 0) {
+            throw new IllegalArgumentException("No field " + settings.priceField + " in " + sourceSchema);
+        }
+        this.priceGetter = readSchema.getFieldGetterAt(priceIndex);
+        if (settings.volumeField == null) {
+            this.volumeGetter = null;
+        }
+        else {
+            int volumeIndex = sourceSchema.getIndexNamed(settings.volumeField);
+            if (volumeIndex == 0) {
+                throw new IllegalArgumentException("No field " + settings.volumeField + " in " + sourceSchema);
+            }
+            this.volumeGetter = readSchema.getFieldGetterAt(volumeIndex);
+        }
+
+        this.schema = DataSchema.builder()
+                .addNamed(sourceSchema.getFieldNameAt(sourceSchema.firstIndex()),
+                        sourceSchema.getTypeAt(sourceSchema.firstIndex()))
+                .addNamed(START, long.class)
+                .addNamed(END, long.class)
+                .addNamed(OPEN, double.class)
+                .addNamed(HIGH, double.class)
+                .addNamed(LOW, double.class)
+                .addNamed(CLOSE, double.class)
+                .addNamed(VOLUME, double.class)
+                .addNamed(VWAP, double.class)
+                .addNamed(COUNT, long.class)
+                .addNamed(CLOSED, boolean.class)
+                .build();
+        this.subscribers = new KeyedDataSubscribers<>(schema);
+        this.step = stepOf(clock.millis());
+
+        this.closeable = source.tableSubscribe(new SourceSubscriber());
+    }
+
+    public static class Settings<K extends Comparable<K>> {
+
+        private final DataTable<K> source;
+
+        private String priceField;
+
+        private String volumeField;
+
+        private Duration window;
+
+        private Duration step;
+
+        private InstantSource clock = InstantSource.system();
+
+        Settings(DataTable<K> source) {
+            this.source = source;
+        }
+
+        /**
+         * The field holding the price of a tick.
+         */
+        public Settings<K> price(String field) {
+            this.priceField = field;
+            return this;
+        }
+
+        /**
+         * The field holding the volume of a tick. Without it the volume is 0 and there is
+         * no VWAP.
+         */
+        public Settings<K> volume(String field) {
+            this.volumeField = field;
+            return this;
+        }
+
+        /**
+         * Bars of the given length, one after the other.
+         */
+        public Settings<K> tumbling(Duration window) {
+            return sliding(window, window);
+        }
+
+        /**
+         * Bars of the given length, starting every step.
+         */
+        public Settings<K> sliding(Duration window, Duration step) {
+            this.window = Objects.requireNonNull(window);
+            this.step = Objects.requireNonNull(step);
+            return this;
+        }
+
+        public Settings<K> clock(InstantSource clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public WindowedTable<K> create() {
+            return new WindowedTable<>(this);
+        }
+    }
+
+    public static <K extends Comparable<K>> Settings<K> from(DataTable<K> source) {
+        return new Settings<>(source);
+    }
+
+    private long stepOf(long millis) {
+        return Math.floorDiv(millis, stepMillis);
+    }
+
+    /**
+     * Close any bars the clock has passed the end of.
+     */
+    public void poll() {
+        long now = stepOf(clock.millis());
+        if (now <= step) {
+            return;
+        }
+        step = now;
+        for (Map.Entry<K, Bars> entry : bars.entrySet()) {
+            Bars keyBars = entry.getValue();
+            if (keyBars.open && keyBars.window < now) {
+                roll(entry.getKey(), keyBars, now);
+            }
+        }
+    }
+
+    /**
+     * Close the open bar, then pass on any later bars with ticks, the last of which is
+     * left open.
+     */
+    private void roll(K key, Bars keyBars, long now) {
+        keyBars.closeRow();
+        subscribers.onData(key, keyBars.row);
+        for (long window = keyBars.window + 1; window <= now && keyBars.hasTicks(window); ++window) {
+            keyBars.openRow(key, window);
+            if (window < now) {
+                keyBars.closeRow();
+            }
+            subscribers.onData(key, keyBars.row);
+        }
+    }
+
+    private void tick(K key, DidoData data) {
+        poll();
+        if (!priceGetter.has(data)) {
+            return;
+        }
+        double price = priceGetter.getDouble(data);
+        double volume = volumeGetter == null || !volumeGetter.has(data) ? 0 : volumeGetter.getDouble(data);
+        Bars keyBars = bars.computeIfAbsent(key, k -> new Bars());
+        if (keyBars.open) {
+            keyBars.add(step, price, volume);
+            int[] changed = keyBars.update();
+            if (changed.length > 0) {
+                subscribers.onPartial(key, PartialUpdate.from(keyBars.row).withIndices(changed));
+            }
+        }
+        else {
+            keyBars.moveTo(step);
+            keyBars.add(step, price, volume);
+            keyBars.openRow(key, step);
+            subscribers.onData(key, keyBars.row);
+        }
+    }
+
+    class SourceSubscriber implements KeyedSubscriber<K> {
+
+        @Override
+        public void onData(K key, DidoData data) {
+            tick(key, data);
+        }
+
+        /**
+         * Only partials with the price are ticks. The volume is read from the source row,
+         * which has already been updated.
+         */
+        @Override
+        public void onPartial(K key, PartialUpdate partial) {
+            for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+                if (index == priceIndex) {
+                    tick(key, source.get(key));
+                    return;
+                }
+            }
+            poll();
+        }
+
+        @Override
+        public void onDelete(K key) {
+            poll();
+            if (bars.remove(key) != null) {
+                subscribers.onDelete(key);
+            }
+        }
+
+        @Override
+        public void onBatchStart() {
+            subscribers.onBatchStart();
+        }
+
+        @Override
+        public void onBatchEnd() {
+            subscribers.onBatchEnd();
+        }
+    }
+
+    @Override
+    public DataSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return bars.containsKey(key);
+    }
+
+    @Override
+    public DidoData get(K key) {
+        Bars keyBars = bars.get(key);
+        return keyBars == null ? null : keyBars.row;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(bars.keySet());
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return DataJoin.entriesOf(bars.keySet(), key -> bars.get(key).row);
+    }
+
+    @Override
+    public void forEachRow(BiConsumer<? super K, ? super DidoData> action) {
+        bars.forEach((key, keyBars) -> action.accept(key, keyBars.row));
+    }
+
+    @Override
+    public KeyedSubscription tableSubscribe(KeyedSubscriber<K> listener) {
+        return subscribers.addSubscriber(listener);
+    }
+
+    @Override
+    public void close() {
+        closeable.close();
+    }
+}
@@ -0,0 +1,228 @@
+package dido.table.util;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.util.PendingUpdate;
+import dido.table.KeyedSubscriber;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * A {@link KeyedSubscriber} that stands in front of a slow subscriber. Events are merged
+ * into a {@link PendingUpdate} for each changed key and passed on from an {@link Executor}
+ * when the slow subscriber has finished with the last lot. The publisher never waits
+ * for the slow subscriber, and however fast events arrive, no more than one pending
+ * change per key is held.
+ * <p>
+ * Successive partial updates for a key are merged into one partial update of all
+ * the fields changed. A partial update after data is merged into the data. Data or a
+ * delete replaces whatever was pending. A delete is passed on even if the key was added
+ * since the last delivery, as the key may already have existed.
+ * </p>
+ * <p>
+ * The slow subscriber is only called from one thread at a time, and keys are passed on
+ * in the order they first changed since the last delivery. Each delivery is a batch.
+ * An exception from the subscriber is passed to the error handler and the rest of the
+ * batch is still passed on, so the subscriber only misses the change that failed.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ */
+public class ConflatingKeyedSubscriber<K extends Comparable<K>> implements KeyedSubscriber<K> {
+
+    private final DataSchema schema;
+
+    private final KeyedSubscriber<? super K> subscriber;
+
+    private final Executor executor;
+
+    private final Consumer<? super RuntimeException> errorHandler;
+
+    private final Object lock = new Object();
+
+    private Map<K, PendingUpdate> pending = new LinkedHashMap<>();
+
+    private boolean scheduled;
+
+    private ConflatingKeyedSubscriber(Settings settings, KeyedSubscriber<? super K> subscriber) {
+        this.schema = Objects.requireNonNull(settings.schema, "No Schema");
+        this.subscriber = Objects.requireNonNull(subscriber, "No Subscriber");
+        this.executor = settings.executor == null ?
+                runnable -> Thread.ofVirtual().start(runnable) : settings.executor;
+        this.errorHandler = settings.errorHandler == null ?
+                e -> Thread.currentThread().getUncaughtExceptionHandler()
+                        .uncaughtException(Thread.currentThread(), e) :
+                settings.errorHandler;
+    }
+
+    public static class Settings {
+
+        private final DataSchema schema;
+
+        private Executor executor;
+
+        private Consumer<? super RuntimeException> errorHandler;
+
+        Settings(DataSchema schema) {
+            this.schema = schema;
+        }
+
+        /**
+         * The executor that passes events on. Defaults to starting a virtual thread
+         * each time there are events to pass on.
+         */
+        public Settings executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Handles exceptions from the subscriber. Defaults to the delivering thread's
+         * uncaught exception handler.
+         */
+        public Settings errorHandler(Consumer<? super RuntimeException> errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        public <K extends Comparable<K>> ConflatingKeyedSubscriber<K> create(
+                KeyedSubscriber<? super K> subscriber) {
+            return new ConflatingKeyedSubscriber<K>(this, subscriber);
+        }
+    }
+
+    /**
+     * Start creating a conflating subscriber.
+     *
+     * @param schema The schema of the data being subscribed to.
+     */
+    public static Settings withSchema(DataSchema schema) {
+        return new Settings(schema);
+    }
+
+    private PendingUpdate pendingFor(K key) {
+        return pending.computeIfAbsent(key, k -> new PendingUpdate(schema));
+    }
+
+    /**
+     * Called holding the lock.
+     *
+     * @return true if delivery needs to be scheduled.
+     */
+    private boolean needsScheduling() {
+        if (scheduled) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+
+    @Override
+    public void onData(K key, DidoData data) {
+        boolean schedule;
+        synchronized (lock) {
+            pendingFor(key).data(data);
+            schedule = needsScheduling();
+        }
+        if (schedule) {
+            executor.execute(this::deliver);
+        }
+    }
+
+    @Override
+    public void onPartial(K key, PartialUpdate partial) {
+        boolean schedule;
+        synchronized (lock) {
+            pendingFor(key).partial(partial);
+            schedule = needsScheduling();
+        }
+        if (schedule) {
+            executor.execute(this::deliver);
+        }
+    }
+
+    @Override
+    public void onDelete(K key) {
+        boolean schedule;
+        synchronized (lock) {
+            pendingFor(key).delete(null);
+            schedule = needsScheduling();
+        }
+        if (schedule) {
+            executor.execute(this::deliver);
+        }
+    }
+
+    /**
+     * The number of keys with changes waiting to be passed on.
+     */
+    public int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private void deliver(K key, PendingUpdate update) {
+        try {
+            switch (update.getKind()) {
+                case DATA -> subscriber.onData(key, update.toData());
+                case PARTIAL -> subscriber.onPartial(key, update.toPartial());
+                case DELETE -> subscriber.onDelete(key);
+            }
+        }
+        catch (RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private void batchStart() {
+        try {
+            subscriber.onBatchStart();
+        }
+        catch (RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private void batchEnd() {
+        try {
+            subscriber.onBatchEnd();
+        }
+        catch (RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private void deliver() {
+        while (true) {
+            Map<K, PendingUpdate> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            try {
+                batchStart();
+                for (Map.Entry<K, PendingUpdate> entry : batch.entrySet()) {
+                    deliver(entry.getKey(), entry.getValue());
+                }
+                batchEnd();
+            }
+            catch (RuntimeException | Error e) {
+                // Only if the error handler fails.
+                synchronized (lock) {
+                    scheduled = false;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -3,11 +3,11 @@ package dido.table.util;
 import dido.data.DataSchema;
 import dido.data.DidoData;
 import dido.data.partial.PartialUpdate;
+import dido.flow.util.AsyncDispatcher;
 import dido.table.KeyedSubscriber;
 import dido.table.KeyedSubscription;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class KeyedDataSubscribers<K extends Comparable<K>> implements KeyedSubscriber<K> {
 
@@ -15,6 +15,8 @@ public class KeyedDataSubscribers<K extends Comparable<K>> implements KeyedSubsc
 
     private KeyedSubscriber<? super K> existing;
 
+    private int batchDepth;
+
     public KeyedDataSubscribers(DataSchema schema) {
         this.schema = schema;
     }
@@ -22,16 +24,20 @@ public class KeyedDataSubscribers<K extends Comparable<K>> implements KeyedSubsc
     @SuppressWarnings({"rawtypes", "unchecked"})
     public KeyedSubscription addSubscriber(KeyedSubscriber<? super K> additional) {
 
+        if (batchDepth > 0) {
+            additional.onBatchStart();
+        }
+
         if (existing == null) {
             existing = additional;
         }
         else if (existing instanceof SubscriberList keyedDataSubscribers) {
-            keyedDataSubscribers.consumers.add(additional);
+            keyedDataSubscribers.add(additional);
         }
         else {
             SubscriberList<K> subscriberList = new SubscriberList<>();
-            subscriberList.consumers.add(existing);
-            subscriberList.consumers.add(additional);
+            subscriberList.add(existing);
+            subscriberList.add(additional);
             existing = subscriberList;
         }
 
@@ -49,6 +55,62 @@ public class KeyedDataSubscribers<K extends Comparable<K>> implements KeyedSubsc
         };
     }
 
+    /**
+     * Add a subscriber that is passed events from its own buffer and executor, so that
+     * the time it takes isn't added to the publisher's. A subscriber disconnected
+     * because of {@link dido.flow.util.OverflowPolicy#DISCONNECT} is removed.
+     *
+     * @param additional The subscriber.
+     * @param settings The buffer settings, including what to do when it's full.
+     * @return A subscription that also discards any buffered events when closed.
+     */
+    public KeyedSubscription addSubscriber(KeyedSubscriber<? super K> additional,
+                                           AsyncDispatcher.Settings settings) {
+
+        AsyncDispatcher<K> dispatcher = settings.create(schema, new AsyncDispatcher.Target<>() {
+            @Override
+            public void onData(K key, DidoData data) {
+                additional.onData(key, data);
+            }
+
+            @Override
+            public void onPartial(K key, PartialUpdate partial) {
+                additional.onPartial(key, partial);
+            }
+
+            @Override
+            public void onDelete(K key, DidoData keyData) {
+                additional.onDelete(key);
+            }
+
+            @Override
+            public void onBatchStart() {
+                additional.onBatchStart();
+            }
+
+            @Override
+            public void onBatchEnd() {
+                additional.onBatchEnd();
+            }
+        });
+
+        KeyedSubscription subscription = addSubscriber(new AsyncSubscriber(dispatcher));
+
+        return new KeyedSubscription() {
+
+            @Override
+            public DataSchema getSchema() {
+                return schema;
+            }
+
+            @Override
+            public void close() {
+                subscription.close();
+                dispatcher.close();
+            }
+        };
+    }
+
     @Override
     public void onData(K key, DidoData data) {
         if (existing != null) {
@@ -70,34 +132,151 @@ public class KeyedDataSubscribers<K extends Comparable<K>> implements KeyedSubsc
         }
     }
 
+    /**
+     * Start a batch. Nested batches, such as a join receiving a batch from both sides,
+     * are passed on as one.
+     */
+    @Override
+    public void onBatchStart() {
+        if (batchDepth++ == 0 && existing != null) {
+            existing.onBatchStart();
+        }
+    }
+
+    /**
+     * End a batch. An end without a start, as a subscriber added part way through a
+     * batch upstream will see, is ignored.
+     */
+    @Override
+    public void onBatchEnd() {
+        if (batchDepth == 0) {
+            return;
+        }
+        if (--batchDepth == 0 && existing != null) {
+            existing.onBatchEnd();
+        }
+    }
+
+    /**
+     * Are we in the middle of a batch.
+     */
+    public boolean isInBatch() {
+        return batchDepth > 0;
+    }
+
+    int subscriberCount() {
+        if (existing instanceof SubscriberList<? super K> list) {
+            return list.consumers.length;
+        }
+        return existing == null ? 0 : 1;
+    }
+
     void remove(KeyedSubscriber<? super K> subscriber) {
         if (existing == subscriber) {
             existing = null;
         } else if (existing instanceof SubscriberList<? super K> list) {
-            list.consumers.remove(subscriber);
-            if (list.consumers.size() == 1) {
-                existing = list.consumers.getFirst();
+            list.remove(subscriber);
+            if (list.consumers.length == 1) {
+                existing = list.consumers[0];
             }
         }
     }
 
+    /**
+     * Passes events to a dispatcher, and removes itself once the dispatcher has
+     * disconnected.
+     */
+    class AsyncSubscriber implements KeyedSubscriber<K> {
+
+        private final AsyncDispatcher<K> dispatcher;
+
+        AsyncSubscriber(AsyncDispatcher<K> dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        private void removeIfDisconnected() {
+            if (dispatcher.isDisconnected()) {
+                remove(this);
+            }
+        }
+
+        @Override
+        public void onData(K key, DidoData data) {
+            dispatcher.onData(key, data);
+            removeIfDisconnected();
+        }
+
+        @Override
+        public void onPartial(K key, PartialUpdate data) {
+            dispatcher.onPartial(key, data);
+            removeIfDisconnected();
+        }
+
+        @Override
+        public void onDelete(K key) {
+            dispatcher.onDelete(key, null);
+            removeIfDisconnected();
+        }
+    }
+
+    /**
+     * The array of subscribers is replaced rather than changed, so a subscriber can be
+     * removed while an event is being passed on.
+     */
     static class SubscriberList<K extends Comparable<K>> implements KeyedSubscriber<K> {
 
-        private final List<KeyedSubscriber<? super K>> consumers = new ArrayList<>();
+        @SuppressWarnings("unchecked")
+        private KeyedSubscriber<? super K>[] consumers = new KeyedSubscriber[0];
+
+        void add(KeyedSubscriber<? super K> consumer) {
+            consumers = Arrays.copyOf(consumers, consumers.length + 1);
+            consumers[consumers.length - 1] = consumer;
+        }
+
+        void remove(KeyedSubscriber<?> consumer) {
+            for (int i = 0; i < consumers.length; ++i) {
+                if (consumers[i] == consumer) {
+                    KeyedSubscriber<? super K>[] fewer = Arrays.copyOf(consumers, consumers.length - 1);
+                    System.arraycopy(consumers, i + 1, fewer, i, consumers.length - i - 1);
+                    consumers = fewer;
+                    return;
+                }
+            }
+        }
 
         @Override
         public void onData(K key, DidoData data) {
-            consumers.forEach(c -> c.onData(key, data));
+            for (KeyedSubscriber<? super K> consumer : consumers) {
+                consumer.onData(key, data);
+            }
         }
 
         @Override
         public void onPartial(K key, PartialUpdate data) {
-            consumers.forEach(c -> c.onPartial(key, data));
+            for (KeyedSubscriber<? super K> consumer : consumers) {
+                consumer.onPartial(key, data);
+            }
         }
 
         @Override
         public void onDelete(K key) {
-            consumers.forEach(c -> c.onDelete(key));
+            for (KeyedSubscriber<? super K> consumer : consumers) {
+                consumer.onDelete(key);
+            }
+        }
+
+        @Override
+        public void onBatchStart() {
+            for (KeyedSubscriber<? super K> consumer : consumers) {
+                consumer.onBatchStart();
+            }
+        }
+
+        @Override
+        public void onBatchEnd() {
+            for (KeyedSubscriber<? super K> consumer : consumers) {
+                consumer.onBatchEnd();
+            }
         }
     }
 }
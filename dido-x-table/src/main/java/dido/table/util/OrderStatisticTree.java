@@ -0,0 +1,215 @@
+package dido.table.util;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * A sorted set that can also find the position of an element and the element at a
+ * position, all in O(log n). This is an AVL tree where each node also holds the size
+ * of its subtree. Elements the comparator finds equal are the same element.
+ *
+ * @param <E> The type of the element.
+ */
+public final class OrderStatisticTree<E> {
+
+    private final Comparator<? super E> comparator;
+
+    private Node<E> root;
+
+    private static class Node<E> {
+
+        final E element;
+
+        Node<E> left;
+
+        Node<E> right;
+
+        int height = 1;
+
+        int size = 1;
+
+        Node(E element) {
+            this.element = element;
+        }
+    }
+
+    public OrderStatisticTree(Comparator<? super E> comparator) {
+        this.comparator = Objects.requireNonNull(comparator);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Add an element.
+     *
+     * @return true if it wasn't already there.
+     */
+    public boolean add(E element) {
+        int before = size();
+        root = insert(root, Objects.requireNonNull(element));
+        return size() != before;
+    }
+
+    /**
+     * Remove an element.
+     *
+     * @return true if it was there.
+     */
+    public boolean remove(E element) {
+        int before = size();
+        root = delete(root, element);
+        return size() != before;
+    }
+
+    /**
+     * The position of an element, starting at 0.
+     *
+     * @return The position, or -1 if the element isn't there.
+     */
+    public int indexOf(E element) {
+        int index = 0;
+        Node<E> node = root;
+        while (node != null) {
+            int c = comparator.compare(element, node.element);
+            if (c < 0) {
+                node = node.left;
+            }
+            else if (c > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+            else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The element at a position.
+     *
+     * @throws IndexOutOfBoundsException If there is no such position.
+     */
+    public E get(int index) {
+        Objects.checkIndex(index, size());
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            }
+            else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+            else {
+                return node.element;
+            }
+        }
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void fix(Node<?> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static <E> Node<E> rotateRight(Node<E> node) {
+        Node<E> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        fix(node);
+        fix(left);
+        return left;
+    }
+
+    private static <E> Node<E> rotateLeft(Node<E> node) {
+        Node<E> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        fix(node);
+        fix(right);
+        return right;
+    }
+
+    private static <E> Node<E> balance(Node<E> node) {
+        fix(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<E> insert(Node<E> node, E element) {
+        if (node == null) {
+            return new Node<>(element);
+        }
+        int c = comparator.compare(element, node.element);
+        if (c < 0) {
+            node.left = insert(node.left, element);
+        }
+        else if (c > 0) {
+            node.right = insert(node.right, element);
+        }
+        else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    private Node<E> delete(Node<E> node, E element) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(element, node.element);
+        if (c < 0) {
+            node.left = delete(node.left, element);
+        }
+        else if (c > 0) {
+            node.right = delete(node.right, element);
+        }
+        else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node<E> min = node.right;
+            while (min.left != null) {
+                min = min.left;
+            }
+            min.right = deleteMin(node.right);
+            min.left = node.left;
+            node = min;
+        }
+        return balance(node);
+    }
+
+    private static <E> Node<E> deleteMin(Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+}
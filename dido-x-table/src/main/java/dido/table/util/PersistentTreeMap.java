@@ -0,0 +1,248 @@
+package dido.table.util;
+
+import java.util.*;
+
+/**
+ * An immutable sorted map where adding or removing a key gives a new map that shares
+ * all but O(log n) nodes with the old one. This is an AVL tree with path copying.
+ * Any version of the map may be read from any thread while newer versions are being
+ * made, which makes it a cheap way to hand out snapshots.
+ * <p>
+ * Iteration is in key order.
+ * </p>
+ *
+ * @param <K> The type of the key.
+ * @param <V> The type of the value.
+ */
+public final class PersistentTreeMap<K extends Comparable<K>, V> extends AbstractMap<K, V> {
+
+    private static final PersistentTreeMap<?, ?> EMPTY = new PersistentTreeMap<>(null, 0);
+
+    private final Node<K, V> root;
+
+    private final int size;
+
+    private PersistentTreeMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<K>, V> PersistentTreeMap<K, V> empty() {
+        return (PersistentTreeMap<K, V>) EMPTY;
+    }
+
+    private record Node<K, V>(K key, V value, Node<K, V> left, Node<K, V> right, int height)
+            implements Map.Entry<K, V> {
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("Immutable");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e
+                    && key.equals(e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * A map with the key mapped to the value. This map is unchanged.
+     */
+    public PersistentTreeMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key, "Key must not be null");
+        boolean exists = findNode(key) != null;
+        return new PersistentTreeMap<>(insert(root, key, value), exists ? size : size + 1);
+    }
+
+    /**
+     * A map without the key. This map is unchanged.
+     */
+    public PersistentTreeMap<K, V> minus(K key) {
+        if (findNode(key) == null) {
+            return this;
+        }
+        return new PersistentTreeMap<>(delete(root, key), size - 1);
+    }
+
+    private Node<K, V> findNode(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = key.compareTo(node.key);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = key == null ? null : findNode((K) key);
+        return node == null ? null : node.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && findNode((K) key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new InOrder<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static <K, V> int height(Node<K, V> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <K, V> Node<K, V> node(K key, V value, Node<K, V> left, Node<K, V> right) {
+        return new Node<>(key, value, left, right, Math.max(height(left), height(right)) + 1);
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null, 1);
+        }
+        int c = key.compareTo(node.key);
+        if (c < 0) {
+            return balance(node.key, node.value, insert(node.left, key, value), node.right);
+        }
+        else if (c > 0) {
+            return balance(node.key, node.value, node.left, insert(node.right, key, value));
+        }
+        else {
+            return new Node<>(key, value, node.left, node.right, node.height);
+        }
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> delete(Node<K, V> node, K key) {
+        int c = key.compareTo(node.key);
+        if (c < 0) {
+            return balance(node.key, node.value, delete(node.left, key), node.right);
+        }
+        else if (c > 0) {
+            return balance(node.key, node.value, node.left, delete(node.right, key));
+        }
+        else if (node.left == null) {
+            return node.right;
+        }
+        else if (node.right == null) {
+            return node.left;
+        }
+        else {
+            Node<K, V> min = node.right;
+            while (min.left != null) {
+                min = min.left;
+            }
+            return balance(min.key, min.value, node.left, delete(node.right, min.key));
+        }
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int hl = height(left);
+        int hr = height(right);
+        if (hl > hr + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return node(left.key, left.value, left.left, node(key, value, left.right, right));
+            }
+            else {
+                Node<K, V> lr = left.right;
+                return node(lr.key, lr.value,
+                        node(left.key, left.value, left.left, lr.left),
+                        node(key, value, lr.right, right));
+            }
+        }
+        else if (hr > hl + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return node(right.key, right.value, node(key, value, left, right.left), right.right);
+            }
+            else {
+                Node<K, V> rl = right.left;
+                return node(rl.key, rl.value,
+                        node(key, value, left, rl.left),
+                        node(right.key, right.value, rl.right, right.right));
+            }
+        }
+        else {
+            return node(key, value, left, right);
+        }
+    }
+
+    /**
+     * In order iteration with an explicit stack. An AVL tree's height is bounded by about
+     * 1.44 log2(n) so the stack never needs to grow.
+     */
+    private static class InOrder<K, V> implements Iterator<Map.Entry<K, V>> {
+
+        @SuppressWarnings("unchecked")
+        private final Node<K, V>[] stack = new Node[64];
+
+        private int depth;
+
+        InOrder(Node<K, V> root) {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node<K, V> node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = stack[--depth];
+            pushLeft(node.right);
+            return node;
+        }
+    }
+}
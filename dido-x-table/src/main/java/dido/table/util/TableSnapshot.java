@@ -0,0 +1,91 @@
+package dido.table.util;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+
+import java.util.*;
+
+/**
+ * An unchanging view of a {@link DataTable} at a moment in time. Subscribing to a
+ * snapshot gives no events because it never changes.
+ *
+ * @param <K> The type of the key.
+ */
+public class TableSnapshot<K extends Comparable<K>> implements DataTable<K> {
+
+    private final DataSchema schema;
+
+    private final Map<K, DidoData> rows;
+
+    private TableSnapshot(DataSchema schema, Map<K, DidoData> rows) {
+        this.schema = schema;
+        this.rows = rows;
+    }
+
+    /**
+     * Create a snapshot over rows that will never change.
+     */
+    public static <K extends Comparable<K>> TableSnapshot<K> of(DataSchema schema, Map<K, DidoData> rows) {
+        return new TableSnapshot<>(schema, Collections.unmodifiableMap(rows));
+    }
+
+    /**
+     * Create a snapshot by copying every row of a table. The copy is only consistent if
+     * the table isn't updated while it is being made.
+     */
+    public static <K extends Comparable<K>> TableSnapshot<K> copyOf(DataTable<K> table) {
+        Map<K, DidoData> rows = new TreeMap<>();
+        for (Map.Entry<K, DidoData> entry : table.entrySet()) {
+            rows.put(entry.getKey(), MutableArrayData.copy(entry.getValue()));
+        }
+        return of(table.getSchema(), rows);
+    }
+
+    @Override
+    public DataSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return rows.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<K, DidoData>> entrySet() {
+        return rows.entrySet();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return rows.containsKey(key);
+    }
+
+    @Override
+    public DidoData get(K key) {
+        return rows.get(key);
+    }
+
+    @Override
+    public KeyedSubscription tableSubscribe(KeyedSubscriber<K> listener) {
+        return new KeyedSubscription() {
+            @Override
+            public DataSchema getSchema() {
+                return schema;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public DataTable<K> snapshot() {
+        return this;
+    }
+}
@@ -0,0 +1,153 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AggregatingTableTest {
+
+    DataSchema positionSchema = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Desk", String.class)
+            .addNamed("Qty", double.class)
+            .addNamed("Trader", String.class)
+            .build();
+
+    DataTableBasic<String> positions = DataTableBasic.<String>withSchema(positionSchema).create();
+
+    AggregatingTable<String, String> createTable() {
+        return AggregatingTable.<String, String>from(positions)
+                .groupBy("Desk")
+                .aggregate(AggregatingTable.Aggregate.SUM, "Qty", "Total")
+                .aggregate(AggregatingTable.Aggregate.COUNT, null, "Count")
+                .aggregate(AggregatingTable.Aggregate.MIN, "Qty", "Min")
+                .aggregate(AggregatingTable.Aggregate.MAX, "Qty", "Max")
+                .aggregate(AggregatingTable.Aggregate.AVG, "Qty", "Avg")
+                .aggregate(AggregatingTable.Aggregate.LAST, "Trader", "LastTrader")
+                .create();
+    }
+
+    @Test
+    void aggregatesExistingAndNewRows() {
+
+        positions.onData(DidoData.withSchema(positionSchema).of("P1", "Rates", 10.0, "Alice"));
+        positions.onData(DidoData.withSchema(positionSchema).of("P2", "Rates", 30.0, "Bob"));
+        positions.onData(DidoData.withSchema(positionSchema).of("P3", "Credit", 5.0, "Carol"));
+
+        AggregatingTable<String, String> test = createTable();
+
+        DataSchema expectedSchema = DataSchema.builder()
+                .addNamed("Desk", String.class)
+                .addNamed("Total", double.class)
+                .addNamed("Count", long.class)
+                .addNamed("Min", double.class)
+                .addNamed("Max", double.class)
+                .addNamed("Avg", double.class)
+                .addNamed("LastTrader", String.class)
+                .build();
+
+        assertThat(test.getSchema(), is(expectedSchema));
+        assertThat(test.keySet(), contains("Credit", "Rates"));
+        assertThat(test.get("Rates"), is(DidoData.of("Rates", 40.0, 2L, 10.0, 30.0, 20.0, "Bob")));
+
+        DataJoinTest.Recorder recorder = new DataJoinTest.Recorder();
+        test.tableSubscribe(recorder);
+
+        positions.onPartial(PartialUpdate.from(DidoData.withSchema(positionSchema)
+                        .of("P2", "Rates", 20.0, "Bob"))
+                .withIndices(3));
+        positions.onData(DidoData.withSchema(positionSchema).of("P1", "Credit", 10.0, "Alice"));
+        positions.onPartial(PartialUpdate.from(DidoData.withSchema(positionSchema)
+                        .of("P3", "Credit", 5.0, "Dave"))
+                .withIndices(4));
+        positions.onData(DidoData.withSchema(positionSchema).of("P4", "Equity", 1.0, "Eve"));
+        positions.onDelete(DidoData.of("P2"));
+
+        assertThat(recorder.results, contains(
+                "onPartial: Rates 2=30.0 5=20.0 6=15.0",
+                "onPartial: Rates 2=20.0 3=1 4=20.0 6=20.0",
+                "onPartial: Credit 2=15.0 3=2 5=10.0 6=7.5 7=Alice",
+                "onPartial: Credit 7=Dave",
+                "onData: Equity",
+                "onDelete: Rates"));
+
+        assertThat(test.keySet(), contains("Credit", "Equity"));
+        assertThat(test.get("Credit"), is(DidoData.of("Credit", 15.0, 2L, 5.0, 10.0, 7.5, "Dave")));
+
+        test.close();
+    }
+
+    @Test
+    void sumsDontDriftWhenLargeValuesComeAndGo() {
+
+        positions.onData(DidoData.withSchema(positionSchema).of("P1", "Rates", 0.1, "Alice"));
+        positions.onData(DidoData.withSchema(positionSchema).of("P2", "Rates", 0.2, "Bob"));
+        positions.onData(DidoData.withSchema(positionSchema).of("P3", "Rates", 0.3, "Carol"));
+
+        AggregatingTable<String, String> test = createTable();
+
+        double expected = test.get("Rates").getDoubleAt(2);
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; ++i) {
+            positions.onData(DidoData.withSchema(positionSchema)
+                    .of("P2", "Rates", 1e10 + random.nextDouble(), "Bob"));
+        }
+        positions.onData(DidoData.withSchema(positionSchema).of("P2", "Rates", 0.2, "Bob"));
+
+        assertThat(test.get("Rates").getDoubleAt(2), is(expected));
+        assertThat(test.get("Rates").getDoubleAt(6), is(expected / 3));
+
+        test.close();
+    }
+
+    @Test
+    void groupByKeyExtractor() {
+
+        positions.onData(DidoData.withSchema(positionSchema).of("P1", "Rates", 10.0, "Alice"));
+        positions.onData(DidoData.withSchema(positionSchema).of("P2", "Repo", 30.0, "Bob"));
+        positions.onData(DidoData.withSchema(positionSchema).of("P3", "Credit", 5.0, "Carol"));
+
+        AggregatingTable<String, String> test = AggregatingTable.<String, String>from(positions)
+                .groupBy(data -> data.getStringAt(2).substring(0, 1), "Initial", String.class)
+                .aggregate(AggregatingTable.Aggregate.SUM, "Qty", "Total")
+                .create();
+
+        assertThat(test.getSchema(), is(DataSchema.builder()
+                .addNamed("Initial", String.class)
+                .addNamed("Total", double.class)
+                .build()));
+        assertThat(test.keySet(), contains("C", "R"));
+        assertThat(test.get("R"), is(DidoData.of("R", 40.0)));
+
+        DataJoinTest.Recorder recorder = new DataJoinTest.Recorder();
+        test.tableSubscribe(recorder);
+
+        // The extractor doesn't say what it reads, so any partial may move the row.
+        positions.onPartial(PartialUpdate.from(DidoData.withSchema(positionSchema)
+                        .of("P2", "Credit", 30.0, "Bob"))
+                .withIndices(2));
+
+        assertThat(recorder.results, contains(
+                "onPartial: R 2=10.0",
+                "onPartial: C 2=35.0"));
+
+        test.close();
+    }
+
+    @Test
+    void unknownField() {
+
+        assertThrows(IllegalArgumentException.class, () -> AggregatingTable.<String, String>from(positions)
+                .groupBy("Desk")
+                .aggregate(AggregatingTable.Aggregate.SUM, "Price", "Total")
+                .create());
+    }
+}
@@ -0,0 +1,84 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.flow.DidoSubscriber;
+import dido.operators.transform.ValueGetter;
+import dido.operators.transform.ValueSetter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class ArrayRowImplTest {
+
+    DataSchema schema = DataSchema.builder()
+            .addNamed("Id", int.class)
+            .addNamed("Bid", double.class)
+            .addNamed("Ask", double.class)
+            .build();
+
+    static class Recorder implements DidoSubscriber {
+
+        final List<String> results = new ArrayList<>();
+
+        final List<PartialUpdate> partials = new ArrayList<>();
+
+        @Override
+        public void onData(DidoData data) {
+            results.add("onData: " + data.getAt(1));
+        }
+
+        @Override
+        public void onPartial(PartialUpdate partial) {
+            StringBuilder changes = new StringBuilder();
+            for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+                changes.append(' ').append(index).append('=').append(partial.getData().getAt(index));
+            }
+            results.add("onPartial:" + changes);
+            partials.add(partial);
+        }
+
+        @Override
+        public void onDelete(DidoData keyData) {
+            results.add("onDelete: " + keyData);
+        }
+    }
+
+    @Test
+    void onlyChangedValuesArePassedOnWithTheSamePartial() {
+
+        LiveOperation ops = LiveOperationBuilder.forSchema(schema)
+                .addOp(context -> {
+                    ValueGetter bid = context.getterNamed("Bid");
+                    ValueGetter ask = context.getterNamed("Ask");
+                    ValueSetter mid = context.setterNamed("Mid", double.class);
+                    return () -> mid.setDouble((bid.getDouble() + ask.getDouble()) / 2);
+                })
+                .build();
+
+        Recorder recorder = new Recorder();
+        ArrayRowImpl test = new ArrayRowImpl(ops.getFullSchema(), recorder);
+
+        test.onData(DidoData.withSchema(schema).of(1, 1.0, 2.0), ops);
+        test.onPartial(PartialUpdate.from(DidoData.withSchema(schema).of(1, 1.5, 2.0))
+                .withIndices(2, 3), ops);
+        test.onPartial(PartialUpdate.from(DidoData.withSchema(schema).of(1, 1.5, 2.0))
+                .withIndices(2, 3), ops);
+        test.onPartial(PartialUpdate.from(DidoData.withSchema(schema).of(1, 1.5, 2.5))
+                .withIndices(3), ops);
+
+        assertThat(recorder.results, contains(
+                "onData: 1",
+                "onPartial: 2=1.5 4=1.75",
+                "onPartial: 3=2.5 4=2.0"));
+
+        assertThat(recorder.partials.get(0), sameInstance(recorder.partials.get(1)));
+        assertThat(test.asData(), sameInstance(test.asData()));
+        assertThat(test.asData(), is(DidoData.of(1, 1.5, 2.5, 2.0)));
+    }
+}
@@ -0,0 +1,137 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnarRowStoreTest {
+
+    DataSchema schema = DataSchema.builder()
+            .addNamed("Symbol", String.class)
+            .addNamed("Bid", double.class)
+            .addNamed("Volume", long.class)
+            .addNamed("BidSize", int.class)
+            .addNamed("Date", LocalDate.class)
+            .build();
+
+    @Test
+    void storeUpdateAndRemove() {
+
+        ColumnarRowStore<String> test = new ColumnarRowStore<>(schema, true);
+
+        test.put("IBM", DidoData.withSchema(schema)
+                .of("IBM", 99.9, 1000L, 80, LocalDate.of(2025, 1, 2)));
+        test.put("MSFT", DidoData.withSchema(schema)
+                .of("MSFT", 79.9, 2000L, 110, null));
+
+        DidoData ibm = test.get("IBM");
+
+        assertThat(ibm, is(DidoData.withSchema(schema)
+                .of("IBM", 99.9, 1000L, 80, LocalDate.of(2025, 1, 2))));
+        assertThat(ibm.getDoubleAt(2), is(99.9));
+        assertThat(ibm.getLongAt(3), is(1000L));
+        assertThat(ibm.getIntAt(4), is(80));
+        assertThat(ibm.getStringAt(1), is("IBM"));
+
+        assertThat(test.get("MSFT").hasAt(5), is(false));
+        assertThat(test.get("MSFT").getAt(5), nullValue());
+
+        SubSchema subSchema = SubSchema.from(schema).withIndices(1, 2, 4);
+        assertThat(test.update("IBM", PartialUpdate.from(DidoData.withSchema(subSchema)
+                .of("IBM", 100.1, null)).withIndices(1, 2, 4)), is(true));
+
+        // The view is live.
+        assertThat(ibm.getDoubleAt(2), is(100.1));
+        assertThat(ibm.hasAt(4), is(false));
+
+        assertThat(test.update("AAPL", PartialUpdate.of(DidoData.withSchema(schema)
+                .of("AAPL", 1.0, 1L, 1, null))), is(false));
+
+        assertThat(test.keySet(), contains("IBM", "MSFT"));
+
+        assertThat(test.remove("IBM"), is(true));
+        assertThat(test.remove("IBM"), is(false));
+        assertThat(test.containsKey("IBM"), is(false));
+        assertThat(test.get("IBM"), nullValue());
+
+        test.put("AAPL", DidoData.withSchema(schema)
+                .of("AAPL", 104.9, 3000L, 30, null));
+
+        assertThat(test.keySet(), contains("AAPL", "MSFT"));
+        assertThat(test.get("AAPL"), is(DidoData.withSchema(schema)
+                .of("AAPL", 104.9, 3000L, 30, null)));
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+
+        ColumnarRowStore<String> test = new ColumnarRowStore<>(schema, false);
+
+        for (int i = 0; i < 1000; ++i) {
+            test.put("K" + i, DidoData.withSchema(schema)
+                    .of("K" + i, i * 1.5, (long) i, i, null));
+        }
+
+        assertThat(test.keySet().size(), is(1000));
+        assertThat(test.get("K999").getDoubleAt(2), is(999 * 1.5));
+        assertThat(test.get("K500").getIntAt(4), is(500));
+    }
+
+    @Test
+    void dictionaryEncodedFields() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Symbol", String.class)
+                .addNamed("Exchange", String.class)
+                .build();
+
+        BitSet dictionary = new BitSet();
+        dictionary.set(2);
+        ColumnarRowStore<String> test = new ColumnarRowStore<>(schema, true, dictionary);
+
+        test.put("IBM", DidoData.withSchema(schema).of("IBM", "NYSE"));
+        test.put("MSFT", DidoData.withSchema(schema).of("MSFT", "NASDAQ"));
+        test.put("GE", DidoData.withSchema(schema).of("GE", "NYSE"));
+        test.put("AAPL", DidoData.withSchema(schema).of("AAPL", null));
+
+        assertThat(test.get("GE"), is(DidoData.withSchema(schema).of("GE", "NYSE")));
+        assertThat(test.get("MSFT").getStringAt(2), is("NASDAQ"));
+        assertThat(test.get("AAPL").getStringAt(2), nullValue());
+
+        DataSchema withInt = DataSchema.builder()
+                .addNamed("Symbol", String.class)
+                .addNamed("Qty", int.class)
+                .build();
+        BitSet qty = new BitSet();
+        qty.set(2);
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnarRowStore<String>(withInt, false, qty));
+    }
+
+    @Test
+    void absentPrimitiveInReusedSlotIsNotStale() {
+
+        ColumnarRowStore<String> test = new ColumnarRowStore<>(schema, false);
+
+        test.put("IBM", DidoData.withSchema(schema)
+                .of("IBM", 99.9, 1000L, 80, null));
+        test.remove("IBM");
+        test.put("MSFT", DidoData.withSchema(schema)
+                .of("MSFT", null, null, null, null));
+
+        DidoData msft = test.get("MSFT");
+        assertThat(msft.hasAt(2), is(false));
+        assertThrows(NullPointerException.class, () -> msft.getDoubleAt(2));
+        assertThrows(NullPointerException.class, () -> msft.getLongAt(3));
+        assertThrows(NullPointerException.class, () -> msft.getIntAt(4));
+    }
+}
@@ -2,12 +2,16 @@ package dido.table.internal;
 
 import dido.data.DataSchema;
 import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
 import dido.data.schema.SchemaBuilder;
 import dido.flow.util.KeyExtractors;
+import dido.table.KeyedSubscriber;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -136,4 +140,303 @@ class DataJoinTest {
         joined.close();
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void batchesFromBothSidesArePassedOnAsOne() {
+
+        List<String> results = new ArrayList<>();
+
+        DataJoin<String> joined = DataJoin.from(fruitTable).primaryKeys()
+                .innerJoin(colourTable);
+
+        joined.tableSubscribe(new KeyedSubscriber<>() {
+            @Override
+            public void onData(String key, DidoData data) {
+                results.add("onData: " + key);
+            }
+
+            @Override
+            public void onPartial(String key, PartialUpdate data) {
+                results.add("onPartial: " + key);
+            }
+
+            @Override
+            public void onDelete(String key) {
+                results.add("onDelete: " + key);
+            }
+
+            @Override
+            public void onBatchStart() {
+                results.add("start");
+            }
+
+            @Override
+            public void onBatchEnd() {
+                results.add("end");
+            }
+        });
+
+        fruitTable.onBatchStart();
+        colourTable.onBatchStart();
+        fruit.forEach(fruitTable::onData);
+        colours.forEach(colourTable::onData);
+        fruitTable.onBatchEnd();
+
+        assertThat(results, contains("start", "onData: F1", "onData: F2"));
+
+        colourTable.onBatchEnd();
+
+        assertThat(results, contains("start", "onData: F1", "onData: F2", "end"));
+    }
+
+    static class Recorder implements KeyedSubscriber<String> {
+
+        final List<String> results = new ArrayList<>();
+
+        @Override
+        public void onData(String key, DidoData data) {
+            results.add("onData: " + key);
+        }
+
+        @Override
+        public void onPartial(String key, PartialUpdate partial) {
+            StringBuilder changes = new StringBuilder();
+            for (int index = partial.firstIndex(); index > 0; index = partial.nextIndex(index)) {
+                changes.append(' ').append(index).append('=').append(partial.getData().getAt(index));
+            }
+            results.add("onPartial: " + key + changes);
+        }
+
+        @Override
+        public void onDelete(String key) {
+            results.add("onDelete: " + key);
+        }
+    }
+
+    @Test
+    void materialisedInnerJoin() {
+
+        fruit.forEach(fruitTable::onData);
+        colours.forEach(colourTable::onData);
+
+        DataJoin<String> joined = DataJoin.from(fruitTable).primaryKeys()
+                .materialised()
+                .innerJoin(colourTable);
+
+        assertThat(joined.keySet(), contains("F1", "F2"));
+        assertThat(joined.get("F1"), is(DidoData.of("F1", "Apple", "G2", 5, "F1", "Green")));
+
+        Recorder recorder = new Recorder();
+        joined.tableSubscribe(recorder);
+
+        colourTable.onPartial(PartialUpdate.from(DidoData.withSchema(colourSchema).of("F1", "Red"))
+                .withIndices(2));
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(fruitSchema).of("F2", "Plantain", "G2", 3))
+                .withIndices(2));
+        colourTable.onData(DidoData.withSchema(colourSchema).of("F3", "Orange"));
+        fruitTable.onDelete(DidoData.of("F2"));
+        colourTable.onDelete(DidoData.of("F1"));
+
+        assertThat(recorder.results, contains(
+                "onPartial: F1 6=Red",
+                "onPartial: F2 2=Plantain",
+                "onData: F3",
+                "onDelete: F2",
+                "onDelete: F1"));
+
+        assertThat(joined.keySet(), contains("F3"));
+        assertThat(joined.containsKey("F1"), is(false));
+        assertThat(joined.get("F3"), is(DidoData.of("F3", "Orange", "G1", 2, "F3", "Orange")));
+
+        joined.close();
+    }
+
+    @Test
+    void materialisedLeftJoin() {
+
+        fruit.forEach(fruitTable::onData);
+        colours.forEach(colourTable::onData);
+
+        DataJoin<String> joined = DataJoin.from(fruitTable).primaryKeys()
+                .materialised()
+                .leftJoin(colourTable);
+
+        assertThat(joined.keySet(), contains("F1", "F2", "F3"));
+        assertThat(joined.get("F3"), is(DidoData.of("F3", "Orange", "G1", 2, null, null)));
+
+        Recorder recorder = new Recorder();
+        joined.tableSubscribe(recorder);
+
+        colourTable.onData(DidoData.withSchema(colourSchema).of("F3", "Orange"));
+        colourTable.onDelete(DidoData.of("F1"));
+        fruitTable.onData(DidoData.withSchema(fruitSchema).of("F1", "Apple", "G1", 6));
+
+        assertThat(recorder.results, contains(
+                "onData: F3",
+                "onPartial: F1 5=null 6=null",
+                "onData: F1"));
+
+        assertThat(joined.get("F3"), is(DidoData.of("F3", "Orange", "G1", 2, "F3", "Orange")));
+        assertThat(joined.get("F1"), is(DidoData.of("F1", "Apple", "G1", 6, null, null)));
+
+        joined.close();
+    }
+
+    @Test
+    void materialisedForeignKeyJoin() {
+
+        fruit.forEach(fruitTable::onData);
+        grocers.forEach(grocerTable::onData);
+
+        DataJoin<String> joined = DataJoin.from(fruitTable).foreignKey(
+                        KeyExtractors.<String>fromNamed("GrocerId"))
+                .materialised()
+                .innerJoin(grocerTable);
+
+        Recorder recorder = new Recorder();
+        joined.tableSubscribe(recorder);
+
+        grocerTable.onPartial(PartialUpdate.from(DidoData.withSchema(grocerSchema).of("G2", "Brown"))
+                .withIndices(2));
+
+        assertThat(recorder.results, contains(
+                "onPartial: F1 6=Brown",
+                "onPartial: F2 6=Brown"));
+
+        assertThat(joined.get("F2"), is(DidoData.of("F2", "Banana", "G2", 3, "G2", "Brown")));
+
+        joined.close();
+    }
+
+    @Test
+    void innerJoinKeysFollowBothSides() {
+
+        fruit.forEach(fruitTable::onData);
+
+        DataJoin<String> joined = DataJoin.from(fruitTable).primaryKeys()
+                .innerJoin(colourTable);
+
+        Set<String> keys = joined.keySet();
+
+        assertThat(keys, empty());
+
+        colours.forEach(colourTable::onData);
+
+        assertThat(keys, contains("F1", "F2"));
+
+        fruitTable.onData(DidoData.withSchema(fruitSchema).of("F4", "Cherry", "G1", 9));
+        colourTable.onDelete(DidoData.of("F1"));
+        fruitTable.onDelete(DidoData.of("F2"));
+
+        assertThat(joined.keySet(), contains("F4"));
+        assertThat(joined.containsKey("F1"), is(false));
+        assertThat(joined.get("F1"), nullValue());
+
+        Map.Entry<String, DidoData> entry = joined.entrySet().iterator().next();
+        assertThat(entry.getKey(), is("F4"));
+        assertThat(entry.getValue(), is(DidoData.of("F4", "Cherry", "G1", 9, "F4", "Red")));
+
+        joined.close();
+    }
+
+    @Test
+    void innerJoinPartialsAreInJoinedIndices() {
+
+        fruit.forEach(fruitTable::onData);
+        colours.forEach(colourTable::onData);
+
+        DataJoin<String> joined = DataJoin.from(fruitTable).primaryKeys()
+                .innerJoin(colourTable);
+
+        Recorder recorder = new Recorder();
+        joined.tableSubscribe(recorder);
+
+        colourTable.onPartial(PartialUpdate.from(DidoData.withSchema(colourSchema).of("F1", "Red"))
+                .withIndices(2));
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(fruitSchema).of("F2", "Plantain", "G2", 3))
+                .withIndices(2));
+        colourTable.onPartial(PartialUpdate.from(DidoData.withSchema(colourSchema).of("F4", "Pink"))
+                .withIndices(2));
+
+        assertThat(recorder.results, contains(
+                "onPartial: F1 6=Red",
+                "onPartial: F2 2=Plantain"));
+
+        assertThat(joined.get("F1"), is(DidoData.of("F1", "Apple", "G2", 5, "F1", "Red")));
+
+        joined.close();
+    }
+
+    @Test
+    void outerJoin() {
+
+        checkOuterJoin(DataJoin.from(fruitTable).primaryKeys());
+    }
+
+    @Test
+    void materialisedOuterJoin() {
+
+        checkOuterJoin(DataJoin.from(fruitTable).primaryKeys().materialised());
+    }
+
+    void checkOuterJoin(DataJoin.PrimaryKeys<String> primaryKeys) {
+
+        fruitTable.onData(fruit.get(0));
+        fruitTable.onData(fruit.get(2));
+        colourTable.onData(colours.get(0));
+        colourTable.onData(colours.get(2));
+
+        DataJoin<String> joined = primaryKeys.outerJoin(colourTable);
+
+        assertThat(joined.keySet(), contains("F1", "F3", "F4"));
+        assertThat(joined.get("F3"), is(DidoData.of("F3", "Orange", "G1", 2, null, null)));
+        assertThat(joined.get("F4"), is(DidoData.of(null, null, null, null, "F4", "Red")));
+
+        Recorder recorder = new Recorder();
+        joined.tableSubscribe(recorder);
+
+        colourTable.onData(DidoData.withSchema(colourSchema).of("F3", "Orange"));
+        fruitTable.onDelete(DidoData.of("F1"));
+        colourTable.onPartial(PartialUpdate.from(DidoData.withSchema(colourSchema).of("F4", "Pink"))
+                .withIndices(2));
+        colourTable.onDelete(DidoData.of("F1"));
+        colourTable.onData(DidoData.withSchema(colourSchema).of("F5", "Purple"));
+
+        assertThat(recorder.results, contains(
+                "onData: F3",
+                "onPartial: F1 1=null 2=null 3=null 4=null",
+                "onPartial: F4 6=Pink",
+                "onDelete: F1",
+                "onData: F5"));
+
+        assertThat(joined.keySet(), contains("F3", "F4", "F5"));
+        assertThat(joined.get("F3"), is(DidoData.of("F3", "Orange", "G1", 2, "F3", "Orange")));
+        assertThat(joined.get("F4"), is(DidoData.of(null, null, null, null, "F4", "Pink")));
+        assertThat(joined.entrySet().size(), is(3));
+
+        joined.close();
+    }
+
+    @Test
+    void innerJoinForeignKeyFollowsForeignKeyChanges() {
+
+        fruit.forEach(fruitTable::onData);
+        grocerTable.onData(grocers.get(1));
+
+        DataJoin<String> joined = DataJoin.from(fruitTable).foreignKey(
+                        KeyExtractors.<String>fromNamed("GrocerId"))
+                .innerJoin(grocerTable);
+
+        assertThat(joined.keySet(), contains("F1", "F2"));
+
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(fruitSchema).of("F1", "Apple", "G1", 5))
+                .withIndices(3));
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(fruitSchema).of("F3", "Orange", "G2", 2))
+                .withIndices(3));
+
+        assertThat(joined.keySet(), contains("F2", "F3"));
+        assertThat(joined.get("F3"), is(DidoData.of("F3", "Orange", "G2", 2, "G2", "Smith")));
+
+        joined.close();
+    }
+}
@@ -5,17 +5,35 @@ import dido.data.DidoData;
 import dido.data.partial.PartialUpdate;
 import dido.data.schema.SubSchema;
 import dido.flow.QuietlyCloseable;
+import dido.table.DataTable;
 import dido.table.KeyedSubscriber;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 
 class DataTableBasicTest {
 
+    DataSchema fruitSchema = DataSchema.builder()
+            .addNamed("Id", int.class)
+            .addNamed("Fruit", String.class)
+            .addNamed("Qty", int.class)
+            .build();
+
+    Stream<DidoData> fruit() {
+        return DidoData.withSchema(fruitSchema).many()
+                .of(1, "Apple", 7)
+                .of(5, "Orange", 12)
+                .of(3, "Banana", 5).toStream();
+    }
+
     static class Recorder implements KeyedSubscriber<Integer> {
 
         List<String> results = new ArrayList<>();
@@ -74,6 +92,72 @@ class DataTableBasicTest {
         assertThat(test.keySet(), contains(1, 2, 5));
     }
 
+    @Test
+    void insertUpdateDeleteHashIndexed() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Id", int.class)
+                .addNamed("Fruit", String.class)
+                .addNamed("Qty", int.class)
+                .build();
+
+        DataTableBasic<Integer> test = DataTableBasic.<Integer>withSchema(schema)
+                .storage(DataTableBasic.Storage.HASH)
+                .sortedKeys(true)
+                .create();
+
+        DidoData.withSchema(schema).many()
+                .of(1, "Apple", 7)
+                .of(5, "Orange", 12)
+                .of(3, "Banana", 5).toStream()
+                .forEach(test::onData);
+
+        assertThat(test.keySet(), contains(1, 3, 5));
+
+        assertThat(test.get(5), is(DidoData.of(5, "Orange", 12)));
+
+        test.onData(DidoData.withSchema(schema).of(2, "Pear", 14));
+
+        assertThat(test.keySet(), contains(1, 2, 3, 5));
+
+        SubSchema subSchema = SubSchema.from(schema).withIndices(1, 2);
+
+        test.onPartial(PartialUpdate.from(DidoData.withSchema(subSchema).of(5, "Grape"))
+                .withIndices(subSchema.getIndices()));
+
+        assertThat(test.get(5), is(DidoData.of(5, "Grape", 12)));
+
+        test.onDelete(DidoData.of(3));
+
+        assertThat(test.keySet(), contains(1, 2, 5));
+        assertThat(test.containsKey(3), is(false));
+        assertThat(test.get(3), nullValue());
+
+        test.onData(DidoData.withSchema(schema).of(4, "Plum", 9));
+
+        assertThat(test.get(4), is(DidoData.of(4, "Plum", 9)));
+        assertThat(test.entrySet().stream().map(Map.Entry::getKey).toList(),
+                contains(1, 2, 4, 5));
+    }
+
+    @Test
+    void onDataReplacesExistingRow() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Id", int.class)
+                .addNamed("Fruit", String.class)
+                .addNamed("Qty", int.class)
+                .build();
+
+        DataTableBasic<Integer> test = DataTableBasic.<Integer>withSchema(schema)
+                .create();
+
+        test.onData(DidoData.withSchema(schema).of(1, "Apple", 7));
+        test.onData(DidoData.withSchema(schema).of(1, "Apple", 9));
+
+        assertThat(test.get(1), is(DidoData.of(1, "Apple", 9)));
+    }
+
     @Test
     void subscribe() {
 
@@ -117,4 +201,85 @@ class DataTableBasicTest {
 
         assertThat(recorder.results, empty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void persistentSnapshotIsUnchangedByLaterUpdates() {
+
+        DataTableBasic<Integer> test = DataTableBasic.<Integer>withSchema(fruitSchema)
+                .storage(DataTableBasic.Storage.PERSISTENT)
+                .create();
+
+        fruit().forEach(test::onData);
+
+        DataTable<Integer> snapshot = test.snapshot();
+
+        test.onPartial(PartialUpdate.of(
+                DidoData.withSchema(SubSchema.from(fruitSchema).withIndices(1, 3)).of(5, 20)));
+        test.onDelete(DidoData.of(1));
+        test.onData(DidoData.withSchema(fruitSchema).of(2, "Pear", 14));
+
+        assertThat(test.keySet(), contains(2, 3, 5));
+        assertThat(test.get(5), is(DidoData.of(5, "Orange", 20)));
+
+        assertThat(snapshot.keySet(), contains(1, 3, 5));
+        assertThat(snapshot.get(5), is(DidoData.of(5, "Orange", 12)));
+        assertThat(snapshot.containsKey(2), is(false));
+        assertThat(snapshot.snapshot(), sameInstance(snapshot));
+
+        // Iterating the live table while updating it doesn't fail.
+        for (Map.Entry<Integer, DidoData> entry : test.entrySet()) {
+            test.onDelete(DidoData.of(entry.getKey()));
+        }
+        assertThat(test.keySet(), empty());
+        assertThat(snapshot.keySet(), contains(1, 3, 5));
+    }
+
+    @Test
+    void copiedSnapshot() {
+
+        DataTableBasic<Integer> test = DataTableBasic.<Integer>withSchema(fruitSchema)
+                .storage(DataTableBasic.Storage.COLUMNAR)
+                .sortedKeys(true)
+                .create();
+
+        fruit().forEach(test::onData);
+
+        DataTable<Integer> snapshot = test.snapshot();
+
+        test.onData(DidoData.withSchema(fruitSchema).of(1, "Apple", 8));
+        test.onDelete(DidoData.of(5));
+
+        assertThat(snapshot.keySet(), contains(1, 3, 5));
+        assertThat(snapshot.get(1), is(DidoData.of(1, "Apple", 7)));
+
+        Recorder recorder = new Recorder();
+        snapshot.tableSubscribe(recorder).close();
+        assertThat(recorder.results, empty());
+    }
+
+    @ParameterizedTest
+    @EnumSource(DataTableBasic.Storage.class)
+    void closeRemovesAllRowsAndTableCanBeReused(DataTableBasic.Storage storage) {
+
+        DataTableBasic<Integer> test = DataTableBasic.<Integer>withSchema(fruitSchema)
+                .storage(storage)
+                .create();
+
+        fruit().forEach(test::onData);
+
+        Recorder recorder = new Recorder();
+        test.tableSubscribe(recorder);
+
+        test.close();
+
+        assertThat(test.keySet(), empty());
+        assertThat(test.containsKey(1), is(false));
+        assertThat(test.get(1), nullValue());
+        assertThat(recorder.results, empty());
+
+        test.onData(DidoData.withSchema(fruitSchema).of(2, "Pear", 14));
+
+        assertThat(test.keySet(), contains(2));
+        assertThat(test.get(2), is(DidoData.of(2, "Pear", 14)));
+    }
+}
@@ -0,0 +1,108 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FilteredTableTest {
+
+    DataSchema quoteSchema = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Bid", double.class)
+            .addNamed("Status", String.class)
+            .build();
+
+    DataTableBasic<String> quotes = DataTableBasic.<String>withSchema(quoteSchema).create();
+
+    DidoData quote(String id, double bid, String status) {
+        return DidoData.withSchema(quoteSchema).of(id, bid, status);
+    }
+
+    @Test
+    void enterLeaveAndPassThrough() {
+
+        quotes.onData(quote("A", 1.0, "Open"));
+        quotes.onData(quote("B", 2.0, "Halted"));
+
+        AtomicInteger tests = new AtomicInteger();
+        Predicate<DidoData> isOpen = data -> {
+            tests.incrementAndGet();
+            return "Open".equals(data.getNamed("Status"));
+        };
+
+        FilteredTable<String> test = FilteredTable.from(quotes)
+                .where(isOpen)
+                .reading("Status")
+                .create();
+
+        assertThat(test.getSchema(), is(quoteSchema));
+        assertThat(test.keySet(), contains("A"));
+        assertThat(test.get("B"), nullValue());
+
+        DataJoinTest.Recorder recorder = new DataJoinTest.Recorder();
+        test.tableSubscribe(recorder);
+
+        tests.set(0);
+
+        quotes.onPartial(PartialUpdate.from(quote("A", 1.1, "Open")).withIndices(2));
+        quotes.onPartial(PartialUpdate.from(quote("B", 2.1, "Halted")).withIndices(2));
+
+        assertThat(tests.get(), is(0));
+
+        quotes.onPartial(PartialUpdate.from(quote("B", 2.1, "Open")).withIndices(3));
+        quotes.onPartial(PartialUpdate.from(quote("A", 1.1, "Halted")).withIndices(3));
+        quotes.onData(quote("C", 3.0, "Halted"));
+        quotes.onData(quote("B", 2.2, "Open"));
+        quotes.onDelete(DidoData.of("A"));
+        quotes.onDelete(DidoData.of("B"));
+
+        assertThat(recorder.results, contains(
+                "onPartial: A 2=1.1",
+                "onData: B",
+                "onDelete: A",
+                "onData: B",
+                "onDelete: B"));
+
+        assertThat(tests.get(), is(4));
+        assertThat(test.keySet(), empty());
+
+        test.close();
+    }
+
+    @Test
+    void withoutReadsEveryPartialIsTested() {
+
+        quotes.onData(quote("A", 1.0, "Open"));
+
+        FilteredTable<String> test = FilteredTable.from(quotes)
+                .where(data -> data.getDoubleNamed("Bid") > 1.5)
+                .create();
+
+        assertThat(test.keySet(), empty());
+
+        quotes.onPartial(PartialUpdate.from(quote("A", 2.0, "Open")).withIndices(2));
+
+        assertThat(test.keySet(), contains("A"));
+        assertThat(test.get("A"), is(quote("A", 2.0, "Open")));
+        assertThat(test.entrySet().size(), is(1));
+
+        test.close();
+    }
+
+    @Test
+    void unknownField() {
+
+        assertThrows(IllegalArgumentException.class, () -> FilteredTable.from(quotes)
+                .where(data -> true)
+                .reading("Ask")
+                .create());
+    }
+}
@@ -2,15 +2,24 @@ package dido.table.internal;
 
 import dido.data.DataSchema;
 import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
 import dido.flow.util.KeyExtractors;
 import dido.table.CloseableTable;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 class ForeignKeyedTableTest {
 
@@ -63,4 +72,144 @@ class ForeignKeyedTableTest {
 
         grocersByFruitId.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    void foreignKeyChangesArePassedOn() {
+
+        fruit.forEach(fruitTable::onData);
+        grocerTable.onData(grocers.get(1));
+
+        CloseableTable<String> grocersByFruitId = ForeignKeyedTable
+                .byForeignKey(fruitTable, grocerTable,
+                        KeyExtractors.<String>fromNamed("GrocerId").keyExtractorFor(fruitSchema));
+
+        assertThat(grocersByFruitId.keySet(), contains("F1", "F2"));
+        assertThat(grocersByFruitId.containsKey("F3"), is(false));
+
+        DataJoinTest.Recorder recorder = new DataJoinTest.Recorder();
+        grocersByFruitId.tableSubscribe(recorder);
+
+        grocerTable.onData(grocers.get(0));
+
+        assertThat(grocersByFruitId.keySet(), contains("F1", "F2", "F3"));
+
+        SubSchema grocerIdSchema = SubSchema.from(fruitSchema).withIndices(1, 3);
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(grocerIdSchema).of("F1", "G1"))
+                .withIndices(1, 3));
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(grocerIdSchema).of("F2", "G3"))
+                .withIndices(1, 3));
+        fruitTable.onData(DidoData.withSchema(fruitSchema).of("F4", "Pear", "G1", 4));
+        fruitTable.onDelete(DidoData.of("F3"));
+
+        assertThat(recorder.results, contains(
+                "onData: F3",
+                "onData: F1",
+                "onDelete: F2"));
+
+        assertThat(grocersByFruitId.keySet(), contains("F1", "F4"));
+        assertThat(grocersByFruitId.get("F1"), is(DidoData.of("G1", "Jones")));
+        assertThat(grocersByFruitId.get("F2"), nullValue());
+
+        grocerTable.onData(DidoData.withSchema(grocerSchema).of("G3", "Brown"));
+
+        assertThat(grocersByFruitId.get("F2"), is(DidoData.of("G3", "Brown")));
+        assertThat(grocersByFruitId.entrySet().size(), is(3));
+
+        grocersByFruitId.close();
+    }
+
+    @Test
+    void nullForeignKeyPointsAtNothing() {
+
+        fruit.forEach(fruitTable::onData);
+        fruitTable.onData(DidoData.withSchema(fruitSchema).of("F5", "Lime", null, 1));
+        grocers.forEach(grocerTable::onData);
+
+        CloseableTable<String> grocersByFruitId = ForeignKeyedTable
+                .byForeignKey(fruitTable, grocerTable,
+                        KeyExtractors.<String>fromNamed("GrocerId").keyExtractorFor(fruitSchema));
+
+        assertThat(grocersByFruitId.keySet(), contains("F1", "F2", "F3"));
+
+        DataJoinTest.Recorder recorder = new DataJoinTest.Recorder();
+        grocersByFruitId.tableSubscribe(recorder);
+
+        SubSchema grocerIdSchema = SubSchema.from(fruitSchema).withIndices(1, 3);
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(grocerIdSchema).of("F1", null))
+                .withIndices(1, 3));
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(grocerIdSchema).of("F5", "G1"))
+                .withIndices(1, 3));
+        grocerTable.onData(DidoData.withSchema(grocerSchema).of("G2", "Brown"));
+        fruitTable.onDelete(DidoData.of("F1"));
+
+        assertThat(recorder.results, contains(
+                "onDelete: F1",
+                "onData: F5",
+                "onData: F2"));
+
+        assertThat(grocersByFruitId.keySet(), contains("F2", "F3", "F5"));
+        assertThat(grocersByFruitId.get("F5"), is(DidoData.of("G1", "Jones")));
+
+        grocersByFruitId.close();
+    }
+
+    @Test
+    void partialsNotTouchingTheForeignKeyDontLookUpTheChild() {
+
+        fruit.forEach(fruitTable::onData);
+        grocers.forEach(grocerTable::onData);
+
+        AtomicInteger gets = new AtomicInteger();
+        DataTable<String> countingFruit = new DataTable<>() {
+            @Override
+            public DataSchema getSchema() {
+                return fruitTable.getSchema();
+            }
+
+            @Override
+            public Set<String> keySet() {
+                return fruitTable.keySet();
+            }
+
+            @Override
+            public Set<Map.Entry<String, DidoData>> entrySet() {
+                return fruitTable.entrySet();
+            }
+
+            @Override
+            public boolean containsKey(String key) {
+                return fruitTable.containsKey(key);
+            }
+
+            @Override
+            public DidoData get(String key) {
+                gets.incrementAndGet();
+                return fruitTable.get(key);
+            }
+
+            @Override
+            public KeyedSubscription tableSubscribe(KeyedSubscriber<String> listener) {
+                return fruitTable.tableSubscribe(listener);
+            }
+        };
+
+        CloseableTable<String> grocersByFruitId = ForeignKeyedTable
+                .byForeignKey(countingFruit, grocerTable,
+                        KeyExtractors.<String>fromNamed("GrocerId").keyExtractorFor(fruitSchema));
+
+        SubSchema priceSchema = SubSchema.from(fruitSchema).withIndices(1, 4);
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(priceSchema).of("F1", 7.0))
+                .withIndices(1, 4));
+
+        assertThat(gets.get(), is(0));
+
+        SubSchema grocerIdSchema = SubSchema.from(fruitSchema).withIndices(1, 3);
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(grocerIdSchema).of("F1", "G1"))
+                .withIndices(1, 3));
+
+        assertThat(gets.get(), is(1));
+        assertThat(grocersByFruitId.get("F1"), is(DidoData.of("G1", "Jones")));
+
+        grocersByFruitId.close();
+    }
+}
@@ -0,0 +1,67 @@
+package dido.table.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class HashKeyIndexTest {
+
+    @Test
+    void addFindRemove() {
+
+        HashKeyIndex<String> test = new HashKeyIndex<>();
+
+        int apple = test.add("Apple");
+        int orange = test.add("Orange");
+
+        assertThat(test.add("Apple"), is(apple));
+        assertThat(test.slotOf("Orange"), is(orange));
+        assertThat(test.slotOf("Pear"), is(-1));
+        assertThat(test.keyAt(apple), is("Apple"));
+        assertThat(test.size(), is(2));
+
+        assertThat(test.remove("Apple"), is(apple));
+        assertThat(test.remove("Apple"), is(-1));
+        assertThat(test.slotOf("Apple"), is(-1));
+
+        // The free slot is reused.
+        assertThat(test.add("Banana"), is(apple));
+
+        assertThat(test.sortedKeySet(), contains("Banana", "Orange"));
+    }
+
+    @Test
+    void sameAsHashMapUnderChurn() {
+
+        Random random = new Random(42);
+
+        HashKeyIndex<Integer> test = new HashKeyIndex<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 100_000; ++i) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                Integer slot = expected.remove(key);
+                assertThat(test.remove(key), is(slot == null ? -1 : slot));
+            }
+            else {
+                int slot = test.add(key);
+                assertThat(expected.computeIfAbsent(key, k -> slot), is(slot));
+            }
+        }
+
+        assertThat(test.size(), is(expected.size()));
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertThat(test.slotOf(entry.getKey()), is(entry.getValue()));
+        }
+        assertThat(test.keySet(), is(expected.keySet()));
+        assertThat(test.sortedKeySet(), contains(new TreeSet<>(expected.keySet()).toArray()));
+        assertThat(test.slotLimit(), lessThanOrEqualTo(5_000));
+    }
+}
@@ -3,11 +3,20 @@ package dido.table.internal;
 import dido.data.DataSchema;
 import dido.data.DidoData;
 import dido.data.SchemaFactory;
+import dido.data.partial.PartialUpdate;
 import dido.operators.transform.BasicOperations;
+import dido.operators.transform.ValueGetter;
+import dido.operators.transform.ValueSetter;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class LiveOperationBuilderTest {
 
@@ -34,4 +43,158 @@ class LiveOperationBuilderTest {
         assertThat(row.getValueNamed("Qty").get(), Matchers.is(4));
     }
 
-}
\ No newline at end of file
+    @Test
+    void partialRunsOnlyDependentOperations() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Qty", int.class)
+                .addNamed("Price", double.class)
+                .addNamed("Fee", double.class)
+                .build();
+
+        List<String> runs = new ArrayList<>();
+
+        LiveOperation test = LiveOperationBuilder.forSchema(schema)
+                .addOp(context -> {
+                    ValueGetter qty = context.getterNamed("Qty");
+                    ValueGetter price = context.getterNamed("Price");
+                    ValueSetter value = context.setterNamed("Value", double.class);
+                    return () -> {
+                        runs.add("Value");
+                        value.setDouble(qty.getInt() * price.getDouble());
+                    };
+                })
+                .addOp(context -> {
+                    ValueGetter value = context.getterNamed("Value");
+                    ValueGetter fee = context.getterNamed("Fee");
+                    ValueSetter total = context.setterNamed("Total", double.class);
+                    return () -> {
+                        runs.add("Total");
+                        total.setDouble(value.getDouble() + fee.getDouble());
+                    };
+                })
+                .addOp(context -> {
+                    ValueGetter fee = context.getterNamed("Fee");
+                    ValueSetter feeTax = context.setterNamed("FeeTax", double.class);
+                    return () -> {
+                        runs.add("FeeTax");
+                        feeTax.setDouble(fee.getDouble() * 0.5);
+                    };
+                })
+                .build();
+
+        ArrayRowImpl row = new ArrayRowImpl(test.getFullSchema(), null);
+        row.onData(DidoData.withSchema(schema).of(2, 10.0, 1.0), test);
+
+        assertThat(runs, contains("Value", "Total", "FeeTax"));
+        assertThat(row.getValueNamed("Total").getDouble(), is(21.0));
+
+        runs.clear();
+        row.onPartial(PartialUpdate.from(DidoData.withSchema(schema).of(2, 11.0, 1.0))
+                .withIndices(2), test);
+
+        assertThat(runs, contains("Value", "Total"));
+        assertThat(row.getValueNamed("Total").getDouble(), is(23.0));
+
+        runs.clear();
+        row.onPartial(PartialUpdate.from(DidoData.withSchema(schema).of(2, 11.0, 4.0))
+                .withIndices(3), test);
+
+        assertThat(runs, contains("Total", "FeeTax"));
+        assertThat(row.getValueNamed("Total").getDouble(), is(26.0));
+        assertThat(row.getValueNamed("FeeTax").getDouble(), is(2.0));
+    }
+
+    @Test
+    void operationsAddedInReverseDependencyOrderRunInDependencyOrder() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Qty", int.class)
+                .addNamed("Price", double.class)
+                .addNamed("Value", double.class)
+                .addNamed("Total", double.class)
+                .build();
+
+        List<String> runs = new ArrayList<>();
+
+        LiveOperation test = LiveOperationBuilder.forSchema(schema)
+                .addOp(context -> {
+                    ValueGetter value = context.getterNamed("Value");
+                    ValueSetter total = context.setterNamed("Total", double.class);
+                    return () -> {
+                        runs.add("Total");
+                        total.setDouble(value.getDouble() + 1.0);
+                    };
+                })
+                .addOp(context -> {
+                    ValueGetter qty = context.getterNamed("Qty");
+                    ValueGetter price = context.getterNamed("Price");
+                    ValueSetter value = context.setterNamed("Value", double.class);
+                    return () -> {
+                        runs.add("Value");
+                        value.setDouble(qty.getInt() * price.getDouble());
+                    };
+                })
+                .build();
+
+        ArrayRowImpl row = new ArrayRowImpl(test.getFullSchema(), null);
+        row.onData(DidoData.withSchema(schema).of(2, 10.0, 0.0, 0.0), test);
+
+        assertThat(runs, contains("Value", "Total"));
+        assertThat(row.getValueNamed("Total").getDouble(), is(21.0));
+
+        runs.clear();
+        row.onPartial(PartialUpdate.from(DidoData.withSchema(schema).of(2, 11.0, 0.0, 0.0))
+                .withIndices(2), test);
+
+        assertThat(runs, contains("Value", "Total"));
+        assertThat(row.getValueNamed("Total").getDouble(), is(23.0));
+    }
+
+    @Test
+    void cyclesAreRejected() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("A", double.class)
+                .addNamed("B", double.class)
+                .build();
+
+        LiveOperationBuilder test = LiveOperationBuilder.forSchema(schema)
+                .addOp(context -> {
+                    ValueGetter a = context.getterNamed("A");
+                    ValueSetter b = context.setterNamed("B", double.class);
+                    return () -> b.setDouble(a.getDouble());
+                })
+                .addOp(context -> {
+                    ValueGetter b = context.getterNamed("B");
+                    ValueSetter a = context.setterNamed("A", double.class);
+                    return () -> a.setDouble(b.getDouble());
+                });
+
+        assertThrows(IllegalArgumentException.class, test::build);
+    }
+
+    @Test
+    void operationThatReadsNothingRunsForEveryUpdate() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Price", double.class)
+                .build();
+
+        int[] updates = new int[1];
+
+        LiveOperation test = LiveOperationBuilder.forSchema(schema)
+                .addOp(context -> {
+                    ValueSetter count = context.setterNamed("Updates", int.class);
+                    return () -> count.setInt(++updates[0]);
+                })
+                .build();
+
+        ArrayRowImpl row = new ArrayRowImpl(test.getFullSchema(), null);
+        row.onData(DidoData.withSchema(schema).of(10.0), test);
+        row.onPartial(PartialUpdate.from(DidoData.withSchema(schema).of(11.0))
+                .withIndices(1), test);
+
+        assertThat(row.getValueNamed("Updates").getInt(), is(2));
+    }
+}
@@ -2,16 +2,23 @@ package dido.table.internal;
 
 import dido.data.DataSchema;
 import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
 import dido.data.schema.SchemaBuilder;
+import dido.flow.DidoSubscriber;
 import dido.operators.transform.BasicOperations;
 import dido.operators.transform.ValueGetter;
 import dido.operators.transform.ValueSetter;
+import dido.table.KeyedSubscriber;
 import dido.table.LiveRow;
 import dido.table.LiveTable;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class LiveTableBasicTest {
 
@@ -77,4 +84,150 @@ class LiveTableBasicTest {
         assertThat(row.getValueNamed("TotalPrice").getDouble(), is(22.0));
         table.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    void deleteRowsAndReuseThem() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Id", int.class)
+                .addNamed("Fruit", String.class)
+                .build();
+
+        LiveTableBasic<Integer> table = LiveTableBasic.<Integer>forSchema(schema).create();
+
+        DidoData.withSchema(schema).many()
+                .of(5, "Apple")
+                .of(8, "Pear")
+                .toList().forEach(table::onData);
+
+        List<String> results = new ArrayList<>();
+        table.tableSubscribe(new KeyedSubscriber<>() {
+            @Override
+            public void onData(Integer key, DidoData data) {
+                results.add("onData: " + key);
+            }
+
+            @Override
+            public void onPartial(Integer key, PartialUpdate partial) {
+                results.add("onPartial: " + key);
+            }
+
+            @Override
+            public void onDelete(Integer key) {
+                results.add("onDelete: " + key);
+            }
+        });
+
+        List<DidoData> deleted = new ArrayList<>();
+        table.didoSubscribe(new DidoSubscriber() {
+            @Override
+            public void onData(DidoData data) {
+            }
+
+            @Override
+            public void onPartial(PartialUpdate partial) {
+            }
+
+            @Override
+            public void onDelete(DidoData keyData) {
+                deleted.add(keyData);
+            }
+        });
+
+        LiveRow apple = table.getRow(DidoData.of(5));
+        List<Object> changes = new ArrayList<>();
+        apple.getValueNamed("Fruit").addChangeListener(value -> changes.add(value.get()));
+
+        table.onDelete(DidoData.of(5));
+
+        assertThat(results, contains("onDelete: 5"));
+        assertThat(deleted, contains(DidoData.of(5)));
+        assertThat(table.keySet(), contains(8));
+        assertThat(table.get(5), nullValue());
+        assertThat(table.getRow(DidoData.of(5)), nullValue());
+
+        table.onData(DidoData.withSchema(schema).of(3, "Banana"));
+
+        LiveRow banana = table.getRow(DidoData.of(3));
+
+        assertThat(banana, sameInstance(apple));
+        assertThat(banana.getValueNamed("Fruit").getString(), is("Banana"));
+        assertThat(table.get(3), is(DidoData.of(3, "Banana")));
+        assertThat(changes, empty());
+
+        assertThrows(IllegalArgumentException.class, () -> table.onDelete(DidoData.of(5)));
+
+        table.close();
+
+        assertThat(table.keySet(), empty());
+    }
+
+    @Test
+    void noReuseWhenFreeRowsIsZero() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Id", int.class)
+                .addNamed("Fruit", String.class)
+                .build();
+
+        LiveTable<Integer> table = LiveTableBasic.<Integer>forSchema(schema)
+                .maxFreeRows(0)
+                .create();
+
+        table.onData(DidoData.withSchema(schema).of(5, "Apple"));
+        LiveRow apple = table.getRow(DidoData.of(5));
+
+        table.onDelete(DidoData.of(5));
+        table.onData(DidoData.withSchema(schema).of(3, "Banana"));
+
+        assertThat(table.getRow(DidoData.of(3)), not(sameInstance(apple)));
+        assertThat(apple.getValueNamed("Fruit").getString(), is("Apple"));
+
+        table.close();
+    }
+
+    @Test
+    void primitiveFieldsHaveValuesOfTheirType() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Id", int.class)
+                .addNamed("Qty", long.class)
+                .addNamed("Price", double.class)
+                .addNamed("Active", boolean.class)
+                .addNamed("Fruit", String.class)
+                .build();
+
+        LiveTable<Integer> table = LiveTableBasic.<Integer>forSchema(schema)
+                .addOperation(opContext -> {
+                    ValueGetter qty = opContext.getterNamed("Qty");
+                    ValueGetter price = opContext.getterNamed("Price");
+                    ValueSetter value = opContext.setterNamed("Value", double.class);
+                    return () -> value.setDouble(qty.getLong() * price.getDouble());
+                })
+                .create();
+
+        table.onData(DidoData.withSchema(schema).of(5, 10L, 2.5, true, "Apple"));
+
+        LiveRow row = table.getRow(DidoData.of(5));
+
+        assertThat(row.getValueNamed("Id"), instanceOf(IntLiveValue.class));
+        assertThat(row.getValueNamed("Qty"), instanceOf(LongLiveValue.class));
+        assertThat(row.getValueNamed("Price"), instanceOf(DoubleLiveValue.class));
+        assertThat(row.getValueNamed("Active"), instanceOf(BooleanLiveValue.class));
+        assertThat(row.getValueNamed("Fruit"), instanceOf(ObjectLiveValue.class));
+        assertThat(row.getValueNamed("Value"), instanceOf(DoubleLiveValue.class));
+
+        assertThat(row.getValueNamed("Value").getDouble(), is(25.0));
+        assertThat(table.get(5), is(DidoData.of(5, 10L, 2.5, true, "Apple", 25.0)));
+        assertThat(table.get(5).getDoubleAt(6), is(25.0));
+
+        table.onPartial(PartialUpdate.from(DidoData.withSchema(schema).of(5, 10L, 3.0, null, "Apple"))
+                .withIndices(3, 4));
+
+        assertThat(row.getValueNamed("Value").getDouble(), is(30.0));
+        assertThat(row.getValueNamed("Active").has(), is(false));
+        assertThat(table.get(5).hasAt(4), is(false));
+
+        table.close();
+    }
+}
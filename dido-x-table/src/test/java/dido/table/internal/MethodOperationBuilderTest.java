@@ -8,11 +8,16 @@ import dido.flow.DidoSubscriber;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class MethodOperationBuilderTest {
 
@@ -104,4 +109,88 @@ class MethodOperationBuilderTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    void primitiveParametersAndNamedMethod() {
+
+        DataSchema schema = DataSchema.builder()
+                .addNamed("Qty", int.class)
+                .addNamed("Price", double.class)
+                .addNamed("Fruit", String.class)
+                .build();
+
+        LiveOperation op = LiveOperationBuilder.forSchema(schema)
+                .addOp(new MethodOperationBuilder()
+                        .readingNamed("Qty")
+                        .readingNamed("Price")
+                        .readingNamed("Fruit")
+                        .writingNamed("Value", double.class)
+                        .writingNamed("Label", String.class)
+                        .processor(new Valuer(), "value"))
+                .build();
+
+        ArrayRowImpl row = new ArrayRowImpl(op.getFullSchema(), null);
+        row.onData(DidoData.withSchema(schema).of(3, 1.5, "Apple"), op);
+
+        assertThat(row.getValueNamed("Value").getDouble(), Matchers.is(4.5));
+        assertThat(row.getValueNamed("Label").get(), Matchers.is("3 Apple"));
+    }
+
+    public static class Valuer {
+
+        void value(int qty,
+                   double price,
+                   String fruit,
+                   DoubleConsumer value,
+                   Consumer<String> label) {
+
+            value.accept(qty * price);
+            label.accept(qty + " " + fruit);
+        }
+
+        void other(int qty,
+                   double price,
+                   String fruit,
+                   DoubleConsumer value,
+                   Consumer<String> label) {
+
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    void ambiguousMethodIsAnError() {
+
+        MethodOperationBuilder test = new MethodOperationBuilder()
+                .readingNamed("Qty")
+                .readingNamed("Price")
+                .readingNamed("Fruit")
+                .writingNamed("Value", double.class)
+                .writingNamed("Label", String.class);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> test.processor(new Valuer()));
+
+        assertThat(e.getMessage(), Matchers.containsString("Expected one method"));
+    }
+
+    @Test
+    void eachInvokerIsItsOwnHiddenClass() throws ReflectiveOperationException {
+
+        List<String> runs = new ArrayList<>();
+        MethodHandle add = MethodHandles.lookup().findVirtual(List.class, "add",
+                MethodType.methodType(boolean.class, Object.class));
+
+        Runnable first = MethodOperationBuilder.invoker(MethodHandles.dropReturn(
+                add.bindTo(runs).bindTo("first")));
+        Runnable second = MethodOperationBuilder.invoker(MethodHandles.dropReturn(
+                add.bindTo(runs).bindTo("second")));
+
+        first.run();
+        second.run();
+        first.run();
+
+        assertThat(runs, Matchers.contains("first", "second", "first"));
+        assertThat(first.getClass().isHidden(), Matchers.is(true));
+        assertThat(first.getClass(), Matchers.not(Matchers.sameInstance(second.getClass())));
+    }
+}
@@ -0,0 +1,119 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SchemaBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultiJoinTest {
+
+    DataSchema quoteSchema = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Bid", double.class)
+            .addNamed("Ask", double.class)
+            .build();
+
+    DataSchema refSchema = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Name", String.class)
+            .build();
+
+    DataSchema limitSchema = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Limit", int.class)
+            .build();
+
+    DataTableBasic<String> quotes = DataTableBasic.<String>withSchema(quoteSchema).create();
+
+    DataTableBasic<String> refs = DataTableBasic.<String>withSchema(refSchema).create();
+
+    DataTableBasic<String> limits = DataTableBasic.<String>withSchema(limitSchema).create();
+
+    @Test
+    void innerJoinOfThree() {
+
+        quotes.onData(DidoData.withSchema(quoteSchema).of("A", 1.0, 1.5));
+        quotes.onData(DidoData.withSchema(quoteSchema).of("B", 2.0, 2.5));
+        refs.onData(DidoData.withSchema(refSchema).of("A", "Apple"));
+        refs.onData(DidoData.withSchema(refSchema).of("B", "Banana"));
+        limits.onData(DidoData.withSchema(limitSchema).of("A", 100));
+
+        MultiJoin<String> test = MultiJoin.from(quotes).and(refs).and(limits).innerJoin();
+
+        DataSchema expectedSchema = SchemaBuilder.builderFrom(quoteSchema)
+                .concat(refSchema).concat(limitSchema).build();
+
+        assertThat(test.getSchema(), is(expectedSchema));
+        assertThat(test.keySet(), contains("A"));
+        assertThat(test.get("A"), is(DidoData.of("A", 1.0, 1.5, "A", "Apple", "A", 100)));
+        assertThat(test.get("B"), nullValue());
+
+        DataJoinTest.Recorder recorder = new DataJoinTest.Recorder();
+        test.tableSubscribe(recorder);
+
+        limits.onData(DidoData.withSchema(limitSchema).of("B", 200));
+        limits.onPartial(PartialUpdate.from(DidoData.withSchema(limitSchema).of("A", 150))
+                .withIndices(2));
+        quotes.onPartial(PartialUpdate.from(DidoData.withSchema(quoteSchema).of("B", 2.1, 2.6))
+                .withIndices(2, 3));
+        refs.onDelete(DidoData.of("A"));
+
+        assertThat(recorder.results, contains(
+                "onData: B",
+                "onPartial: A 7=150",
+                "onPartial: B 2=2.1 3=2.6",
+                "onDelete: A"));
+
+        assertThat(test.keySet(), contains("B"));
+        assertThat(test.containsKey("A"), is(false));
+        assertThat(test.get("B"), is(DidoData.of("B", 2.1, 2.6, "B", "Banana", "B", 200)));
+        assertThat(test.entrySet().size(), is(1));
+
+        test.close();
+    }
+
+    @Test
+    void leftJoinOfThree() {
+
+        quotes.onData(DidoData.withSchema(quoteSchema).of("A", 1.0, 1.5));
+        limits.onData(DidoData.withSchema(limitSchema).of("A", 100));
+        limits.onData(DidoData.withSchema(limitSchema).of("C", 300));
+
+        MultiJoin<String> test = MultiJoin.from(quotes).and(refs).and(limits).leftJoin();
+
+        assertThat(test.keySet(), contains("A"));
+        assertThat(test.get("A"), is(DidoData.of("A", 1.0, 1.5, null, null, "A", 100)));
+
+        DataJoinTest.Recorder recorder = new DataJoinTest.Recorder();
+        test.tableSubscribe(recorder);
+
+        refs.onData(DidoData.withSchema(refSchema).of("C", "Cherry"));
+        quotes.onData(DidoData.withSchema(quoteSchema).of("C", 3.0, 3.5));
+        limits.onDelete(DidoData.of("A"));
+        quotes.onDelete(DidoData.of("C"));
+
+        assertThat(recorder.results, contains(
+                "onData: C",
+                "onPartial: A 6=null 7=null",
+                "onDelete: C"));
+
+        assertThat(test.keySet(), contains("A"));
+        assertThat(test.get("A"), is(DidoData.of("A", 1.0, 1.5, null, null, null, null)));
+
+        test.close();
+    }
+
+    @Test
+    void tooFewTables() {
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> MultiJoin.from(quotes).innerJoin());
+
+        assertThat(e.getMessage(), containsString("not 1"));
+    }
+}
@@ -0,0 +1,200 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class OffHeapRowStoreTest {
+
+    DataSchema schema = DataSchema.builder()
+            .addNamed("Symbol", String.class)
+            .addNamed("Bid", double.class)
+            .addNamed("Volume", long.class)
+            .addNamed("BidSize", int.class)
+            .addNamed("Date", LocalDate.class)
+            .build();
+
+    @Test
+    void storeUpdateAndRemove() {
+
+        OffHeapRowStore<String> test = new OffHeapRowStore<>(schema, true);
+
+        test.put("IBM", DidoData.withSchema(schema)
+                .of("IBM", 99.9, 1000L, 80, LocalDate.of(2025, 1, 2)));
+        test.put("MSFT", DidoData.withSchema(schema)
+                .of("MSFT", 79.9, 2000L, 110, null));
+
+        DidoData ibm = test.get("IBM");
+
+        assertThat(ibm, is(DidoData.withSchema(schema)
+                .of("IBM", 99.9, 1000L, 80, LocalDate.of(2025, 1, 2))));
+        assertThat(ibm.getDoubleAt(2), is(99.9));
+        assertThat(ibm.getLongAt(3), is(1000L));
+        assertThat(ibm.getIntAt(4), is(80));
+        assertThat(ibm.getStringAt(1), is("IBM"));
+
+        assertThat(test.get("MSFT").hasAt(5), is(false));
+        assertThat(test.get("MSFT").getAt(5), nullValue());
+
+        SubSchema subSchema = SubSchema.from(schema).withIndices(1, 2, 4);
+        assertThat(test.update("IBM", PartialUpdate.from(DidoData.withSchema(subSchema)
+                .of("IBM", 100.1, null)).withIndices(1, 2, 4)), is(true));
+
+        // The view is live.
+        assertThat(ibm.getDoubleAt(2), is(100.1));
+        assertThat(ibm.hasAt(4), is(false));
+
+        assertThat(test.update("AAPL", PartialUpdate.of(DidoData.withSchema(schema)
+                .of("AAPL", 1.0, 1L, 1, null))), is(false));
+
+        assertThat(test.keySet(), contains("IBM", "MSFT"));
+
+        assertThat(test.remove("IBM"), is(true));
+        assertThat(test.remove("IBM"), is(false));
+        assertThat(test.containsKey("IBM"), is(false));
+        assertThat(test.get("IBM"), nullValue());
+
+        test.put("AAPL", DidoData.withSchema(schema)
+                .of("AAPL", 104.9, 3000L, 30, null));
+
+        assertThat(test.keySet(), contains("AAPL", "MSFT"));
+        assertThat(test.get("AAPL"), is(DidoData.withSchema(schema)
+                .of("AAPL", 104.9, 3000L, 30, null)));
+    }
+
+    @Test
+    void stringsAreRewrittenInPlaceOrReallocated() {
+
+        OffHeapRowStore<String> test = new OffHeapRowStore<>(schema, false);
+
+        test.put("K", DidoData.withSchema(schema)
+                .of("Medium", 1.0, 1L, 1, null));
+
+        long bytes = test.offHeapBytes();
+
+        test.put("K", DidoData.withSchema(schema)
+                .of("Short", 1.0, 1L, 1, null));
+
+        assertThat(test.get("K").getStringAt(1), is("Short"));
+
+        test.put("K", DidoData.withSchema(schema)
+                .of("Much Much Longer", 1.0, 1L, 1, null));
+
+        assertThat(test.get("K").getStringAt(1), is("Much Much Longer"));
+
+        test.put("K", DidoData.withSchema(schema)
+                .of("Café über", 1.0, 1L, 1, null));
+
+        assertThat(test.get("K").getAt(1), is("Café über"));
+        assertThat(test.offHeapBytes(), is(bytes));
+    }
+
+    @Test
+    void stringSpaceIsReusedUnderChurn() {
+
+        OffHeapRowStore<String> test = new OffHeapRowStore<>(schema, false);
+
+        test.put("K0", DidoData.withSchema(schema)
+                .of("K0", 1.0, 1L, 1, null));
+
+        long bytes = test.offHeapBytes();
+
+        for (int i = 0; i < 100_000; ++i) {
+            String key = "K" + (i % 100);
+            test.put(key, DidoData.withSchema(schema)
+                    .of(key + "-" + "x".repeat(i % 50), 1.0, 1L, 1, null));
+            if (i % 7 == 0) {
+                test.remove(key);
+            }
+        }
+
+        assertThat(test.offHeapBytes(), is(bytes));
+        assertThat(test.get("K99").getStringAt(1), is("K99-" + "x".repeat(99_999 % 50)));
+    }
+
+    @Test
+    void closeReleasesBuffers() {
+
+        OffHeapRowStore<String> test = new OffHeapRowStore<>(schema, false);
+
+        test.put("K", DidoData.withSchema(schema)
+                .of("K", 1.0, 1L, 1, LocalDate.ofEpochDay(1)));
+
+        test.close();
+
+        assertThat(test.offHeapBytes(), is(0L));
+        assertThat(test.containsKey("K"), is(false));
+
+        test.put("K", DidoData.withSchema(schema)
+                .of("K", 2.0, 2L, 2, LocalDate.ofEpochDay(2)));
+
+        assertThat(test.get("K"), is(DidoData.withSchema(schema)
+                .of("K", 2.0, 2L, 2, LocalDate.ofEpochDay(2))));
+    }
+
+    @Test
+    void growsAcrossChunks() {
+
+        OffHeapRowStore<String> test = new OffHeapRowStore<>(schema, false, 1024);
+
+        for (int i = 0; i < 1000; ++i) {
+            test.put("K" + i, DidoData.withSchema(schema)
+                    .of("K" + i, i * 1.5, (long) i, i, LocalDate.ofEpochDay(i)));
+        }
+
+        assertThat(test.keySet().size(), is(1000));
+        assertThat(test.get("K999").getDoubleAt(2), is(999 * 1.5));
+        assertThat(test.get("K500").getIntAt(4), is(500));
+        assertThat(test.get("K700").getStringAt(1), is("K700"));
+        assertThat(test.get("K800").getAt(5), is(LocalDate.ofEpochDay(800)));
+    }
+
+    @Test
+    void usedByTableInAJoin() {
+
+        DataSchema fruitSchema = DataSchema.builder()
+                .addNamed("Id", String.class)
+                .addNamed("Fruit", String.class)
+                .addNamed("Price", double.class)
+                .build();
+
+        DataSchema colourSchema = DataSchema.builder()
+                .addNamed("Id", String.class)
+                .addNamed("Colour", String.class)
+                .build();
+
+        DataTableBasic<String> fruitTable = DataTableBasic.<String>withSchema(fruitSchema)
+                .storage(DataTableBasic.Storage.OFF_HEAP)
+                .sortedKeys(true)
+                .create();
+
+        DataTableBasic<String> colourTable = DataTableBasic.<String>withSchema(colourSchema)
+                .storage(DataTableBasic.Storage.OFF_HEAP)
+                .create();
+
+        fruitTable.onData(DidoData.withSchema(fruitSchema).of("F1", "Apple", 5.0));
+        fruitTable.onData(DidoData.withSchema(fruitSchema).of("F2", "Banana", 3.0));
+        colourTable.onData(DidoData.withSchema(colourSchema).of("F1", "Green"));
+
+        DataJoin<String> joined = DataJoin.from(fruitTable).primaryKeys()
+                .innerJoin(colourTable);
+
+        assertThat(joined.get("F1"), is(DidoData.of("F1", "Apple", 5.0, "F1", "Green")));
+        assertThat(joined.containsKey("F2"), is(false));
+
+        fruitTable.onPartial(PartialUpdate.from(DidoData.withSchema(
+                SubSchema.from(fruitSchema).withIndices(1, 3)).of("F1", 6.0))
+                .withIndices(1, 3));
+
+        assertThat(joined.get("F1").getDoubleAt(3), is(6.0));
+
+        joined.close();
+    }
+}
@@ -0,0 +1,147 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.table.KeyedSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RankedTableTest {
+
+    DataSchema moverSchema = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Spread", double.class)
+            .addNamed("Name", String.class)
+            .build();
+
+    DataTableBasic<String> movers = DataTableBasic.<String>withSchema(moverSchema).create();
+
+    DidoData mover(String id, double spread, String name) {
+        return DidoData.withSchema(moverSchema).of(id, spread, name);
+    }
+
+    @Test
+    void rankAndMembershipChanges() {
+
+        movers.onData(mover("A", 1.0, "Apple"));
+        movers.onData(mover("B", 2.0, "Banana"));
+        movers.onData(mover("C", 3.0, "Cherry"));
+        movers.onData(mover("D", 4.0, "Date"));
+
+        RankedTable<String> test = RankedTable.from(movers)
+                .descending("Spread")
+                .limit(2)
+                .create();
+
+        assertThat(test.getSchema().getFieldNames(), contains("Id", "Spread", "Name", "Rank"));
+        assertThat(test.keySet(), contains("C", "D"));
+        assertThat(test.get("D"), is(DidoData.of("D", 4.0, "Date", 1)));
+
+        DataJoinTest.Recorder recorder = new DataJoinTest.Recorder();
+        test.tableSubscribe(recorder);
+
+        movers.onPartial(PartialUpdate.from(mover("D", 4.0, "Durian")).withIndices(3));
+        movers.onPartial(PartialUpdate.from(mover("B", 2.5, "Banana")).withIndices(2));
+        movers.onPartial(PartialUpdate.from(mover("A", 5.0, "Apple")).withIndices(2));
+        movers.onPartial(PartialUpdate.from(mover("D", 0.5, "Durian")).withIndices(2));
+        movers.onDelete(DidoData.of("A"));
+
+        assertThat(recorder.results, contains(
+                "onPartial: D 3=Durian",
+                "onDelete: C",
+                "onData: A",
+                "onPartial: D 4=2",
+                "onDelete: D",
+                "onData: C",
+                "onDelete: A",
+                "onPartial: C 4=1",
+                "onData: B"));
+
+        assertThat(test.keySet(), contains("B", "C"));
+        assertThat(test.get("B"), is(DidoData.of("B", 2.5, "Banana", 2)));
+
+        test.close();
+    }
+
+    @Test
+    void randomTicksMatchSorting() {
+
+        Random random = new Random(42);
+        int limit = 10;
+
+        for (int i = 0; i < 100; ++i) {
+            movers.onData(mover("K" + i, random.nextInt(50), "N" + i));
+        }
+
+        RankedTable<String> test = RankedTable.from(movers)
+                .descending("Spread")
+                .ascending("Name")
+                .limit(limit)
+                .create();
+
+        Map<String, Integer> ranks = new HashMap<>();
+        test.forEachRow((key, row) -> ranks.put(key, row.getIntNamed("Rank")));
+
+        test.tableSubscribe(new KeyedSubscriber<>() {
+            @Override
+            public void onData(String key, DidoData data) {
+                ranks.put(key, data.getIntNamed("Rank"));
+            }
+
+            @Override
+            public void onPartial(String key, PartialUpdate partial) {
+                assertThat(ranks, hasKey(key));
+                ranks.put(key, partial.getData().getIntNamed("Rank"));
+            }
+
+            @Override
+            public void onDelete(String key) {
+                assertThat(ranks.remove(key), notNullValue());
+            }
+        });
+
+        for (int n = 0; n < 2_000; ++n) {
+            String key = "K" + random.nextInt(120);
+            int op = random.nextInt(10);
+            if (op == 0 && movers.containsKey(key)) {
+                movers.onDelete(DidoData.of(key));
+            }
+            else if (op == 1 || !movers.containsKey(key)) {
+                movers.onData(mover(key, random.nextInt(50), "N" + key));
+            }
+            else {
+                movers.onPartial(PartialUpdate.from(mover(key, random.nextInt(50), "N" + key))
+                        .withIndices(2));
+            }
+
+            List<String> sorted = new ArrayList<>(movers.keySet());
+            sorted.sort(Comparator.<String>comparingDouble(k -> -movers.get(k).getDoubleNamed("Spread"))
+                    .thenComparing(k -> movers.get(k).getStringNamed("Name"))
+                    .thenComparing(Comparator.naturalOrder()));
+            Map<String, Integer> expected = new HashMap<>();
+            for (int r = 0; r < Math.min(limit, sorted.size()); ++r) {
+                expected.put(sorted.get(r), r + 1);
+            }
+
+            assertThat(ranks, is(expected));
+            assertThat(test.keySet(), is(expected.keySet()));
+        }
+
+        test.close();
+    }
+
+    @Test
+    void unknownField() {
+
+        assertThrows(IllegalArgumentException.class, () -> RankedTable.from(movers)
+                .descending("Volume")
+                .limit(50)
+                .create());
+    }
+}
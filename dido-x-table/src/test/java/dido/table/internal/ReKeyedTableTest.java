@@ -6,11 +6,15 @@ import dido.flow.util.KeyExtractors;
 import dido.table.CloseableTable;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ReKeyedTableTest {
 
@@ -55,4 +59,32 @@ class ReKeyedTableTest {
         fruitByFruit.close();
     }
 
-}
\ No newline at end of file
+    @Test
+    void viewsFollowTheTable() {
+
+        fruit.forEach(fruitTable::onData);
+
+        CloseableTable<String> fruitByFruit = ReKeyedTable
+                .remapKey(fruitTable,
+                        KeyExtractors.<String>fromNamed("Fruit").keyExtractorFor(fruitSchema));
+
+        Set<String> keys = fruitByFruit.keySet();
+        Set<Map.Entry<String, DidoData>> entries = fruitByFruit.entrySet();
+
+        fruitTable.onData(DidoData.withSchema(fruitSchema).of("F5", "Pear", "Green"));
+        fruitTable.onDelete(DidoData.of("F2"));
+
+        assertThat(keys, contains("Apple", "Orange", "Pear"));
+        assertThat(entries.size(), is(3));
+        assertThat(entries.iterator().next(), is(Map.entry("Apple", DidoData.of("F4", "Apple", "Green"))));
+
+        assertThrows(UnsupportedOperationException.class, () -> keys.remove("Apple"));
+
+        List<String> rows = new ArrayList<>();
+        fruitByFruit.forEachRow((key, row) -> rows.add(key + "=" + row.getAt(1)));
+
+        assertThat(rows, contains("Apple=F4", "Orange=F3", "Pear=F5"));
+
+        fruitByFruit.close();
+    }
+}
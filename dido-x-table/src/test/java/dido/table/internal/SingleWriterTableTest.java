@@ -0,0 +1,253 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.mutable.MutableArrayData;
+import dido.data.mutable.MutableData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
+import dido.flow.util.WaitStrategy;
+import dido.table.KeyedSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleWriterTableTest {
+
+    DataSchema schema = DataSchema.builder()
+            .addNamed("Id", int.class)
+            .addNamed("Fruit", String.class)
+            .addNamed("Qty", int.class)
+            .build();
+
+    static class Recorder implements KeyedSubscriber<Integer> {
+
+        List<String> results = new CopyOnWriteArrayList<>();
+
+        Set<Thread> threads = new CopyOnWriteArraySet<>();
+
+        @Override
+        public void onData(Integer key, DidoData data) {
+            threads.add(Thread.currentThread());
+            results.add("onData: " + key + ", " + data);
+        }
+
+        @Override
+        public void onPartial(Integer key, PartialUpdate partial) {
+            threads.add(Thread.currentThread());
+            results.add("onPartial: " + key + ", " + partial.getData());
+        }
+
+        @Override
+        public void onDelete(Integer key) {
+            threads.add(Thread.currentThread());
+            results.add("onDelete: " + key);
+        }
+    }
+
+    @Test
+    void insertUpdateDelete() {
+
+        List<RuntimeException> errors = new CopyOnWriteArrayList<>();
+
+        try (SingleWriterTable<Integer> test = SingleWriterTable.<Integer>withSchema(schema)
+                .waitStrategy(WaitStrategy.PARK)
+                .errorHandler(errors::add)
+                .create()) {
+
+            Recorder recorder = new Recorder();
+            test.tableSubscribe(recorder);
+
+            DidoData.withSchema(schema).many()
+                    .of(1, "Apple", 7)
+                    .of(5, "Orange", 12)
+                    .of(3, "Banana", 5).toStream()
+                    .forEach(test::onData);
+
+            // Reads see all updates queued before them.
+            assertThat(test.keySet(), contains(1, 3, 5));
+            assertThat(test.get(5), is(DidoData.of(5, "Orange", 12)));
+
+            SubSchema subSchema = SubSchema.from(schema).withIndices(1, 2);
+
+            test.onPartial(PartialUpdate.from(DidoData.withSchema(subSchema).of(5, "Grape"))
+                    .withIndices(subSchema.getIndices()));
+            test.onPartial(PartialUpdate.from(DidoData.withSchema(subSchema).of(7, "Lime"))
+                    .withIndices(subSchema.getIndices()));
+            test.onDelete(DidoData.of(3));
+
+            assertThat(test.get(5), is(DidoData.of(5, "Grape", 12)));
+            assertThat(test.containsKey(3), is(false));
+
+            assertThat(recorder.results, hasSize(5));
+            assertThat(recorder.results.get(4), is("onDelete: 3"));
+            assertThat(recorder.threads, hasSize(1));
+            assertThat(recorder.threads.iterator().next(), not(Thread.currentThread()));
+
+            assertThat(errors, hasSize(1));
+            assertThat(errors.getFirst().getMessage(), is("No row for key 7"));
+
+            assertThat(test.drainCount(), greaterThan(0L));
+            assertThat(test.maxDrainBatchSize(), greaterThanOrEqualTo(test.lastDrainBatchSize()));
+        }
+    }
+
+    @Test
+    void producerCanReuseItsDataOnceQueued() throws InterruptedException {
+
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (SingleWriterTable<Integer> test = SingleWriterTable.<Integer>withSchema(schema)
+                .waitStrategy(WaitStrategy.PARK)
+                .create()) {
+
+            Recorder recorder = new Recorder() {
+                @Override
+                public void onData(Integer key, DidoData data) {
+                    if (key == 0) {
+                        try {
+                            release.await();
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    super.onData(key, data);
+                }
+            };
+            test.tableSubscribe(recorder);
+
+            // Hold the writer so the updates below are still queued when the buffer changes.
+            test.onData(DidoData.withSchema(schema).of(0, "Gate", 0));
+
+            MutableData buffer = MutableArrayData.copy(DidoData.withSchema(schema).of(1, "Apple", 7));
+            test.onData(buffer);
+            buffer.setAt(3, 8);
+            test.onPartial(PartialUpdate.from(buffer).withIndices(1, 3));
+            buffer.setAt(1, 2);
+            buffer.setAt(3, 99);
+
+            release.countDown();
+
+            assertThat(test.keySet(), contains(0, 1));
+            assertThat(test.get(1), is(DidoData.of(1, "Apple", 8)));
+
+            assertThat(recorder.results, contains(
+                    "onData: 0, " + DidoData.withSchema(schema).of(0, "Gate", 0),
+                    "onData: 1, " + DidoData.withSchema(schema).of(1, "Apple", 7),
+                    "onPartial: 1, " + DidoData.withSchema(schema).of(1, "Apple", 8)));
+        }
+    }
+
+    @Test
+    void closeAppliesQueuedUpdatesThenRejects() {
+
+        Recorder recorder = new Recorder();
+
+        SingleWriterTable<Integer> test = SingleWriterTable.<Integer>withSchema(schema)
+                .queueCapacity(8)
+                .maxBatch(4)
+                .waitStrategy(WaitStrategy.BUSY_SPIN)
+                .create();
+
+        test.tableSubscribe(recorder);
+
+        for (int i = 0; i < 100; ++i) {
+            test.onData(DidoData.withSchema(schema).of(i, "Fruit", i));
+        }
+
+        test.close();
+
+        assertThat(recorder.results, hasSize(100));
+        assertThat(test.queueDepth(), is(0));
+        assertThat(test.maxDrainBatchSize(), lessThanOrEqualTo(4));
+
+        assertThrows(IllegalStateException.class,
+                () -> test.onData(DidoData.withSchema(schema).of(1, "Apple", 1)));
+    }
+
+    @Test
+    void manyProducers() throws InterruptedException {
+
+        try (SingleWriterTable<Integer> test = SingleWriterTable.<Integer>withSchema(schema)
+                .queueCapacity(64)
+                .create()) {
+
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                int first = t * 100;
+                producers.add(Thread.ofPlatform().start(() -> {
+                    for (int u = 0; u < 50; ++u) {
+                        for (int k = first; k < first + 100; ++k) {
+                            test.onData(DidoData.withSchema(schema).of(k, "Fruit", u));
+                        }
+                    }
+                }));
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            assertThat(test.keySet(), hasSize(400));
+            assertThat(test.get(250).getIntAt(3), is(49));
+        }
+    }
+
+    @Test
+    void closeFromSubscriberDoesNotWaitForItself() throws InterruptedException {
+
+        SingleWriterTable<Integer> test = SingleWriterTable.<Integer>withSchema(schema)
+                .waitStrategy(WaitStrategy.PARK)
+                .create();
+
+        CountDownLatch closed = new CountDownLatch(1);
+        test.tableSubscribe(new Recorder() {
+            @Override
+            public void onData(Integer key, DidoData data) {
+                test.close();
+                closed.countDown();
+            }
+        });
+
+        test.onData(DidoData.withSchema(schema).of(1, "Apple", 5));
+
+        assertThat(closed.await(5, TimeUnit.SECONDS), is(true));
+        assertThrows(IllegalStateException.class, () -> test.containsKey(1));
+    }
+
+    @Test
+    void readsRacingCloseFailRatherThanHang() throws InterruptedException {
+
+        for (int i = 0; i < 50; ++i) {
+
+            SingleWriterTable<Integer> test = SingleWriterTable.<Integer>withSchema(schema)
+                    .create();
+
+            Thread reader = Thread.ofPlatform().start(() -> {
+                try {
+                    while (true) {
+                        test.containsKey(1);
+                    }
+                }
+                catch (RuntimeException e) {
+                    // Closed
+                }
+            });
+
+            test.close();
+
+            reader.join(5000);
+            assertThat(reader.isAlive(), is(false));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
+import dido.table.DataTable;
+import dido.table.KeyedSubscriber;
+import dido.table.KeyedSubscription;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class StripedDataTableTest {
+
+    DataSchema schema = DataSchema.builder()
+            .addNamed("Id", int.class)
+            .addNamed("Fruit", String.class)
+            .addNamed("Qty", int.class)
+            .build();
+
+    static class Recorder implements KeyedSubscriber<Integer> {
+
+        List<String> results = new ArrayList<>();
+
+        @Override
+        public synchronized void onData(Integer key, DidoData data) {
+            results.add("onData: " + key + ", " + data);
+        }
+
+        @Override
+        public synchronized void onPartial(Integer key, PartialUpdate partial) {
+            results.add("onPartial: " + key + ", " + partial.getData());
+        }
+
+        @Override
+        public synchronized void onDelete(Integer key) {
+            results.add("onDelete: " + key);
+        }
+    }
+
+    @Test
+    void insertUpdateDelete() {
+
+        StripedDataTable<Integer> test = StripedDataTable.<Integer>withSchema(schema)
+                .stripes(4)
+                .create();
+
+        assertThat(test.stripeCount(), is(4));
+
+        Recorder recorder = new Recorder();
+        KeyedSubscription subscription = test.tableSubscribe(recorder);
+
+        DidoData.withSchema(schema).many()
+                .of(1, "Apple", 7)
+                .of(5, "Orange", 12)
+                .of(3, "Banana", 5).toStream()
+                .forEach(test::onData);
+
+        assertThat(test.keySet(), contains(1, 3, 5));
+        assertThat(test.get(5), is(DidoData.of(5, "Orange", 12)));
+
+        SubSchema subSchema = SubSchema.from(schema).withIndices(1, 2);
+
+        test.onPartial(PartialUpdate.from(DidoData.withSchema(subSchema).of(5, "Grape"))
+                .withIndices(subSchema.getIndices()));
+
+        assertThat(test.get(5), is(DidoData.of(5, "Grape", 12)));
+
+        test.onDelete(DidoData.of(3));
+
+        assertThat(test.keySet(), contains(1, 5));
+        assertThat(test.containsKey(3), is(false));
+        assertThat(test.entrySet().stream().map(Map.Entry::getValue).toList(),
+                contains(DidoData.of(1, "Apple", 7), DidoData.of(5, "Grape", 12)));
+
+        assertThat(recorder.results, hasSize(5));
+        assertThat(recorder.results.get(4), is("onDelete: 3"));
+
+        subscription.close();
+
+        test.onData(DidoData.withSchema(schema).of(2, "Pear", 14));
+
+        assertThat(recorder.results, hasSize(5));
+    }
+
+    @Test
+    void stripeCountIsAPowerOfTwo() {
+
+        assertThat(StripedDataTable.stripeCountFor(1), is(1));
+        assertThat(StripedDataTable.stripeCountFor(5), is(8));
+        assertThat(StripedDataTable.stripeCountFor(8), is(8));
+        assertThat(StripedDataTable.stripeCountFor(0), greaterThan(0));
+    }
+
+    @Test
+    void eventsForAKeyArriveInOrderFromManyThreads() throws InterruptedException {
+
+        int threads = 8;
+        int keysPerThread = 50;
+        int updates = 200;
+
+        StripedDataTable<Integer> test = StripedDataTable.<Integer>withSchema(schema)
+                .stripes(4)
+                .create();
+
+        Map<Integer, Integer> lastQty = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+
+        test.tableSubscribe(new KeyedSubscriber<>() {
+            @Override
+            public void onData(Integer key, DidoData data) {
+                int qty = data.getIntAt(3);
+                Integer previous = lastQty.put(key, qty);
+                if (previous != null && previous != qty - 1) {
+                    outOfOrder.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void onPartial(Integer key, PartialUpdate data) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void onDelete(Integer key) {
+                throw new UnsupportedOperationException();
+            }
+        });
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; ++t) {
+            int first = t * keysPerThread;
+            producers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int u = 0; u < updates; ++u) {
+                    for (int k = first; k < first + keysPerThread; ++k) {
+                        test.onData(DidoData.withSchema(schema).of(k, "Fruit" + k, u));
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertThat(outOfOrder.get(), is(0));
+        assertThat(test.keySet(), hasSize(threads * keysPerThread));
+        assertThat(test.get(123).getIntAt(3), is(updates - 1));
+    }
+
+    @Test
+    void snapshotMergesStripesInKeyOrder() {
+
+        StripedDataTable<Integer> test = StripedDataTable.<Integer>withSchema(schema)
+                .stripes(4)
+                .storage(DataTableBasic.Storage.PERSISTENT)
+                .create();
+
+        for (int i = 20; i > 0; --i) {
+            test.onData(DidoData.withSchema(schema).of(i, "Fruit", i));
+        }
+
+        DataTable<Integer> snapshot = test.snapshot();
+
+        test.onData(DidoData.withSchema(schema).of(7, "Apple", 70));
+        test.onDelete(DidoData.of(3));
+        test.onData(DidoData.withSchema(schema).of(21, "Pear", 21));
+
+        assertThat(snapshot.keySet(), contains(IntStream.rangeClosed(1, 20).boxed().toArray()));
+        assertThat(snapshot.entrySet(), hasSize(20));
+        assertThat(snapshot.get(7), is(DidoData.of(7, "Fruit", 7)));
+        assertThat(snapshot.containsKey(3), is(true));
+        assertThat(snapshot.containsKey(21), is(false));
+        assertThat(test.get(7), is(DidoData.of(7, "Apple", 70)));
+    }
+}
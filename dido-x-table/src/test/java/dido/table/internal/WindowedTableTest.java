@@ -0,0 +1,222 @@
+package dido.table.internal;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WindowedTableTest {
+
+    DataSchema tradeSchema = DataSchema.builder()
+            .addNamed("Id", String.class)
+            .addNamed("Price", double.class)
+            .addNamed("Size", double.class)
+            .build();
+
+    DataTableBasic<String> trades = DataTableBasic.<String>withSchema(tradeSchema).create();
+
+    static class ManualClock implements InstantSource {
+
+        long millis;
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+
+    static class RowRecorder extends DataJoinTest.Recorder {
+
+        final List<DidoData> rows = new ArrayList<>();
+
+        @Override
+        public void onData(String key, DidoData data) {
+            super.onData(key, data);
+            rows.add(data);
+        }
+    }
+
+    void trade(String id, double price, double size) {
+        trades.onPartial(PartialUpdate.from(DidoData.withSchema(tradeSchema).of(id, price, size))
+                .withIndices(2, 3));
+    }
+
+    @Test
+    void tumblingBars() {
+
+        ManualClock clock = new ManualClock();
+
+        WindowedTable<String> test = WindowedTable.from(trades)
+                .price("Price")
+                .volume("Size")
+                .tumbling(Duration.ofMinutes(1))
+                .clock(clock)
+                .create();
+
+        DataSchema expectedSchema = DataSchema.builder()
+                .addNamed("Id", String.class)
+                .addNamed("Start", long.class)
+                .addNamed("End", long.class)
+                .addNamed("Open", double.class)
+                .addNamed("High", double.class)
+                .addNamed("Low", double.class)
+                .addNamed("Close", double.class)
+                .addNamed("Volume", double.class)
+                .addNamed("Vwap", double.class)
+                .addNamed("Count", long.class)
+                .addNamed("Closed", boolean.class)
+                .build();
+
+        assertThat(test.getSchema(), is(expectedSchema));
+
+        RowRecorder recorder = new RowRecorder();
+        test.tableSubscribe(recorder);
+
+        clock.millis = 1_000;
+        trades.onData(DidoData.withSchema(tradeSchema).of("A", 10.0, 100.0));
+        clock.millis = 30_000;
+        trade("A", 13.0, 50.0);
+        trades.onPartial(PartialUpdate.from(DidoData.withSchema(tradeSchema).of("A", 13.0, 70.0))
+                .withIndices(3));
+        test.poll();
+        clock.millis = 60_000;
+        test.poll();
+        clock.millis = 130_000;
+        trade("A", 9.0, 10.0);
+
+        assertThat(recorder.results, contains(
+                "onData: A",
+                "onPartial: A 5=13.0 7=13.0 8=150.0 9=11.0 10=2",
+                "onData: A",
+                "onData: A"));
+
+        assertThat(recorder.rows.get(1),
+                is(DidoData.of("A", 0L, 60_000L, 10.0, 13.0, 10.0, 13.0, 150.0, 11.0, 2L, true)));
+        assertThat(recorder.rows.get(0), not(sameInstance(recorder.rows.get(1))));
+        assertThat(recorder.rows.get(0),
+                is(DidoData.of("A", 0L, 60_000L, 10.0, 13.0, 10.0, 13.0, 150.0, 11.0, 2L, false)));
+        assertThat(test.get("A"),
+                is(DidoData.of("A", 120_000L, 180_000L, 9.0, 9.0, 9.0, 9.0, 10.0, 9.0, 1L, false)));
+
+        trades.onDelete(DidoData.of("A"));
+
+        assertThat(recorder.results.getLast(), is("onDelete: A"));
+        assertThat(test.keySet(), empty());
+
+        test.close();
+    }
+
+    @Test
+    void slidingBars() {
+
+        ManualClock clock = new ManualClock();
+
+        WindowedTable<String> test = WindowedTable.from(trades)
+                .price("Price")
+                .sliding(Duration.ofMinutes(3), Duration.ofMinutes(1))
+                .clock(clock)
+                .create();
+
+        RowRecorder recorder = new RowRecorder();
+        test.tableSubscribe(recorder);
+
+        trades.onData(DidoData.withSchema(tradeSchema).of("A", 10.0, 1.0));
+        clock.millis = 60_000;
+        trade("A", 12.0, 1.0);
+        clock.millis = 180_000;
+        test.poll();
+
+        assertThat(recorder.results, contains(
+                "onData: A",
+                "onData: A",
+                "onData: A",
+                "onPartial: A 5=12.0 7=12.0 10=2",
+                "onData: A",
+                "onData: A",
+                "onData: A"));
+
+        assertThat(recorder.rows.get(1),
+                is(DidoData.of("A", -120_000L, 60_000L, 10.0, 10.0, 10.0, 10.0, 0.0, null, 1L, true)));
+        assertThat(recorder.rows.get(3),
+                is(DidoData.of("A", -60_000L, 120_000L, 10.0, 12.0, 10.0, 12.0, 0.0, null, 2L, true)));
+        assertThat(recorder.rows.get(4),
+                is(DidoData.of("A", 0L, 180_000L, 10.0, 12.0, 10.0, 12.0, 0.0, null, 2L, true)));
+        assertThat(test.get("A"),
+                is(DidoData.of("A", 60_000L, 240_000L, 12.0, 12.0, 12.0, 12.0, 0.0, null, 1L, false)));
+
+        test.close();
+    }
+
+    @Test
+    void slidingTotalsAsStepsLeaveTheWindow() {
+
+        ManualClock clock = new ManualClock();
+
+        WindowedTable<String> test = WindowedTable.from(trades)
+                .price("Price")
+                .volume("Size")
+                .sliding(Duration.ofMinutes(3), Duration.ofMinutes(1))
+                .clock(clock)
+                .create();
+
+        trades.onData(DidoData.withSchema(tradeSchema).of("A", 15.0, 0.1));
+        clock.millis = 60_000;
+        trade("A", 10.0, 0.2);
+        clock.millis = 120_000;
+        trade("A", 12.0, 0.1);
+        clock.millis = 180_000;
+        test.poll();
+
+        // The high was in the step that has left.
+        DidoData bar = test.get("A");
+        assertThat(bar.getLongAt(2), is(60_000L));
+        assertThat(bar.getDoubleAt(4), is(10.0));
+        assertThat(bar.getDoubleAt(5), is(12.0));
+        assertThat(bar.getDoubleAt(6), is(10.0));
+        assertThat(bar.getDoubleAt(7), is(12.0));
+        assertThat(bar.getDoubleAt(8), closeTo(0.3, 1e-15));
+        assertThat(bar.getDoubleAt(9), closeTo(3.2 / 0.3, 1e-12));
+        assertThat(bar.getLongAt(10), is(2L));
+
+        clock.millis = 240_000;
+        test.poll();
+
+        // Now the low has left too.
+        bar = test.get("A");
+        assertThat(bar.getDoubleAt(4), is(12.0));
+        assertThat(bar.getDoubleAt(6), is(12.0));
+        assertThat(bar.getDoubleAt(8), is(0.1));
+        assertThat(bar.getLongAt(10), is(1L));
+
+        clock.millis = 300_000;
+        test.poll();
+
+        assertThat(test.get("A").getBooleanAt(11), is(true));
+
+        test.close();
+    }
+
+    @Test
+    void windowNotWholeSteps() {
+
+        assertThrows(IllegalArgumentException.class, () -> WindowedTable.from(trades)
+                .price("Price")
+                .sliding(Duration.ofSeconds(90), Duration.ofMinutes(1))
+                .create());
+    }
+}
@@ -0,0 +1,202 @@
+package dido.table.util;
+
+import dido.data.DataSchema;
+import dido.data.DidoData;
+import dido.data.partial.PartialUpdate;
+import dido.data.schema.SubSchema;
+import dido.table.KeyedSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class ConflatingKeyedSubscriberTest {
+
+    DataSchema schema = DataSchema.builder()
+            .addNamed("Id", int.class)
+            .addNamed("Fruit", String.class)
+            .addNamed("Qty", int.class)
+            .addNamed("Price", double.class)
+            .build();
+
+    static class Recorder implements KeyedSubscriber<Integer> {
+
+        List<String> results = new ArrayList<>();
+
+        @Override
+        public void onData(Integer key, DidoData data) {
+            results.add("onData: " + key + ", " + data);
+        }
+
+        @Override
+        public void onPartial(Integer key, PartialUpdate partial) {
+            results.add("onPartial: " + key + ", " + partial);
+        }
+
+        @Override
+        public void onDelete(Integer key) {
+            results.add("onDelete: " + key);
+        }
+    }
+
+    /** Runs tasks only when asked, so the test decides when the slow subscriber is ready. */
+    static class ManualExecutor implements Executor {
+
+        List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> toRun = new ArrayList<>(tasks);
+            tasks.clear();
+            toRun.forEach(Runnable::run);
+        }
+    }
+
+    PartialUpdate partial(int key, int index, Object value) {
+        SubSchema subSchema = SubSchema.from(schema).withIndices(1, index);
+        return PartialUpdate.from(DidoData.withSchema(subSchema).of(key, value))
+                .withIndices(1, index);
+    }
+
+    @Test
+    void partialsForAKeyAreMerged() {
+
+        Recorder recorder = new Recorder();
+        ManualExecutor executor = new ManualExecutor();
+
+        ConflatingKeyedSubscriber<Integer> test = ConflatingKeyedSubscriber.withSchema(schema)
+                .executor(executor)
+                .create(recorder);
+
+        test.onPartial(1, partial(1, 3, 10));
+        test.onPartial(2, partial(2, 4, 1.5));
+        test.onPartial(1, partial(1, 4, 2.5));
+        test.onPartial(1, partial(1, 3, 11));
+
+        assertThat(test.pendingCount(), is(2));
+        assertThat(executor.tasks, hasSize(1));
+        assertThat(recorder.results, empty());
+
+        executor.runAll();
+
+        assertThat(test.pendingCount(), is(0));
+        assertThat(recorder.results, contains(
+                "onPartial: 1, " + PartialUpdate.from(DidoData.withSchema(
+                        SubSchema.from(schema).withIndices(1, 3, 4)).of(1, 11, 2.5))
+                        .withIndices(1, 3, 4),
+                "onPartial: 2, " + partial(2, 4, 1.5)));
+    }
+
+    @Test
+    void dataAbsorbsPartialsAndDeleteReplacesAll() {
+
+        Recorder recorder = new Recorder();
+        ManualExecutor executor = new ManualExecutor();
+
+        ConflatingKeyedSubscriber<Integer> test = ConflatingKeyedSubscriber.withSchema(schema)
+                .executor(executor)
+                .create(recorder);
+
+        test.onPartial(1, partial(1, 3, 10));
+        test.onData(1, DidoData.withSchema(schema).of(1, "Apple", 5, 1.0));
+        test.onPartial(1, partial(1, 4, 2.0));
+
+        test.onData(2, DidoData.withSchema(schema).of(2, "Pear", 7, 3.0));
+        test.onPartial(2, partial(2, 3, 8));
+        test.onDelete(2);
+
+        executor.runAll();
+
+        assertThat(recorder.results, contains(
+                "onData: 1, " + DidoData.withSchema(schema).of(1, "Apple", 5, 2.0),
+                "onDelete: 2"));
+
+        recorder.results.clear();
+
+        test.onDelete(1);
+        test.onData(1, DidoData.withSchema(schema).of(1, "Plum", 3, 4.0));
+
+        executor.runAll();
+
+        assertThat(recorder.results, contains(
+                "onData: 1, " + DidoData.withSchema(schema).of(1, "Plum", 3, 4.0)));
+    }
+
+    @Test
+    void eventsArrivingDuringDeliveryAreDeliveredNext() {
+
+        ManualExecutor executor = new ManualExecutor();
+
+        List<String> delivered = new ArrayList<>();
+        @SuppressWarnings("unchecked")
+        ConflatingKeyedSubscriber<Integer>[] test = new ConflatingKeyedSubscriber[1];
+
+        test[0] = ConflatingKeyedSubscriber.withSchema(schema)
+                .executor(executor)
+                .create(new Recorder() {
+                    @Override
+                    public void onData(Integer key, DidoData data) {
+                        delivered.add("onData: " + key);
+                        if (key == 1) {
+                            // Arrives while the slow subscriber is busy.
+                            test[0].onData(2, DidoData.withSchema(schema).of(2, "Pear", 1, 1.0));
+                        }
+                    }
+                });
+
+        test[0].onData(1, DidoData.withSchema(schema).of(1, "Apple", 1, 1.0));
+
+        executor.runAll();
+
+        assertThat(delivered, contains("onData: 1", "onData: 2"));
+        assertThat(executor.tasks, empty());
+    }
+
+    @Test
+    void subscriberErrorDoesNotLoseTheRestOfTheBatch() {
+
+        ManualExecutor executor = new ManualExecutor();
+
+        List<RuntimeException> errors = new ArrayList<>();
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onData(Integer key, DidoData data) {
+                if (key == 2) {
+                    throw new IllegalStateException("Bad " + key);
+                }
+                super.onData(key, data);
+            }
+        };
+
+        ConflatingKeyedSubscriber<Integer> test = ConflatingKeyedSubscriber.withSchema(schema)
+                .executor(executor)
+                .errorHandler(errors::add)
+                .create(recorder);
+
+        for (int key = 1; key <= 3; ++key) {
+            test.onData(key, DidoData.withSchema(schema).of(key, "Apple", key, 1.0));
+        }
+
+        executor.runAll();
+
+        assertThat(recorder.results, contains(
+                "onData: 1, " + DidoData.withSchema(schema).of(1, "Apple", 1, 1.0),
+                "onData: 3, " + DidoData.withSchema(schema).of(3, "Apple", 3, 1.0)));
+        assertThat(errors, hasSize(1));
+        assertThat(test.pendingCount(), is(0));
+
+        test.onDelete(1);
+        assertThat(executor.tasks, hasSize(1));
+        executor.runAll();
+
+        assertThat(recorder.results.get(2), is("onDelete: 1"));
+    }
+}
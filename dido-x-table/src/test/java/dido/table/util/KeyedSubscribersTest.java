@@ -3,6 +3,8 @@ package dido.table.util;
 import dido.data.DidoData;
 import dido.data.partial.PartialUpdate;
 import dido.flow.QuietlyCloseable;
+import dido.flow.util.AsyncDispatcher;
+import dido.flow.util.OverflowPolicy;
 import dido.table.KeyedSubscriber;
 import org.junit.jupiter.api.Test;
 
@@ -11,6 +13,9 @@ import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 
 class KeyedSubscribersTest {
 
@@ -67,4 +72,120 @@ class KeyedSubscribersTest {
 
         close2.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    void asyncSubscriberIsCalledFromExecutor() {
+
+        DidoData apple = DidoData.of("Apple");
+
+        KeyedDataSubscribers<Integer> test = new KeyedDataSubscribers<>(apple.getSchema());
+
+        List<Runnable> tasks = new ArrayList<>();
+
+        OurSubscriber s1 = new OurSubscriber();
+
+        QuietlyCloseable close1 = test.addSubscriber(s1, AsyncDispatcher.settings()
+                .capacity(2)
+                .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .executor(tasks::add));
+
+        DidoData orange = DidoData.of("Orange");
+
+        test.onData(1, apple);
+        test.onData(2, orange);
+        test.onDelete(1);
+
+        assertThat(s1.results, empty());
+
+        tasks.forEach(Runnable::run);
+
+        assertThat(s1.results, contains("onData: 2={[1:f_1]=Orange}", "onDelete: 1"));
+
+        close1.close();
+    }
+
+    @Test
+    void nestedBatchesArePassedOnOnce() {
+
+        DidoData apple = DidoData.of("Apple");
+
+        KeyedDataSubscribers<Integer> test = new KeyedDataSubscribers<>(apple.getSchema());
+
+        List<String> batches = new ArrayList<>();
+
+        OurSubscriber s1 = new OurSubscriber() {
+            @Override
+            public void onBatchStart() {
+                batches.add("s1 start");
+            }
+
+            @Override
+            public void onBatchEnd() {
+                batches.add("s1 end");
+            }
+        };
+
+        OurSubscriber s2 = new OurSubscriber() {
+            @Override
+            public void onBatchStart() {
+                batches.add("s2 start");
+            }
+
+            @Override
+            public void onBatchEnd() {
+                batches.add("s2 end");
+            }
+        };
+
+        test.addSubscriber(s1);
+
+        test.onBatchStart();
+        test.onBatchStart();
+        test.onData(1, apple);
+
+        test.addSubscriber(s2);
+
+        test.onBatchEnd();
+
+        assertThat(test.isInBatch(), is(true));
+
+        test.onBatchEnd();
+        test.onBatchEnd();
+
+        assertThat(test.isInBatch(), is(false));
+
+        assertThat(batches, contains("s1 start", "s2 start", "s1 end", "s2 end"));
+    }
+
+    @Test
+    void disconnectedAsyncSubscriberIsRemoved() {
+
+        DidoData apple = DidoData.of("Apple");
+
+        KeyedDataSubscribers<Integer> test = new KeyedDataSubscribers<>(apple.getSchema());
+
+        List<Runnable> tasks = new ArrayList<>();
+
+        OurSubscriber s1 = new OurSubscriber();
+        OurSubscriber s2 = new OurSubscriber();
+
+        test.addSubscriber(s1);
+        test.addSubscriber(s2, AsyncDispatcher.settings()
+                .capacity(1)
+                .overflowPolicy(OverflowPolicy.DISCONNECT)
+                .executor(tasks::add));
+
+        assertThat(test.subscriberCount(), is(2));
+
+        test.onData(1, apple);
+        test.onData(2, apple);
+
+        assertThat(test.subscriberCount(), is(1));
+
+        test.onData(3, apple);
+        tasks.forEach(Runnable::run);
+
+        assertThat(s1.results, hasSize(3));
+        assertThat(s2.results, empty());
+    }
+}
@@ -0,0 +1,62 @@
+package dido.table.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class OrderStatisticTreeTest {
+
+    @Test
+    void positions() {
+
+        OrderStatisticTree<String> test = new OrderStatisticTree<>(Comparator.reverseOrder());
+
+        assertThat(test.add("b"), is(true));
+        assertThat(test.add("a"), is(true));
+        assertThat(test.add("c"), is(true));
+        assertThat(test.add("b"), is(false));
+
+        assertThat(test.size(), is(3));
+        assertThat(test.get(0), is("c"));
+        assertThat(test.get(2), is("a"));
+        assertThat(test.indexOf("b"), is(1));
+        assertThat(test.indexOf("x"), is(-1));
+
+        assertThat(test.remove("c"), is(true));
+        assertThat(test.remove("c"), is(false));
+        assertThat(test.indexOf("a"), is(1));
+    }
+
+    @Test
+    void randomOperationsMatchTreeSet() {
+
+        Random random = new Random(42);
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        OrderStatisticTree<Integer> test = new OrderStatisticTree<>(Comparator.naturalOrder());
+
+        for (int i = 0; i < 10_000; ++i) {
+            int value = random.nextInt(500);
+            if (random.nextBoolean()) {
+                assertThat(test.add(value), is(expected.add(value)));
+            }
+            else {
+                assertThat(test.remove(value), is(expected.remove(value)));
+            }
+        }
+
+        assertThat(test.size(), is(expected.size()));
+        List<Integer> values = new ArrayList<>(expected);
+        for (int i = 0; i < values.size(); ++i) {
+            assertThat(test.get(i), is(values.get(i)));
+            assertThat(test.indexOf(values.get(i)), is(i));
+        }
+    }
+}
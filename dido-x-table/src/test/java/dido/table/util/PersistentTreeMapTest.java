@@ -0,0 +1,68 @@
+package dido.table.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class PersistentTreeMapTest {
+
+    @Test
+    void oldVersionsAreUnchanged() {
+
+        PersistentTreeMap<String, Integer> empty = PersistentTreeMap.empty();
+
+        PersistentTreeMap<String, Integer> one = empty.plus("b", 2).plus("a", 1).plus("c", 3);
+        PersistentTreeMap<String, Integer> two = one.plus("b", 20).minus("a");
+
+        assertThat(empty.isEmpty(), is(true));
+        assertThat(one, is(Map.of("a", 1, "b", 2, "c", 3)));
+        assertThat(one.keySet(), contains("a", "b", "c"));
+        assertThat(two, is(Map.of("b", 20, "c", 3)));
+        assertThat(two.minus("x"), sameInstance(two));
+        assertThat(two.get("a"), nullValue());
+        assertThat(two.containsKey("c"), is(true));
+    }
+
+    @Test
+    void randomOperationsMatchTreeMap() {
+
+        Random random = new Random(42);
+
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentTreeMap<Integer, Integer> test = PersistentTreeMap.empty();
+
+        List<PersistentTreeMap<Integer, Integer>> versions = new ArrayList<>();
+        List<Map<Integer, Integer>> expectedVersions = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; ++i) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                test = test.minus(key);
+            }
+            else {
+                expected.put(key, i);
+                test = test.plus(key, i);
+            }
+            if (i % 1000 == 0) {
+                versions.add(test);
+                expectedVersions.add(new TreeMap<>(expected));
+            }
+        }
+
+        assertThat(test.size(), is(expected.size()));
+        assertThat(new ArrayList<>(test.entrySet()), is(new ArrayList<>(expected.entrySet())));
+
+        for (int i = 0; i < versions.size(); ++i) {
+            assertThat(new ArrayList<>(versions.get(i).entrySet()),
+                    is(new ArrayList<>(expectedVersions.get(i).entrySet())));
+        }
+    }
+}